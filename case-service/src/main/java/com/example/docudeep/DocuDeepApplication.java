@@ -0,0 +1,12 @@
+package com.example.docudeep;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class DocuDeepApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(DocuDeepApplication.class, args);
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.docudeep;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -10,7 +14,7 @@ import java.util.UUID;
 @Entity
 @Table(name = "document")
 @Data
-public class Document {
+public class Document implements Persistable<UUID> {
     @Id
     private UUID id;
 
@@ -36,6 +40,35 @@ public class Document {
     private Instant createdAt;
     private Instant uploadedAt;
 
+    /**
+     * Rows written before this column existed get 0: {@code ddl-auto=update} adds it with the default, as V3 does.
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version = 0L;
+
+    /**
+     * Ids are assigned by the application, so {@code save} cannot tell new rows from the id; without this it would
+     * merge, i.e. SELECT before every INSERT.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean newEntity = true;
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markNotNew() {
+        newEntity = false;
+    }
+
     @PrePersist
     public void onPersist() {
         if (id == null) {
@@ -0,0 +1,35 @@
+package com.example.docudeep.api;
+
+import com.example.docudeep.service.storage.LocalStorageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Upload target handed out by {@link LocalStorageService#prepareUpload}, standing in for the presigned S3 PUT when
+ * {@code docudeep.storage.backend=local}.
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "local")
+public class LocalStorageController {
+
+    private final LocalStorageService storageService;
+
+    @PutMapping("/storage/{*storageKey}")
+    public ResponseEntity<Void> put(@PathVariable String storageKey, HttpServletRequest request) throws IOException {
+        try (InputStream body = request.getInputStream()) {
+            storageService.write(storageKey.startsWith("/") ? storageKey.substring(1) : storageKey, body);
+        }
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.docudeep.config;
+
+import com.example.docudeep.service.storage.LocalStorageService;
+import com.example.docudeep.service.storage.S3AsyncStorageService;
+import com.example.docudeep.service.storage.S3StorageService;
+import com.example.docudeep.service.storage.StorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+@RequiredArgsConstructor
+public class StorageConfiguration {
+
+    private final StorageProperties properties;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "s3", matchIfMissing = true)
+    public S3Presigner s3Presigner() {
+        StorageProperties.S3 s3 = properties.getS3();
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(properties.getRegion())
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(s3.isPathStyleAccess()).build());
+        if (s3.getEndpoint() != null) {
+            builder.endpointOverride(s3.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @Lazy
+    @ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "s3", matchIfMissing = true)
+    public S3Client s3Client() {
+        StorageProperties.S3 s3 = properties.getS3();
+        S3ClientBuilder builder = S3Client.builder()
+                .region(properties.getRegion())
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .forcePathStyle(s3.isPathStyleAccess());
+        if (s3.getEndpoint() != null) {
+            builder.endpointOverride(s3.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Netty client whose pool bounds the S3 requests in flight; requests beyond {@code max-connections} wait up to
+     * {@code connection-acquisition-timeout} for a connection.
+     */
+    @Bean
+    @Lazy
+    @ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "s3", matchIfMissing = true)
+    public S3AsyncClient s3AsyncClient() {
+        StorageProperties.S3 s3 = properties.getS3();
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(properties.getRegion())
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .forcePathStyle(s3.isPathStyleAccess())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(s3.getMaxConnections())
+                        .connectionAcquisitionTimeout(s3.getConnectionAcquisitionTimeout())
+                        .connectionTimeout(s3.getConnectionTimeout())
+                        .readTimeout(s3.getReadTimeout())
+                        .connectionMaxIdleTime(s3.getConnectionMaxIdleTime()));
+        if (s3.getEndpoint() != null) {
+            builder.endpointOverride(s3.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "s3", matchIfMissing = true)
+    public StorageService storageService(S3Presigner presigner, ObjectProvider<S3Client> s3Client,
+                                         ObjectProvider<S3AsyncClient> s3AsyncClient,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        if (properties.getS3().isAsync()) {
+            return new S3AsyncStorageService(properties, presigner, s3AsyncClient.getObject(),
+                    meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
+        return new S3StorageService(properties, presigner, s3Client.getObject());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "docudeep.storage", name = "backend", havingValue = "local")
+    public LocalStorageService localStorageService() throws IOException {
+        return new LocalStorageService(properties);
+    }
+}
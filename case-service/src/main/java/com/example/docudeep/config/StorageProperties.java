@@ -0,0 +1,111 @@
+package com.example.docudeep.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "docudeep.storage")
+@Validated
+@Data
+public class StorageProperties {
+
+    @NotBlank
+    private String bucket;
+
+    @NotBlank
+    private String region = Region.EU_WEST_3.id();
+
+    @NotNull
+    private Duration presignTtl = Duration.ofMinutes(15);
+
+    /**
+     * Where document bytes live: S3 or, for development and tests, a local directory.
+     */
+    @NotNull
+    private Backend backend = Backend.S3;
+
+    @Valid
+    private final Local local = new Local();
+
+    @Valid
+    private final S3 s3 = new S3();
+
+    public Region getRegion() {
+        return Region.of(region);
+    }
+
+    public enum Backend {
+        S3,
+        LOCAL
+    }
+
+    @Data
+    public static class S3 {
+
+        /**
+         * S3-compatible endpoint (MinIO, LocalStack...) used instead of AWS, e.g. {@code http://localhost:9000}.
+         */
+        private URI endpoint;
+
+        private boolean pathStyleAccess = false;
+
+        /**
+         * Non-blocking client: concurrent ranged reads and parallel multipart transfers.
+         */
+        private boolean async = true;
+
+        @Min(1)
+        private int maxConnections = 64;
+
+        @NotNull
+        private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+
+        @NotNull
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+
+        @NotNull
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        @NotNull
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+
+        /**
+         * Objects at least this large are transferred in parts of {@link #partSize} (S3 requires 5 MB per part, the
+         * last one excepted).
+         */
+        @NotNull
+        private DataSize multipartThreshold = DataSize.ofMegabytes(16);
+
+        @NotNull
+        private DataSize partSize = DataSize.ofMegabytes(8);
+
+        /**
+         * Parts of a single object transferred at the same time.
+         */
+        @Min(1)
+        private int transferParallelism = 4;
+    }
+
+    @Data
+    public static class Local {
+
+        @NotNull
+        private Path root = Path.of("./storage/objects");
+
+        /**
+         * Base URL handed to clients for uploads, under which {@code LocalStorageController} accepts {@code PUT}.
+         */
+        @NotBlank
+        private String uploadUrl = "http://localhost:8080/api/storage";
+    }
+}
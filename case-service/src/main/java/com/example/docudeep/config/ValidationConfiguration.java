@@ -0,0 +1,19 @@
+package com.example.docudeep.config;
+
+import com.docudeep.common.validation.ValidationResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ValidationConfiguration {
+
+    @Bean
+    public ValidationResultCache validationResultCache(@Value("${docudeep.validation.cache.max-entries:10000}") int maxEntries,
+                                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ValidationResultCache(maxEntries, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.docudeep.repo;
+
+import com.example.docudeep.Document;
+import com.example.docudeep.DocumentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DocumentRepository extends JpaRepository<Document, UUID> {
+    Optional<Document> findByIdAndCaseFolderId(UUID documentId, UUID caseId);
+
+    /**
+     * Sets the status if the row is still at {@code version}, in a single UPDATE.
+     *
+     * @return 0 when the document changed since it was read
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Document d set d.status = :status, d.uploadedAt = :uploadedAt, d.version = d.version + 1 "
+            + "where d.id = :id and d.version = :version")
+    int updateStatus(@Param("id") UUID id, @Param("version") long version, @Param("status") DocumentStatus status,
+                     @Param("uploadedAt") Instant uploadedAt);
+}
@@ -14,8 +14,9 @@ import com.example.docudeep.repo.DocumentRepository;
 import com.example.docudeep.service.storage.StorageService;
 import com.example.docudeep.service.storage.dto.PresignedUpload;
 import lombok.RequiredArgsConstructor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.util.StringUtils;
 
 import java.time.Instant;
@@ -34,8 +35,12 @@ public class CaseService {
     private final DocumentRepository documentRepository;
     private final StorageService storageService;
     private final DocumentValidationService documentValidationService;
+    private final TransactionOperations transactionOperations;
 
-    @Transactional
+    /**
+     * Ids and storage keys are assigned here, so the case and its documents are inserted once each, in a single
+     * transaction and one JDBC batch for the documents. Presigning is done before that transaction opens.
+     */
     public CaseCreateResponse createCase(CaseCreateRequest request) {
         List<DocumentUploadRequest> documents = request.documents();
         if (documents == null || documents.isEmpty()) {
@@ -44,29 +49,27 @@ public class CaseService {
         if (documents.size() > 5) {
             throw new IllegalArgumentException("Vous pouvez uploader au maximum 5 documents");
         }
+        documents.forEach(this::validateMetadata);
 
         CaseFolder caseFolder = new CaseFolder();
-        caseFolder = caseFolderRepository.save(caseFolder);
+        caseFolder.setId(UUID.randomUUID());
 
-        List<DocumentUploadPlanDTO> uploads = new ArrayList<>();
+        List<Document> newDocuments = new ArrayList<>(documents.size());
+        List<DocumentUploadPlanDTO> uploads = new ArrayList<>(documents.size());
 
         for (DocumentUploadRequest docRequest : documents) {
-            validateMetadata(docRequest);
-
             Document document = new Document();
+            document.setId(UUID.randomUUID());
             document.setCaseFolder(caseFolder);
             document.setFilename(docRequest.filename());
             document.setFileType(DocumentType.fromLabel(docRequest.documentType()));
             document.setMimeType(docRequest.mimeType());
             document.setSizeBytes(docRequest.sizeBytes());
 
-            document = documentRepository.save(document);
-
             String storageKey = buildStorageKey(caseFolder.getId(), document.getId(), docRequest.filename());
             document.setStorageKey(storageKey);
             document.setStorageUrl(storageService.resolveUrl(storageKey));
-
-            document = documentRepository.save(document);
+            newDocuments.add(document);
 
             PresignedUpload presignedUpload = storageService.prepareUpload(storageKey, document.getMimeType(), document.getSizeBytes());
 
@@ -81,10 +84,18 @@ public class CaseService {
             uploads.add(uploadPlan);
         }
 
+        transactionOperations.executeWithoutResult(status -> {
+            caseFolderRepository.save(caseFolder);
+            documentRepository.saveAll(newDocuments);
+        });
+
         return new CaseCreateResponse(caseFolder.getId(), uploads);
     }
 
-    @Transactional
+    /**
+     * The document is read, then validated (storage reads and PDF parsing) with no transaction open, and its status
+     * finally set by a version-checked UPDATE: a database connection is only held for the two short queries.
+     */
     public DocumentDTO completeUpload(UUID caseId, UUID documentId) {
         Document document = documentRepository.findByIdAndCaseFolderId(documentId, caseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Document introuvable pour ce dossier"));
@@ -92,16 +103,30 @@ public class CaseService {
         try {
             documentValidationService.validate(document);
         } catch (DocumentValidationException e) {
-            document.setStatus(DocumentStatus.VALIDATION_FAILED);
-            documentRepository.save(document);
+            // A concurrent change wins; the client still learns why this attempt failed.
+            updateStatus(document, DocumentStatus.VALIDATION_FAILED, document.getUploadedAt());
             throw e;
         }
 
-        document.setStatus(DocumentStatus.UPLOADED);
-        document.setUploadedAt(Instant.now());
-        document = documentRepository.save(document);
+        boolean updated = updateStatus(document, DocumentStatus.UPLOADED, Instant.now());
+        // The UPDATE bypassed the persistence context: the row is read again for its new status and version.
+        Document current = documentRepository.findByIdAndCaseFolderId(documentId, caseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Document introuvable pour ce dossier"));
+        if (!updated && current.getStatus() != DocumentStatus.UPLOADED) {
+            throw new ObjectOptimisticLockingFailureException(Document.class, documentId);
+        }
+        // Otherwise completed here, or concurrently by another request: same outcome.
+
+        return new DocumentDTO(current.getId(), current.getFileType(), current.getStatus(), current.getMimeType(), current.getSizeBytes(), current.getStorageUrl());
+    }
 
-        return new DocumentDTO(document.getId(), document.getFileType(), document.getStatus(), document.getMimeType(), document.getSizeBytes(), document.getStorageUrl());
+    /**
+     * @return {@code false} when the document was modified since it was read
+     */
+    private boolean updateStatus(Document document, DocumentStatus status, Instant uploadedAt) {
+        Integer updated = transactionOperations.execute(tx ->
+                documentRepository.updateStatus(document.getId(), document.getVersion(), status, uploadedAt));
+        return updated != null && updated > 0;
     }
 
     private void validateMetadata(DocumentUploadRequest request) {
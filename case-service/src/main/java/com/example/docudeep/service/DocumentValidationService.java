@@ -0,0 +1,294 @@
+package com.example.docudeep.service;
+
+import com.docudeep.common.pdf.PdfTrailerInspector;
+import com.docudeep.common.validation.ValidationResultCache;
+import com.example.docudeep.Document;
+import com.example.docudeep.service.storage.StorageService;
+import com.example.docudeep.service.storage.dto.ByteRange;
+import com.example.docudeep.service.storage.dto.StoredObject;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Checks that a stored document can be opened while reading as little of it as possible: PDFs are judged on their
+ * header and trailer alone (see {@link PdfTrailerInspector}) and images on their header, both fetched with ranged
+ * reads. Only PDFs whose trailer cannot be located are copied to a temporary file for a full parse, so the heap used
+ * per validation does not grow with the document.
+ */
+@Service
+@RequiredArgsConstructor
+public class DocumentValidationService {
+
+    private static final long MAX_DOCUMENT_BYTES = 10 * 1024 * 1024L;
+    // Enough for the header of PNG files and of JPEG files with the usual EXIF/ICC segments before the frame header.
+    private static final int IMAGE_HEADER_BYTES = 256 * 1024;
+
+    /**
+     * Part of the cache key: bump it whenever a change here can turn a past outcome around.
+     */
+    static final String VALIDATOR_VERSION = "3";
+
+    private final StorageService storageService;
+    private final ValidationResultCache resultCache;
+
+    public void validate(Document document) {
+        String storageKey = document.getStorageKey();
+        Optional<StoredObject> stored;
+        try {
+            stored = storageService.stat(storageKey);
+        } catch (RuntimeException ex) {
+            throw new StoredFileUnavailableException(ex);
+        }
+        if (stored.isEmpty() || stored.get().size() == 0) {
+            throw new DocumentValidationException("Le fichier est vide ou inaccessible");
+        }
+        long size = stored.get().size();
+        if (size > MAX_DOCUMENT_BYTES) {
+            throw new DocumentValidationException("Le fichier dépasse la taille maximale de 10 Mo");
+        }
+
+        String mimeType = document.getMimeType();
+        if (mimeType == null) {
+            throw new DocumentValidationException("Type MIME manquant pour le document");
+        }
+
+        if (!mimeType.equalsIgnoreCase("application/pdf") && !mimeType.equalsIgnoreCase("image/png")
+                && !mimeType.equalsIgnoreCase("image/jpeg")) {
+            throw new DocumentValidationException("Type de fichier non supporté: " + mimeType);
+        }
+
+        String digest = stored.get().contentDigest();
+        if (digest == null) {
+            validateContent(storageKey, size, mimeType);
+            return;
+        }
+        ValidationResultCache.Key key = new ValidationResultCache.Key(digest, mimeType.toLowerCase(Locale.ROOT), VALIDATOR_VERSION);
+        Optional<ValidationResultCache.Result> cached = resultCache.get(key);
+        if (cached.isPresent()) {
+            if (!cached.get().valid()) {
+                throw new DocumentValidationException(cached.get().failureReason());
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            validateContent(storageKey, size, mimeType);
+        } catch (StoredFileUnavailableException e) {
+            throw e;
+        } catch (DocumentValidationException e) {
+            resultCache.put(key, new ValidationResultCache.Result(e.getMessage(), System.nanoTime() - start));
+            throw e;
+        }
+        resultCache.put(key, new ValidationResultCache.Result(null, System.nanoTime() - start));
+    }
+
+    private void validateContent(String storageKey, long size, String mimeType) {
+        if (mimeType.equalsIgnoreCase("application/pdf")) {
+            validatePdf(storageKey, size);
+        } else {
+            validateImage(storageKey, size, mimeType);
+        }
+    }
+
+    private void validatePdf(String storageKey, long size) {
+        PdfTrailerInspector.Outcome outcome;
+        try {
+            outcome = PdfTrailerInspector.inspect(size, prefetched(storageKey, size));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new DocumentValidationException("Impossible de lire le document PDF", e);
+        }
+        switch (outcome) {
+            case PLAIN -> {
+                // Readable and not encrypted.
+            }
+            case ENCRYPTED -> throw new DocumentValidationException("Le document PDF est protégé par mot de passe");
+            case UNKNOWN -> {
+                Path file = download(storageKey);
+                try {
+                    validatePdfFully(file);
+                } finally {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches the header and the tail of the file in one {@link StorageService#readRanges} call, so that both are
+     * requested together; the inspector normally finds everything it needs in them. Other reads go to storage.
+     */
+    private PdfTrailerInspector.RangeReader prefetched(String storageKey, long size) {
+        long tailOffset = Math.max(0, size - PdfTrailerInspector.WINDOW_BYTES);
+        List<ByteRange> ranges = tailOffset <= PdfTrailerInspector.HEADER_BYTES
+                ? List.of(new ByteRange(0, size))
+                : List.of(new ByteRange(0, PdfTrailerInspector.HEADER_BYTES), new ByteRange(tailOffset, size - tailOffset));
+        List<byte[]> blocks;
+        try {
+            blocks = storageService.readRanges(storageKey, ranges);
+        } catch (RuntimeException ex) {
+            throw new StoredFileUnavailableException(ex);
+        }
+        return (position, length) -> {
+            long end = Math.min(size, position + length);
+            for (int i = 0; i < ranges.size(); i++) {
+                long blockStart = ranges.get(i).offset();
+                byte[] block = blocks.get(i);
+                if (position >= blockStart && end <= blockStart + block.length) {
+                    return Arrays.copyOfRange(block, (int) (position - blockStart), (int) (end - blockStart));
+                }
+            }
+            try (InputStream input = openRange(storageKey, position, length)) {
+                return input.readNBytes(length);
+            }
+        };
+    }
+
+    /**
+     * Damaged cross-reference data: let PDFBox rebuild it, buffering in temporary files rather than on the heap.
+     */
+    private void validatePdfFully(Path file) {
+        try (PDDocument pdf = PDDocument.load(file.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (pdf.isEncrypted()) {
+                throw new DocumentValidationException("Le document PDF est protégé par mot de passe");
+            }
+        } catch (InvalidPasswordException e) {
+            throw new DocumentValidationException("Le document PDF est protégé par mot de passe", e);
+        } catch (IOException e) {
+            throw new DocumentValidationException("Impossible de lire le document PDF", e);
+        }
+    }
+
+    /**
+     * Reads the image header only: the format must match the declared type and the dimensions must be known. The
+     * first {@link #IMAGE_HEADER_BYTES} are tried first; the whole stream is read only when the header lies further.
+     */
+    private void validateImage(String storageKey, long size, String mimeType) {
+        long prefix = Math.min(size, IMAGE_HEADER_BYTES);
+        try {
+            checkImageHeader(openRange(storageKey, 0, prefix), mimeType);
+            return;
+        } catch (IOException e) {
+            if (prefix == size) {
+                throw new DocumentValidationException("Impossible de lire le fichier image", e);
+            }
+        }
+        try {
+            checkImageHeader(openStream(storageKey), mimeType);
+        } catch (IOException e) {
+            throw new DocumentValidationException("Impossible de lire le fichier image", e);
+        }
+    }
+
+    private static void checkImageHeader(InputStream content, String mimeType) throws IOException {
+        try (InputStream source = content; ImageInputStream input = new MemoryCacheImageInputStream(source)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new DocumentValidationException("Le fichier image est illisible");
+            }
+            ImageReader reader = readers.next();
+            try {
+                ImageReaderSpi provider = reader.getOriginatingProvider();
+                if (provider != null && Arrays.stream(provider.getMIMETypes()).noneMatch(mimeType::equalsIgnoreCase)) {
+                    throw new DocumentValidationException("Le contenu de l'image ne correspond pas au type déclaré: " + mimeType);
+                }
+                reader.setInput(input, true, true);
+                if (reader.getWidth(0) <= 0 || reader.getHeight(0) <= 0) {
+                    throw new DocumentValidationException("Le fichier image est illisible");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Copies the stored object to a temporary file.
+     */
+    private Path download(String storageKey) {
+        Path file;
+        try {
+            file = Files.createTempFile("docudeep-validation-", ".tmp");
+        } catch (IOException e) {
+            throw new StoredFileUnavailableException(e);
+        }
+        try {
+            storageService.download(storageKey, file);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw new StoredFileUnavailableException(e);
+        }
+        return file;
+    }
+
+    private InputStream openStream(String storageKey) {
+        try {
+            return new StorageInputStream(storageService.openStream(storageKey));
+        } catch (RuntimeException ex) {
+            throw new StoredFileUnavailableException(ex);
+        }
+    }
+
+    private InputStream openRange(String storageKey, long offset, long length) {
+        try {
+            return new StorageInputStream(storageService.openRange(storageKey, offset, length));
+        } catch (RuntimeException ex) {
+            throw new StoredFileUnavailableException(ex);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Left to the temporary directory's own cleanup.
+        }
+    }
+
+    /**
+     * Reports read errors from storage as {@link StoredFileUnavailableException}, so that a dropped connection is
+     * not mistaken for (and cached as) an unreadable document by the parsers, which see any I/O error alike.
+     */
+    private static final class StorageInputStream extends FilterInputStream {
+
+        StorageInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw new StoredFileUnavailableException(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                throw new StoredFileUnavailableException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.docudeep.service;
+
+/**
+ * The stored object could not be read. Unlike other validation failures it says nothing about the content, so it is
+ * never cached.
+ */
+class StoredFileUnavailableException extends DocumentValidationException {
+
+    StoredFileUnavailableException(Throwable cause) {
+        super("Impossible de récupérer le fichier stocké", cause);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.docudeep.service.storage;
+
+import com.example.docudeep.config.StorageProperties;
+import com.example.docudeep.service.storage.dto.PresignedUpload;
+import com.example.docudeep.service.storage.dto.StoredObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps objects as files under {@code docudeep.storage.local.root}, for development and tests without S3. Uploads
+ * are sent with {@code PUT} to {@code docudeep.storage.local.upload-url}, served by {@code LocalStorageController}.
+ */
+public class LocalStorageService implements StorageService {
+
+    private final Path root;
+    private final String uploadUrl;
+    private final StorageProperties properties;
+
+    public LocalStorageService(StorageProperties properties) throws IOException {
+        this.properties = properties;
+        this.root = properties.getLocal().getRoot().toAbsolutePath().normalize();
+        this.uploadUrl = properties.getLocal().getUploadUrl();
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public PresignedUpload prepareUpload(String storageKey, String mimeType, long contentLength) {
+        resolve(storageKey);
+        return new PresignedUpload(uploadUrl + "/" + storageKey, "PUT", Map.of("Content-Type", mimeType), properties.getPresignTtl());
+    }
+
+    /**
+     * Stores {@code content} under the key, replacing any previous object atomically.
+     */
+    public void write(String storageKey, InputStream content) throws IOException {
+        Path target = resolve(storageKey);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(content, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void store(String storageKey, Path source, String contentType) {
+        try (InputStream content = Files.newInputStream(source)) {
+            write(storageKey, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write " + storageKey, e);
+        }
+    }
+
+    @Override
+    public byte[] load(String storageKey) {
+        try {
+            return Files.readAllBytes(resolve(storageKey));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String storageKey) {
+        try {
+            return Files.newInputStream(resolve(storageKey));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String storageKey, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(storageKey), StandardOpenOption.READ);
+            channel.position(offset);
+            return new RangeInputStream(Channels.newInputStream(channel), Math.max(0, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    @Override
+    public ReadableByteChannel openChannel(String storageKey) {
+        try {
+            return FileChannel.open(resolve(storageKey), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String storageKey) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(storageKey), BasicFileAttributes.class);
+            String eTag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+            return Optional.of(new StoredObject(storageKey, attributes.size(), attributes.lastModifiedTime().toInstant(), eTag, null, null));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to stat " + storageKey, e);
+        }
+    }
+
+    @Override
+    public String resolveUrl(String storageKey) {
+        return resolve(storageKey).toUri().toString();
+    }
+
+    private Path resolve(String storageKey) {
+        Path path = root.resolve(storageKey).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Clé de stockage invalide : " + storageKey);
+        }
+        return path;
+    }
+
+    /**
+     * Stops after {@code remaining} bytes, like the body of a ranged S3 GET.
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.docudeep.service.storage;
+
+import com.example.docudeep.config.StorageProperties;
+import com.example.docudeep.service.storage.dto.ByteRange;
+import com.example.docudeep.service.storage.dto.PresignedUpload;
+import com.example.docudeep.service.storage.dto.StoredObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.BytesWrapper;
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * {@link StorageService} on the non-blocking {@link S3AsyncClient}. Independent requests are sent together instead of
+ * one round trip after the other: {@link #readRanges} fetches all ranges at once, and objects of at least
+ * {@code docudeep.storage.s3.multipart-threshold} are downloaded with parallel ranged GETs and stored with a parallel
+ * multipart upload, {@code transfer-parallelism} parts at a time. Every S3 call is timed in
+ * {@code docudeep.storage.s3.latency}, tagged with the operation and its outcome.
+ */
+public class S3AsyncStorageService implements StorageService {
+
+    // S3 rejects multipart uploads whose parts, the last one excepted, are smaller than 5 MiB.
+    private static final long MIN_PART_BYTES = 5L * 1024 * 1024;
+
+    private final StorageProperties properties;
+    private final S3Presigner presigner;
+    private final S3AsyncClient s3Client;
+    private final MeterRegistry meterRegistry;
+    private final long partSize;
+    private final long multipartThreshold;
+    private final int parallelism;
+
+    public S3AsyncStorageService(StorageProperties properties, S3Presigner presigner, S3AsyncClient s3Client,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.presigner = presigner;
+        this.s3Client = s3Client;
+        this.meterRegistry = meterRegistry;
+        this.partSize = Math.max(MIN_PART_BYTES, properties.getS3().getPartSize().toBytes());
+        this.multipartThreshold = Math.max(partSize, properties.getS3().getMultipartThreshold().toBytes());
+        this.parallelism = properties.getS3().getTransferParallelism();
+    }
+
+    @Override
+    public PresignedUpload prepareUpload(String storageKey, String mimeType, long contentLength) {
+        return S3StorageService.presignPut(properties, presigner, storageKey, mimeType, contentLength);
+    }
+
+    @Override
+    public InputStream openStream(String storageKey) {
+        GetObjectRequest request = get(storageKey).build();
+        return join(timed("get", () -> s3Client.getObject(request, AsyncResponseTransformer.toBlockingInputStream())));
+    }
+
+    @Override
+    public InputStream openRange(String storageKey, long offset, long length) {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        GetObjectRequest request = get(storageKey).range(range(offset, length)).build();
+        return join(timed("get-range", () -> s3Client.getObject(request, AsyncResponseTransformer.toBlockingInputStream())));
+    }
+
+    @Override
+    public List<byte[]> readRanges(String storageKey, List<ByteRange> ranges) {
+        List<CompletableFuture<byte[]>> blocks = new ArrayList<>(ranges.size());
+        for (ByteRange range : ranges) {
+            if (range.length() <= 0) {
+                blocks.add(CompletableFuture.completedFuture(new byte[0]));
+                continue;
+            }
+            GetObjectRequest request = get(storageKey).range(range(range.offset(), range.length())).build();
+            blocks.add(timed("get-range", () -> s3Client.getObject(request, AsyncResponseTransformer.toBytes()))
+                    .thenApply(BytesWrapper::asByteArray));
+        }
+        return blocks.stream().map(S3AsyncStorageService::join).toList();
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String storageKey) {
+        return head(storageKey).map(response -> new StoredObject(storageKey, response.contentLength(),
+                response.lastModified(), response.eTag(), response.contentType(),
+                S3StorageService.contentDigest(response.eTag())));
+    }
+
+    /**
+     * Small objects come in one GET; larger ones in ranged GETs written in place, all conditioned on the ETag read
+     * first so that an object replaced mid-transfer fails the download instead of mixing two versions.
+     */
+    @Override
+    public void download(String storageKey, Path target) {
+        HeadObjectResponse object = head(storageKey)
+                .orElseThrow(() -> NoSuchKeyException.builder().message("No object under " + storageKey).build());
+        long size = object.contentLength();
+        if (size < multipartThreshold) {
+            GetObjectRequest request = get(storageKey).ifMatch(object.eTag()).build();
+            join(timed("get", () -> s3Client.getObject(request,
+                    AsyncResponseTransformer.toFile(target, FileTransformerConfiguration.defaultCreateOrReplaceExisting()))));
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            join(inParallel(parts(size), part -> {
+                long offset = part * partSize;
+                GetObjectRequest request = get(storageKey)
+                        .range(range(offset, Math.min(partSize, size - offset)))
+                        .ifMatch(object.eTag())
+                        .build();
+                return timed("get-part", () -> s3Client.getObject(request, AsyncResponseTransformer.toBytes()))
+                        .thenAccept(bytes -> write(channel, bytes.asByteBuffer(), offset));
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to download " + storageKey, e);
+        }
+    }
+
+    @Override
+    public void store(String storageKey, Path source, String contentType) {
+        long size;
+        try {
+            size = Files.size(source);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + source, e);
+        }
+        if (size < multipartThreshold) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(properties.getBucket())
+                    .key(storageKey)
+                    .contentType(contentType)
+                    .serverSideEncryption(ServerSideEncryption.AES256)
+                    .build();
+            join(timed("put", () -> s3Client.putObject(request, AsyncRequestBody.fromFile(source))));
+            return;
+        }
+        storeInParts(storageKey, source, contentType, size);
+    }
+
+    private void storeInParts(String storageKey, Path source, String contentType, long size) {
+        String uploadId = join(timed("create-multipart", () -> s3Client.createMultipartUpload(request -> request
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .contentType(contentType)
+                .serverSideEncryption(ServerSideEncryption.AES256)))).uploadId();
+        CompletedPart[] completed = new CompletedPart[(int) parts(size)];
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            join(inParallel(completed.length, part -> {
+                long offset = part * partSize;
+                int partNumber = (int) part + 1;
+                ByteBuffer content = read(channel, offset, (int) Math.min(partSize, size - offset));
+                return timed("upload-part", () -> s3Client.uploadPart(request -> request
+                                .bucket(properties.getBucket())
+                                .key(storageKey)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) content.remaining()),
+                        AsyncRequestBody.fromByteBuffer(content)))
+                        .thenAccept(response -> completed[partNumber - 1] = CompletedPart.builder()
+                                .partNumber(partNumber)
+                                .eTag(response.eTag())
+                                .build());
+            }));
+            join(timed("complete-multipart", () -> s3Client.completeMultipartUpload(request -> request
+                    .bucket(properties.getBucket())
+                    .key(storageKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(completed)))));
+        } catch (IOException | RuntimeException e) {
+            // Parts already sent are billed until the upload is aborted.
+            timed("abort-multipart", () -> s3Client.abortMultipartUpload(request -> request
+                    .bucket(properties.getBucket())
+                    .key(storageKey)
+                    .uploadId(uploadId)));
+            throw e instanceof IOException io ? new UncheckedIOException("Unable to store " + storageKey, io) : (RuntimeException) e;
+        }
+    }
+
+    @Override
+    public String resolveUrl(String storageKey) {
+        return "s3://" + properties.getBucket() + "/" + storageKey;
+    }
+
+    private Optional<HeadObjectResponse> head(String storageKey) {
+        try {
+            return Optional.of(join(timed("head", () -> s3Client.headObject(request -> request
+                    .bucket(properties.getBucket())
+                    .key(storageKey)))));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private GetObjectRequest.Builder get(String storageKey) {
+        return GetObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey);
+    }
+
+    private long parts(long size) {
+        return (size + partSize - 1) / partSize;
+    }
+
+    /**
+     * Runs {@code task} for parts {@code 0..count-1}, at most {@link #parallelism} at a time: each lane takes every
+     * {@code lanes}-th part and starts the next one when the previous completes, so at most that many part buffers
+     * exist at once. Completes once every lane has finished, failed or not.
+     */
+    private CompletableFuture<Void> inParallel(long count, LongFunction<CompletableFuture<Void>> task) {
+        int lanes = (int) Math.min(parallelism, count);
+        CompletableFuture<?>[] chains = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (long part = lane; part < count; part += lanes) {
+                long current = part;
+                chain = chain.thenCompose(ignored -> task.apply(current));
+            }
+            chains[lane] = chain;
+        }
+        return CompletableFuture.allOf(chains);
+    }
+
+    private <T> CompletableFuture<T> timed(String operation, Supplier<CompletableFuture<T>> request) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return request.get().whenComplete((result, failure) -> sample.stop(Timer.builder("docudeep.storage.s3.latency")
+                .description("Duration of S3 requests, until the response headers for streamed reads")
+                .tag("operation", operation)
+                .tag("outcome", failure == null ? "success" : "error")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)));
+    }
+
+    private static String range(long offset, long length) {
+        return "bytes=" + offset + "-" + (offset + length - 1);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer content, long position) {
+        try {
+            long at = position;
+            while (content.hasRemaining()) {
+                at += channel.write(content, at);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits for the request and rethrows the SDK exception itself rather than the {@link CompletionException}
+     * wrapping it, as the synchronous client would.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            throw e;
+        }
+    }
+}
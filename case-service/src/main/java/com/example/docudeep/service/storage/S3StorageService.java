@@ -0,0 +1,139 @@
+package com.example.docudeep.service.storage;
+
+import com.example.docudeep.config.StorageProperties;
+import com.example.docudeep.service.storage.dto.PresignedUpload;
+import com.example.docudeep.service.storage.dto.StoredObject;
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class S3StorageService implements StorageService {
+
+    private final StorageProperties properties;
+    private final S3Presigner presigner;
+    private final S3Client s3Client;
+
+    @Override
+    public PresignedUpload prepareUpload(String storageKey, String mimeType, long contentLength) {
+        return presignPut(properties, presigner, storageKey, mimeType, contentLength);
+    }
+
+    static PresignedUpload presignPut(StorageProperties properties, S3Presigner presigner, String storageKey,
+                                      String mimeType, long contentLength) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .contentType(mimeType)
+                .contentLength(contentLength)
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .build();
+
+        PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
+                .putObjectRequest(putObjectRequest)
+                .signatureDuration(properties.getPresignTtl())
+                .build();
+
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(presignRequest);
+
+        Map<String, String> headers = new HashMap<>();
+        presigned.httpRequest().headers().forEach((key, values) -> {
+            if (!values.isEmpty()) {
+                headers.put(key, values.get(0));
+            }
+        });
+
+        return new PresignedUpload(presigned.url().toString(), presigned.httpRequest().method().name(), headers, properties.getPresignTtl());
+    }
+
+    @Override
+    public void store(String storageKey, Path source, String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .contentType(contentType)
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .build();
+        s3Client.putObject(request, RequestBody.fromFile(source));
+    }
+
+    @Override
+    public byte[] load(String storageKey) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .build();
+        return s3Client.getObject(request, ResponseTransformer.toBytes()).asByteArray();
+    }
+
+    @Override
+    public InputStream openStream(String storageKey) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .build();
+        return s3Client.getObject(request);
+    }
+
+    @Override
+    public InputStream openRange(String storageKey, long offset, long length) {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+        return s3Client.getObject(request);
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String storageKey) {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(storageKey)
+                .build();
+        try {
+            HeadObjectResponse response = s3Client.headObject(request);
+            return Optional.of(new StoredObject(storageKey, response.contentLength(), response.lastModified(),
+                    response.eTag(), response.contentType(), contentDigest(response.eTag())));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The ETag of an object written in one PUT with SSE-S3, as {@link #presignPut} requires, is the MD5 of its
+     * content. Multipart ETags ({@code "...-N"}) are not, and are ignored.
+     */
+    static String contentDigest(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        String value = eTag.replace("\"", "");
+        return value.matches("[0-9a-fA-F]{32}") ? "md5:" + value.toLowerCase(Locale.ROOT) : null;
+    }
+
+    @Override
+    public String resolveUrl(String storageKey) {
+        return "s3://" + properties.getBucket() + "/" + storageKey;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.docudeep.service.storage;
+
+import com.example.docudeep.service.storage.dto.ByteRange;
+import com.example.docudeep.service.storage.dto.PresignedUpload;
+import com.example.docudeep.service.storage.dto.StoredObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public interface StorageService {
+
+    PresignedUpload prepareUpload(String storageKey, String mimeType, long contentLength);
+
+    /**
+     * Reads the whole object into memory. Prefer {@link #openStream} or {@link #openRange} for anything that does
+     * not need every byte at once.
+     */
+    default byte[] load(String storageKey) {
+        try (InputStream input = openStream(storageKey)) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    /**
+     * Opens the stored object for sequential reading without buffering it in memory. The caller closes the stream.
+     */
+    InputStream openStream(String storageKey);
+
+    /**
+     * Opens {@code length} bytes of the object starting at {@code offset}; fewer are returned when the object ends
+     * first. Only the requested bytes are transferred. The caller closes the stream.
+     */
+    InputStream openRange(String storageKey, long offset, long length);
+
+    /**
+     * Reads several ranges of the object, in the order requested. Implementations may fetch them concurrently.
+     */
+    default List<byte[]> readRanges(String storageKey, List<ByteRange> ranges) {
+        List<byte[]> blocks = new ArrayList<>(ranges.size());
+        for (ByteRange range : ranges) {
+            try (InputStream input = openRange(storageKey, range.offset(), range.length())) {
+                blocks.add(input.readNBytes((int) range.length()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read " + storageKey, e);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Copies the object to {@code target}, replacing it. Implementations may fetch large objects in parallel parts.
+     */
+    default void download(String storageKey, Path target) {
+        try (InputStream input = openStream(storageKey)) {
+            Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + storageKey, e);
+        }
+    }
+
+    /**
+     * Stores the content of {@code source} under the key, for objects produced by the application itself (client
+     * uploads go through {@link #prepareUpload}).
+     */
+    void store(String storageKey, Path source, String contentType);
+
+    default ReadableByteChannel openChannel(String storageKey) {
+        return Channels.newChannel(openStream(storageKey));
+    }
+
+    /**
+     * Size and validators of the object, without reading its content.
+     *
+     * @return empty when no object is stored under this key
+     */
+    Optional<StoredObject> stat(String storageKey);
+
+    String resolveUrl(String storageKey);
+}
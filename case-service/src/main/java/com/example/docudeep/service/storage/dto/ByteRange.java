@@ -0,0 +1,4 @@
+package com.example.docudeep.service.storage.dto;
+
+public record ByteRange(long offset, long length) {
+}
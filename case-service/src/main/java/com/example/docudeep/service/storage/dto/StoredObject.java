@@ -0,0 +1,11 @@
+package com.example.docudeep.service.storage.dto;
+
+import java.time.Instant;
+
+/**
+ * @param contentDigest digest of the bytes, prefixed with its algorithm ({@code md5:...}), or {@code null} when the
+ *                      backend does not know it without reading the object
+ */
+public record StoredObject(String storageKey, long size, Instant lastModified, String eTag, String contentType,
+                           String contentDigest) {
+}
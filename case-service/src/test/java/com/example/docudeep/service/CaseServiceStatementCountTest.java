@@ -0,0 +1,93 @@
+package com.example.docudeep.service;
+
+import com.example.docudeep.Document;
+import com.example.docudeep.api.dto.CaseCreateRequest;
+import com.example.docudeep.api.dto.DocumentUploadRequest;
+import com.example.docudeep.repo.DocumentRepository;
+import com.example.docudeep.service.storage.StorageService;
+import com.example.docudeep.service.storage.dto.PresignedUpload;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the JDBC statements Hibernate prepares for {@link CaseService#createCase}: one INSERT for the case and one
+ * batched INSERT for its documents, however many documents there are, and no SELECT.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=25",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(CaseService.class)
+class CaseServiceStatementCountTest {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Document.class)
+    @EnableJpaRepositories(basePackageClasses = DocumentRepository.class)
+    static class JpaTestConfiguration {
+    }
+
+    @Autowired
+    private CaseService caseService;
+    @Autowired
+    private DocumentRepository documentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @MockBean
+    private StorageService storageService;
+    @MockBean
+    private DocumentValidationService documentValidationService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        when(storageService.prepareUpload(anyString(), anyString(), anyLong()))
+                .thenReturn(new PresignedUpload("https://upload", "PUT", Map.of(), Duration.ofMinutes(15)));
+        when(storageService.resolveUrl(anyString())).thenAnswer(invocation -> "s3://bucket/" + invocation.getArgument(0));
+    }
+
+    @Test
+    void shouldInsertACaseWithTheSameNumberOfStatementsWhateverItsSize() {
+        long single = statementsFor(1);
+        long full = statementsFor(5);
+
+        assertThat(single).isEqualTo(2);
+        assertThat(full).isEqualTo(single);
+        assertThat(documentRepository.count()).isEqualTo(6);
+    }
+
+    private long statementsFor(int documents) {
+        statistics.clear();
+        caseService.createCase(new CaseCreateRequest(Collections.nCopies(documents,
+                new DocumentUploadRequest("payslip.pdf", "application/pdf", 1024L, "PAYSLIP"))));
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(documents + 1L);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.docudeep.service;
 
+import com.docudeep.common.validation.ValidationResultCache;
 import com.example.docudeep.CaseFolder;
 import com.example.docudeep.Document;
 import com.example.docudeep.DocumentStatus;
@@ -10,6 +11,8 @@ import com.example.docudeep.repo.CaseFolderRepository;
 import com.example.docudeep.repo.DocumentRepository;
 import com.example.docudeep.service.storage.StorageService;
 import com.example.docudeep.service.storage.dto.PresignedUpload;
+import com.example.docudeep.service.storage.dto.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
@@ -18,11 +21,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -42,15 +50,19 @@ class CaseServiceTest {
     private DocumentRepository documentRepository;
     @Mock
     private StorageService storageService;
+    @Captor
+    private ArgumentCaptor<List<Document>> savedDocuments;
 
     private CaseService caseService;
 
     @BeforeEach
     void setUp() {
-        DocumentValidationService documentValidationService = new DocumentValidationService(storageService);
-        caseService = new CaseService(caseFolderRepository, documentRepository, storageService, documentValidationService);
+        DocumentValidationService documentValidationService = new DocumentValidationService(storageService,
+                new ValidationResultCache(100, new SimpleMeterRegistry()));
+        caseService = new CaseService(caseFolderRepository, documentRepository, storageService, documentValidationService,
+                TransactionOperations.withoutTransaction());
 
-        when(caseFolderRepository.save(any(CaseFolder.class))).thenAnswer(invocation -> {
+        lenient().when(caseFolderRepository.save(any(CaseFolder.class))).thenAnswer(invocation -> {
             CaseFolder folder = invocation.getArgument(0);
             if (folder.getId() == null) {
                 folder.setId(UUID.randomUUID());
@@ -58,7 +70,7 @@ class CaseServiceTest {
             return folder;
         });
 
-        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
+        lenient().when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
             Document document = invocation.getArgument(0);
             if (document.getId() == null) {
                 document.setId(UUID.randomUUID());
@@ -87,7 +99,14 @@ class CaseServiceTest {
             assertThat(upload.method()).isEqualTo("PUT");
         });
 
-        verify(documentRepository, atLeast(2)).save(any(Document.class));
+        verify(documentRepository).saveAll(savedDocuments.capture());
+        verify(documentRepository, never()).save(any(Document.class));
+        verify(caseFolderRepository).save(any(CaseFolder.class));
+        assertThat(savedDocuments.getValue()).hasSize(2).allSatisfy(document -> {
+            assertThat(document.getId()).isNotNull();
+            assertThat(document.getStorageKey()).isEqualTo("cases/" + response.caseId() + "/" + document.getId() + "/" + document.getFilename());
+            assertThat(document.isNew()).isTrue();
+        });
     }
 
     @Test
@@ -108,33 +127,62 @@ class CaseServiceTest {
 
     @Test
     void shouldValidateAndMarkDocumentUploaded() throws Exception {
-        UUID caseId = UUID.randomUUID();
-        UUID documentId = UUID.randomUUID();
-        Document document = new Document();
-        document.setId(documentId);
-        CaseFolder folder = new CaseFolder();
-        folder.setId(caseId);
-        document.setCaseFolder(folder);
-        document.setMimeType("application/pdf");
-        document.setStorageKey("cases/" + caseId + "/" + documentId + "/file.pdf");
-        document.setFileType(DocumentType.PAYSLIP);
-        document.setSizeBytes(1024L);
+        Document document = storedDocument();
+        UUID caseId = document.getCaseFolder().getId();
+        UUID documentId = document.getId();
 
-        when(documentRepository.findByIdAndCaseFolderId(documentId, caseId)).thenReturn(Optional.of(document));
-        when(storageService.load(document.getStorageKey())).thenReturn(createSimplePdf(false));
-        when(storageService.resolveUrl(anyString())).thenReturn("s3://bucket/file.pdf");
-        when(storageService.prepareUpload(anyString(), anyString(), anyLong())).thenReturn(new PresignedUpload("https://upload", "PUT", Map.of(), Duration.ofMinutes(15)));
+        Document updated = storedDocument();
+        updated.setStatus(DocumentStatus.UPLOADED);
+        updated.setVersion(1L);
+
+        when(documentRepository.findByIdAndCaseFolderId(documentId, caseId)).thenReturn(Optional.of(document))
+                .thenReturn(Optional.of(updated));
+        stubStoredObject(document.getStorageKey(), createSimplePdf(false));
+        when(documentRepository.updateStatus(eq(documentId), eq(0L), eq(DocumentStatus.UPLOADED), any(Instant.class))).thenReturn(1);
 
         var dto = caseService.completeUpload(caseId, documentId);
 
         assertThat(dto.status()).isEqualTo(DocumentStatus.UPLOADED);
-        ArgumentCaptor<Document> captor = ArgumentCaptor.forClass(Document.class);
-        verify(documentRepository, atLeast(1)).save(captor.capture());
-        assertThat(captor.getAllValues()).anySatisfy(saved -> assertThat(saved.getStatus()).isEqualTo(DocumentStatus.UPLOADED));
+        assertThat(document.getVersion()).isZero();
+        verify(documentRepository, times(2)).findByIdAndCaseFolderId(documentId, caseId);
+        verify(documentRepository, never()).save(any(Document.class));
     }
 
     @Test
     void shouldFlagPasswordProtectedPdf() throws Exception {
+        Document document = storedDocument();
+        UUID caseId = document.getCaseFolder().getId();
+        UUID documentId = document.getId();
+
+        when(documentRepository.findByIdAndCaseFolderId(documentId, caseId)).thenReturn(Optional.of(document));
+        stubStoredObject(document.getStorageKey(), createSimplePdf(true));
+
+        assertThatThrownBy(() -> caseService.completeUpload(caseId, documentId))
+                .isInstanceOf(DocumentValidationException.class)
+                .hasMessageContaining("mot de passe");
+
+        verify(documentRepository).updateStatus(eq(documentId), eq(0L), eq(DocumentStatus.VALIDATION_FAILED), isNull());
+    }
+
+    @Test
+    void shouldReportAConflictWhenTheDocumentChangedDuringValidation() throws Exception {
+        Document document = storedDocument();
+        UUID caseId = document.getCaseFolder().getId();
+        UUID documentId = document.getId();
+        Document changed = storedDocument();
+        changed.setStatus(DocumentStatus.VALIDATION_FAILED);
+        changed.setVersion(1L);
+
+        when(documentRepository.findByIdAndCaseFolderId(documentId, caseId)).thenReturn(Optional.of(document))
+                .thenReturn(Optional.of(changed));
+        stubStoredObject(document.getStorageKey(), createSimplePdf(false));
+        when(documentRepository.updateStatus(eq(documentId), eq(0L), eq(DocumentStatus.UPLOADED), any(Instant.class))).thenReturn(0);
+
+        assertThatThrownBy(() -> caseService.completeUpload(caseId, documentId))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    private Document storedDocument() {
         UUID caseId = UUID.randomUUID();
         UUID documentId = UUID.randomUUID();
         Document document = new Document();
@@ -146,15 +194,21 @@ class CaseServiceTest {
         document.setStorageKey("cases/" + caseId + "/" + documentId + "/file.pdf");
         document.setFileType(DocumentType.PAYSLIP);
         document.setSizeBytes(1024L);
+        document.setVersion(0L);
+        return document;
+    }
 
-        when(documentRepository.findByIdAndCaseFolderId(documentId, caseId)).thenReturn(Optional.of(document));
-        when(storageService.load(document.getStorageKey())).thenReturn(createSimplePdf(true));
-
-        assertThatThrownBy(() -> caseService.completeUpload(caseId, documentId))
-                .isInstanceOf(DocumentValidationException.class)
-                .hasMessageContaining("mot de passe");
-
-        verify(documentRepository, atLeastOnce()).save(argThat(doc -> doc.getStatus() == DocumentStatus.VALIDATION_FAILED));
+    private void stubStoredObject(String storageKey, byte[] content) {
+        when(storageService.stat(storageKey))
+                .thenReturn(Optional.of(new StoredObject(storageKey, content.length, Instant.now(), "\"test\"", "application/pdf", null)));
+        lenient().when(storageService.openRange(eq(storageKey), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int offset = (int) Math.min(invocation.<Long>getArgument(1), content.length);
+            int length = (int) Math.min(invocation.<Long>getArgument(2), content.length - offset);
+            return new ByteArrayInputStream(content, offset, length);
+        });
+        lenient().when(storageService.readRanges(eq(storageKey), anyList())).thenCallRealMethod();
+        lenient().when(storageService.openStream(storageKey)).thenAnswer(invocation -> new ByteArrayInputStream(content));
+        lenient().doCallRealMethod().when(storageService).download(eq(storageKey), any());
     }
 
     private byte[] createSimplePdf(boolean passwordProtected) throws Exception {
@@ -0,0 +1,67 @@
+package com.example.docudeep.service;
+
+import com.example.docudeep.Document;
+import com.example.docudeep.DocumentStatus;
+import com.example.docudeep.repo.DocumentRepository;
+import com.example.docudeep.service.storage.StorageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Completes uploads of rows inserted without a version, as rows written before the column existed, against the
+ * schema Hibernate generates.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(CaseService.class)
+class CaseServiceVersionTest {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Document.class)
+    @EnableJpaRepositories(basePackageClasses = DocumentRepository.class)
+    static class JpaTestConfiguration {
+    }
+
+    @Autowired
+    private CaseService caseService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private StorageService storageService;
+    @MockBean
+    private DocumentValidationService documentValidationService;
+
+    @Test
+    void shouldCompleteADocumentStoredWithoutAVersion() {
+        UUID caseId = UUID.randomUUID();
+        UUID documentId = UUID.randomUUID();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("insert into case_folder (id, created_at, status) values (?, ?, 'OPEN')", caseId, now);
+        jdbcTemplate.update("insert into document (id, case_id, filename, file_type, mime_type, size_bytes, storage_key, "
+                + "status, created_at) values (?, ?, 'payslip.pdf', 'PAYSLIP', 'application/pdf', 1024, 'cases/key', "
+                + "'PENDING_UPLOAD', ?)", documentId, caseId, now);
+
+        var dto = caseService.completeUpload(caseId, documentId);
+
+        assertThat(dto.status()).isEqualTo(DocumentStatus.UPLOADED);
+        assertThat(jdbcTemplate.queryForObject("select version from document where id = ?", Long.class, documentId))
+                .isEqualTo(1L);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.docudeep.service;
+
+import com.docudeep.common.validation.ValidationResultCache;
+import com.example.docudeep.Document;
+import com.example.docudeep.service.storage.StorageService;
+import com.example.docudeep.service.storage.dto.StoredObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentValidationServiceTest {
+
+    @Mock
+    private StorageService storageService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DocumentValidationService validationService;
+
+    @BeforeEach
+    void setUp() {
+        validationService = new DocumentValidationService(storageService, new ValidationResultCache(100, meterRegistry));
+    }
+
+    @Test
+    void shouldDetectEncryptionDeclaredInACrossReferenceStream() {
+        String body = "%PDF-1.5\n1 0 obj\n<< /Type /Catalog >>\nendobj\n";
+        String pdf = body
+                + "2 0 obj\n<< /Type /XRef /Size 3 /W [1 2 1] /Root 1 0 R /Encrypt 4 0 R /DecodeParms << /Columns 4 >> /Length 0 >>\n"
+                + "stream\n\nendstream\nendobj\nstartxref\n" + body.length() + "\n%%EOF\n";
+
+        assertThatThrownBy(() -> validationService.validate(document("application/pdf", pdf.getBytes(StandardCharsets.ISO_8859_1))))
+                .isInstanceOf(DocumentValidationException.class)
+                .hasMessageContaining("mot de passe");
+    }
+
+    @Test
+    void shouldJudgeAPdfOnItsHeaderAndTrailerRangesOnly() {
+        String body = "%PDF-1.4\n1 0 obj\n<< /Type /Catalog >>\nendobj\n" + "%".repeat(200_000) + "\n";
+        String pdf = body + "xref\n0 2\n0000000000 65535 f \n0000000009 00000 n \ntrailer\n<< /Size 2 /Root 1 0 R >>\n"
+                + "startxref\n" + body.length() + "\n%%EOF\n";
+
+        assertThatCode(() -> validationService.validate(document("application/pdf", pdf.getBytes(StandardCharsets.ISO_8859_1))))
+                .doesNotThrowAnyException();
+        verify(storageService).readRanges(any(), argThat(ranges -> ranges.size() == 2));
+        verify(storageService, never()).openStream(any());
+        verify(storageService, atMost(2)).openRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void shouldReadImageHeaderWithoutDecoding() throws Exception {
+        byte[] png = image("png");
+
+        assertThatCode(() -> validationService.validate(document("image/png", png))).doesNotThrowAnyException();
+        verify(storageService, never()).openStream(any());
+    }
+
+    @Test
+    void shouldReuseTheOutcomeForIdenticalContent() throws Exception {
+        byte[] png = image("png");
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThatThrownBy(() -> validationService.validate(document("image/jpeg", png)))
+                    .isInstanceOf(DocumentValidationException.class)
+                    .hasMessageContaining("type déclaré");
+        }
+
+        verify(storageService, times(1)).openRange(any(), anyLong(), anyLong());
+        assertThat(meterRegistry.get("docudeep.validation.cache.requests").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldRejectMissingObject() {
+        Document document = new Document();
+        document.setMimeType("application/pdf");
+        document.setStorageKey("cases/test/missing");
+        when(storageService.stat(document.getStorageKey())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> validationService.validate(document))
+                .isInstanceOf(DocumentValidationException.class)
+                .hasMessageContaining("vide ou inaccessible");
+    }
+
+    @Test
+    void shouldRejectImageWhoseFormatDiffersFromTheDeclaredType() throws Exception {
+        byte[] png = image("png");
+
+        assertThatThrownBy(() -> validationService.validate(document("image/jpeg", png)))
+                .isInstanceOf(DocumentValidationException.class)
+                .hasMessageContaining("type déclaré");
+    }
+
+    private Document document(String mimeType, byte[] content) {
+        Document document = new Document();
+        document.setMimeType(mimeType);
+        document.setStorageKey("cases/test/document");
+        when(storageService.stat(document.getStorageKey()))
+                .thenReturn(Optional.of(new StoredObject(document.getStorageKey(), content.length, Instant.now(), "\"test\"", mimeType, md5(content))));
+        lenient().when(storageService.openRange(eq(document.getStorageKey()), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int offset = (int) Math.min(invocation.<Long>getArgument(1), content.length);
+            int length = (int) Math.min(invocation.<Long>getArgument(2), content.length - offset);
+            return new ByteArrayInputStream(content, offset, length);
+        });
+        lenient().when(storageService.readRanges(eq(document.getStorageKey()), anyList())).thenCallRealMethod();
+        return document;
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return "md5:" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] image(String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.docudeep.service.storage;
+
+import com.example.docudeep.config.StorageConfiguration;
+import com.example.docudeep.config.StorageProperties;
+import com.example.docudeep.service.storage.dto.ByteRange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against an S3-compatible server, e.g. the {@code minio} service of docker-compose:
+ * {@code DOCUDEEP_S3_ENDPOINT=http://localhost:9000 AWS_ACCESS_KEY_ID=docudeep AWS_SECRET_ACCESS_KEY=docudeep-secret AWS_REGION=eu-west-3}.
+ */
+@EnabledIfEnvironmentVariable(named = "DOCUDEEP_S3_ENDPOINT", matches = ".+")
+class S3AsyncStorageServiceTest {
+
+    @TempDir
+    Path workDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private S3AsyncClient s3Client;
+    private S3AsyncStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setBucket("docudeep-test");
+        properties.getS3().setEndpoint(URI.create(System.getenv("DOCUDEEP_S3_ENDPOINT")));
+        properties.getS3().setPathStyleAccess(true);
+        properties.getS3().setPartSize(DataSize.ofMegabytes(5));
+        properties.getS3().setMultipartThreshold(DataSize.ofMegabytes(5));
+        StorageConfiguration configuration = new StorageConfiguration(properties);
+        s3Client = configuration.s3AsyncClient();
+        try {
+            s3Client.createBucket(request -> request.bucket(properties.getBucket())).join();
+        } catch (RuntimeException e) {
+            if (!(e.getCause() instanceof BucketAlreadyOwnedByYouException)) {
+                throw e;
+            }
+        }
+        storageService = new S3AsyncStorageService(properties, configuration.s3Presigner(), s3Client, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3Client.close();
+    }
+
+    @Test
+    void largeObjectsRoundTripInParallelParts() throws Exception {
+        byte[] content = new byte[12 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(content);
+        Path source = Files.write(workDir.resolve("source.bin"), content);
+        String key = "tests/" + UUID.randomUUID();
+
+        storageService.store(key, source, "application/octet-stream");
+        Path copy = workDir.resolve("copy.bin");
+        storageService.download(key, copy);
+
+        assertThat(Files.readAllBytes(copy)).isEqualTo(content);
+        assertThat(storageService.stat(key)).hasValueSatisfying(object -> assertThat(object.size()).isEqualTo(content.length));
+        assertThat(meterRegistry.get("docudeep.storage.s3.latency").tag("operation", "upload-part").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("docudeep.storage.s3.latency").tag("operation", "get-part").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void rangesAreReadTogether() throws Exception {
+        byte[] content = "%PDF-1.7 ... trailer".getBytes();
+        String key = "tests/" + UUID.randomUUID();
+        storageService.store(key, Files.write(workDir.resolve("small.pdf"), content), "application/pdf");
+
+        List<byte[]> blocks = storageService.readRanges(key, List.of(new ByteRange(0, 5), new ByteRange(content.length - 7, 7)));
+
+        assertThat(new String(blocks.get(0))).isEqualTo("%PDF-");
+        assertThat(new String(blocks.get(1))).isEqualTo("trailer");
+        assertThat(storageService.stat("tests/missing-" + UUID.randomUUID())).isEmpty();
+    }
+}
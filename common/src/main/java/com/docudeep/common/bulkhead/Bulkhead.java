@@ -0,0 +1,19 @@
+package com.docudeep.common.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a handler method under the bulkhead of an endpoint class, see {@link BulkheadInterceptor}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    /**
+     * Name of the endpoint class, one of those the interceptor was given.
+     */
+    String value();
+}
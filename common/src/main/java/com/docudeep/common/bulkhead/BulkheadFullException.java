@@ -0,0 +1,18 @@
+package com.docudeep.common.bulkhead;
+
+/**
+ * Every permit of an endpoint class is taken; the request is refused rather than left waiting for a thread.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private final String endpointClass;
+
+    public BulkheadFullException(String endpointClass) {
+        super("Le service est momentanément saturé, merci de réessayer dans quelques instants.");
+        this.endpointClass = endpointClass;
+    }
+
+    public String getEndpointClass() {
+        return endpointClass;
+    }
+}
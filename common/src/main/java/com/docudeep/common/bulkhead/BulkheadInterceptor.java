@@ -0,0 +1,96 @@
+package com.docudeep.common.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of requests in flight per endpoint class with one semaphore each, enabled with
+ * {@code concurrency.bulkheads.enabled}. Each service names its endpoint classes and their default limits, and
+ * registers an instance with Spring MVC.
+ * <p>
+ * A request that finds no permit within {@code concurrency.bulkheads.max-wait} is refused with
+ * {@link BulkheadFullException}. This matters most with virtual threads, where the container no longer bounds
+ * concurrency by its thread pool: the bulkheads become the only limit, and each class gets its own.
+ */
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = BulkheadInterceptor.class.getName() + ".permit";
+
+    private final boolean enabled;
+    private final long maxWaitNanos;
+    private final Map<String, Semaphore> permits = new HashMap<>();
+    private final Map<String, Counter> rejected = new HashMap<>();
+
+    /**
+     * @param defaultLimits permits of each endpoint class, by name, unless {@code concurrency.bulkheads.limits}
+     *                      overrides them
+     * @throws IllegalArgumentException when {@code concurrency.bulkheads.limits} names a class not in
+     *                                  {@code defaultLimits}
+     */
+    public BulkheadInterceptor(ConcurrencyProperties properties, Map<String, Integer> defaultLimits,
+                               MeterRegistry meterRegistry) {
+        ConcurrencyProperties.Bulkheads bulkheads = properties.getBulkheads();
+        for (String endpointClass : bulkheads.getLimits().keySet()) {
+            if (!defaultLimits.containsKey(endpointClass)) {
+                throw new IllegalArgumentException("Unknown endpoint class in concurrency.bulkheads.limits: "
+                    + endpointClass + ", expected one of " + defaultLimits.keySet());
+            }
+        }
+        this.enabled = bulkheads.isEnabled();
+        this.maxWaitNanos = bulkheads.getMaxWait().toNanos();
+        defaultLimits.forEach((endpointClass, defaultLimit) -> {
+            int limit = bulkheads.getLimits().getOrDefault(endpointClass, defaultLimit);
+            Semaphore semaphore = new Semaphore(Math.max(1, limit));
+            permits.put(endpointClass, semaphore);
+            rejected.put(endpointClass, Counter.builder("docudeep.bulkhead.rejected")
+                .description("Requests refused because their bulkhead was full")
+                .tag("endpoint", endpointClass)
+                .register(meterRegistry));
+            Gauge.builder("docudeep.bulkhead.available", semaphore, Semaphore::availablePermits)
+                .description("Free permits of the bulkhead")
+                .tag("endpoint", endpointClass)
+                .register(meterRegistry);
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!enabled || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        Bulkhead bulkhead = method.getMethodAnnotation(Bulkhead.class);
+        if (bulkhead == null) {
+            return true;
+        }
+        String endpointClass = bulkhead.value();
+        Semaphore semaphore = permits.get(endpointClass);
+        if (semaphore == null) {
+            throw new IllegalStateException("No bulkhead for endpoint class " + endpointClass + " on " + method);
+        }
+        if (!semaphore.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            rejected.get(endpointClass).increment();
+            throw new BulkheadFullException(endpointClass);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, endpointClass);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof String endpointClass) {
+            // Cleared first: an error dispatch of the same request runs the interceptor chain again.
+            request.setAttribute(PERMIT_ATTRIBUTE, null);
+            permits.get(endpointClass).release();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.docudeep.common.bulkhead;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "concurrency")
+public class ConcurrencyProperties {
+
+    private final Bulkheads bulkheads = new Bulkheads();
+
+    public Bulkheads getBulkheads() {
+        return bulkheads;
+    }
+
+    public static class Bulkheads {
+
+        /**
+         * Limit the requests in flight per endpoint class.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long a request may wait for a permit before being refused with 503.
+         */
+        private Duration maxWait = Duration.ZERO;
+
+        /**
+         * Permits per endpoint class, keyed by its name; classes not listed keep their default.
+         */
+        private Map<String, Integer> limits = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Map<String, Integer> getLimits() {
+            return limits;
+        }
+
+        public void setLimits(Map<String, Integer> limits) {
+            this.limits = limits;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.docudeep.common.pdf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads just enough of a PDF file to tell whether it is encrypted: the header, the {@code startxref} pointer at the
+ * end of the file, and the trailer dictionary of the last cross-reference section (classic table or cross-reference
+ * stream). The document body is never parsed. Bytes are fetched through a {@link RangeReader}, typically two ranged
+ * reads (header and last {@link #WINDOW_BYTES}) for an ordinary file.
+ * <p>
+ * Shared by upload-service and case-service; an {@link Outcome#UNKNOWN} answer is theirs to settle with a full parse.
+ */
+public final class PdfTrailerInspector {
+
+    public enum Outcome {
+        PLAIN,
+        ENCRYPTED,
+        /**
+         * The trailer could not be located, e.g. a damaged cross-reference table; only a full parse can tell.
+         */
+        UNKNOWN
+    }
+
+    @FunctionalInterface
+    public interface RangeReader {
+
+        /**
+         * Up to {@code length} bytes of the file starting at {@code position}.
+         */
+        byte[] read(long position, int length) throws IOException;
+    }
+
+    public static final int WINDOW_BYTES = 64 * 1024;
+    public static final int HEADER_BYTES = 1024;
+    private static final int XREF_ENTRY_BYTES = 20;
+
+    private PdfTrailerInspector() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when the file does not start with a PDF header
+     */
+    public static Outcome inspect(long size, RangeReader reader) throws IOException {
+        Window file = new Window(reader, size);
+        if (!file.read(0, HEADER_BYTES).contains("%PDF-")) {
+            throw new IllegalArgumentException("Missing PDF header");
+        }
+        String tail = file.read(Math.max(0, size - WINDOW_BYTES), WINDOW_BYTES);
+        int startXref = tail.lastIndexOf("startxref");
+        if (startXref < 0) {
+            return Outcome.UNKNOWN;
+        }
+        long offset = parseOffset(tail, startXref + "startxref".length());
+        if (offset < 0 || offset >= size) {
+            return Outcome.UNKNOWN;
+        }
+        String dictionary = trailerDictionary(file, offset);
+        if (dictionary == null || !hasTopLevelKey(dictionary, "Root")) {
+            return Outcome.UNKNOWN;
+        }
+        return hasTopLevelKey(dictionary, "Encrypt") ? Outcome.ENCRYPTED : Outcome.PLAIN;
+    }
+
+    /**
+     * Text of the trailer dictionary belonging to the cross-reference section at {@code offset}, from {@code <<} to
+     * the matching {@code >>}, or {@code null} when it cannot be found.
+     */
+    private static String trailerDictionary(Window file, long offset) throws IOException {
+        String section = file.read(offset, WINDOW_BYTES);
+        int position = skipWhitespace(section, 0);
+        if (section.startsWith("xref", position)) {
+            long trailer = skipXrefTable(file, offset + position + "xref".length());
+            if (trailer < 0) {
+                return null;
+            }
+            section = file.read(trailer, WINDOW_BYTES);
+            position = skipWhitespace(section, 0);
+            if (!section.startsWith("trailer", position)) {
+                return null;
+            }
+            position += "trailer".length();
+        } else {
+            // Cross-reference stream: "<num> <gen> obj" followed by the stream dictionary, which acts as trailer.
+            int obj = section.indexOf("obj", position);
+            if (obj < 0 || !section.substring(position, obj).trim().matches("\\d+\\s+\\d+")) {
+                return null;
+            }
+            position = obj + "obj".length();
+        }
+        position = skipWhitespace(section, position);
+        if (!section.startsWith("<<", position)) {
+            return null;
+        }
+        int end = dictionaryEnd(section, position);
+        return end < 0 ? null : section.substring(position, end);
+    }
+
+    /**
+     * Skips the subsections of a classic cross-reference table ({@code first count} lines followed by fixed-size
+     * entries) without reading the entries.
+     *
+     * @return the file position right after the table, or {@code -1} when the table is malformed
+     */
+    private static long skipXrefTable(Window file, long position) throws IOException {
+        while (true) {
+            String chunk = file.read(position, 128);
+            int start = skipWhitespace(chunk, 0);
+            if (chunk.startsWith("trailer", start)) {
+                return position + start;
+            }
+            int lineEnd = start;
+            while (lineEnd < chunk.length() && chunk.charAt(lineEnd) != '\n' && chunk.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            String[] header = chunk.substring(start, lineEnd).trim().split("\\s+");
+            if (lineEnd == chunk.length() || header.length != 2 || !header[0].matches("\\d+") || !header[1].matches("\\d{1,9}")) {
+                return -1;
+            }
+            if (chunk.charAt(lineEnd) == '\r' && lineEnd + 1 < chunk.length() && chunk.charAt(lineEnd + 1) == '\n') {
+                lineEnd++;
+            }
+            position += lineEnd + 1 + (long) Integer.parseInt(header[1]) * XREF_ENTRY_BYTES;
+            if (position >= file.size) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Index just past the {@code >>} closing the dictionary that opens at {@code start}, skipping strings so that
+     * their content is never mistaken for delimiters.
+     */
+    private static int dictionaryEnd(String text, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (text.startsWith("<<", i)) {
+                depth++;
+                i += 2;
+            } else if (text.startsWith(">>", i)) {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else if (c == '<') {
+                int close = text.indexOf('>', i);
+                if (close < 0) {
+                    return -1;
+                }
+                i = close + 1;
+            } else if (c == '(') {
+                i = literalStringEnd(text, i);
+                if (i < 0) {
+                    return -1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether {@code /key} is a key of the dictionary itself rather than of a nested one.
+     */
+    private static boolean hasTopLevelKey(String dictionary, String key) {
+        int depth = 0;
+        int i = 0;
+        while (i < dictionary.length()) {
+            char c = dictionary.charAt(i);
+            if (dictionary.startsWith("<<", i)) {
+                depth++;
+                i += 2;
+            } else if (dictionary.startsWith(">>", i)) {
+                depth--;
+                i += 2;
+            } else if (c == '<') {
+                i = dictionary.indexOf('>', i) + 1;
+            } else if (c == '(') {
+                i = literalStringEnd(dictionary, i);
+            } else if (c == '[') {
+                depth++;
+                i++;
+            } else if (c == ']') {
+                depth--;
+                i++;
+            } else if (c == '/') {
+                int end = i + 1;
+                while (end < dictionary.length() && isRegular(dictionary.charAt(end))) {
+                    end++;
+                }
+                if (depth == 1 && dictionary.substring(i + 1, end).equals(key)) {
+                    return true;
+                }
+                i = end;
+            } else {
+                i++;
+            }
+            if (i <= 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int literalStringEnd(String text, int start) {
+        int nesting = 0;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '(') {
+                nesting++;
+            } else if (c == ')' && --nesting == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseOffset(String text, int start) {
+        int i = skipWhitespace(text, start);
+        int end = i;
+        while (end < text.length() && Character.isDigit(text.charAt(end))) {
+            end++;
+        }
+        if (end == i || end - i > 18) {
+            return -1;
+        }
+        return Long.parseLong(text.substring(i, end));
+    }
+
+    private static int skipWhitespace(String text, int start) {
+        int i = start;
+        while (i < text.length() && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == '\0')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isRegular(char c) {
+        return !Character.isWhitespace(c) && "()<>[]{}/%".indexOf(c) < 0;
+    }
+
+    /**
+     * Serves reads from the last block fetched when it covers them, so that the cross-reference section and the
+     * trailer, usually close to the end of the file, come out of the tail already read.
+     */
+    private static final class Window {
+
+        private final RangeReader reader;
+        private final long size;
+        private long start;
+        private byte[] block = new byte[0];
+
+        Window(RangeReader reader, long size) {
+            this.reader = reader;
+            this.size = size;
+        }
+
+        /**
+         * Up to {@code length} bytes from {@code position}, decoded one byte per char so that indexes map to
+         * file offsets.
+         */
+        String read(long position, int length) throws IOException {
+            long end = Math.min(size, position + length);
+            if (position < 0 || position >= end) {
+                return "";
+            }
+            if (position < start || end > start + block.length) {
+                block = reader.read(position, (int) (end - position));
+                start = position;
+            }
+            int from = (int) (position - start);
+            int to = (int) Math.min(end - start, block.length);
+            return new String(block, from, Math.max(0, to - from), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.docudeep.common.validation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of validation outcomes, keyed by content digest, declared type and validator version: the same
+ * bytes declared with the same type are inspected once, whichever case they were uploaded to. Bumping the validator
+ * version makes older entries unreachable. Each service creates one, sized from its own configuration.
+ */
+public class ValidationResultCache {
+
+    public record Key(String contentDigest, String mimeType, String validatorVersion) {
+    }
+
+    /**
+     * @param failureReason {@code null} when the document is valid
+     * @param costNanos     time the validation took, i.e. what a hit saves
+     */
+    public record Result(String failureReason, long costNanos) {
+
+        public boolean valid() {
+            return failureReason == null;
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Result> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    public ValidationResultCache(int maxEntries, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                if (size() > ValidationResultCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("docudeep.validation.cache.requests", hits, LongAdder::doubleValue)
+            .description("Validations answered from a previous result for the same content")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("docudeep.validation.cache.requests", misses, LongAdder::doubleValue)
+            .description("Validations that had to inspect the content")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        FunctionCounter.builder("docudeep.validation.cache.saved", savedNanos, adder -> adder.doubleValue() / 1e9)
+            .description("Inspection time avoided by cache hits")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        FunctionCounter.builder("docudeep.validation.cache.evictions", evictions, LongAdder::doubleValue)
+            .description("Validation results evicted to stay within the size bound")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.validation.cache.size", this, ValidationResultCache::size)
+            .description("Validation results currently held in memory")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.validation.cache.hit.ratio", this, ValidationResultCache::hitRatio)
+            .description("Share of validations answered from the cache")
+            .register(meterRegistry);
+    }
+
+    public Optional<Result> get(Key key) {
+        Result cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        savedNanos.add(cached.costNanos());
+        return Optional.of(cached);
+    }
+
+    public void put(Key key, Result result) {
+        synchronized (entries) {
+            entries.put(key, result);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,81 @@
+package com.docudeep.common.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadInterceptorTest {
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BulkheadInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyProperties properties = new ConcurrencyProperties();
+        properties.getBulkheads().setEnabled(true);
+        properties.getBulkheads().getLimits().put("uploads", 1);
+        interceptor = new BulkheadInterceptor(properties, Map.of("uploads", 64, "validation", 16), meterRegistry);
+    }
+
+    @Test
+    void fullEndpointClassRefusesRequestsWithoutBlockingTheOthers() throws Exception {
+        MockHttpServletRequest firstUpload = new MockHttpServletRequest();
+        assertThat(interceptor.preHandle(firstUpload, response, handler("upload"))).isTrue();
+
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), response, handler("upload")))
+            .isInstanceOf(BulkheadFullException.class);
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler("complete"))).isTrue();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler("unguarded"))).isTrue();
+        assertThat(meterRegistry.get("docudeep.bulkhead.rejected").tag("endpoint", "uploads").counter().count()).isEqualTo(1.0);
+
+        interceptor.afterCompletion(firstUpload, response, handler("upload"), null);
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler("upload"))).isTrue();
+    }
+
+    @Test
+    void permitIsReleasedOnlyOnce() throws Exception {
+        MockHttpServletRequest upload = new MockHttpServletRequest();
+        interceptor.preHandle(upload, response, handler("upload"));
+        interceptor.afterCompletion(upload, response, handler("upload"), null);
+        interceptor.afterCompletion(upload, response, handler("upload"), null);
+
+        assertThat(meterRegistry.get("docudeep.bulkhead.available").tag("endpoint", "uploads").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void limitForAnUnknownEndpointClassIsRefused() {
+        ConcurrencyProperties properties = new ConcurrencyProperties();
+        properties.getBulkheads().getLimits().put("upload", 8);
+
+        assertThatThrownBy(() -> new BulkheadInterceptor(properties, Map.of("uploads", 64), meterRegistry))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("upload");
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Endpoints(), Endpoints.class.getDeclaredMethod(name));
+    }
+
+    static class Endpoints {
+
+        @Bulkhead("uploads")
+        void upload() {
+        }
+
+        @Bulkhead("validation")
+        void complete() {
+        }
+
+        void unguarded() {
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.docudeep.upload.config;
+
+/**
+ * How hard metadata writes push data to stable storage before the caller moves on.
+ */
+public enum FsyncPolicy {
+    /**
+     * Leave flushing to the operating system. Writes stay atomic for readers, but a power loss may lose recent
+     * updates or leave a file empty.
+     */
+    NONE,
+    /**
+     * Force the file and its directory to disk on every write.
+     */
+    PER_WRITE,
+    /**
+     * Force each file before it replaces the previous version, and the directories from a background flusher at a
+     * fixed interval, so repeated updates of the same case cost a single directory fsync. A power loss may undo at
+     * most one interval of renames, leaving the previous complete version in place.
+     */
+    BATCHED
+}
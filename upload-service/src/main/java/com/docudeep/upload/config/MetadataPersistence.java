@@ -0,0 +1,16 @@
+package com.docudeep.upload.config;
+
+/**
+ * How case metadata mutations are persisted.
+ */
+public enum MetadataPersistence {
+    /**
+     * Every mutation rewrites the case's metadata.json.
+     */
+    SNAPSHOT,
+    /**
+     * Mutations are appended to a node-local journal; metadata.json snapshots are produced by a background
+     * compactor and on startup replay.
+     */
+    JOURNAL
+}
@@ -0,0 +1,16 @@
+package com.docudeep.upload.config;
+
+/**
+ * Where document bytes are kept.
+ */
+public enum StorageBackend {
+    /**
+     * Files of the case directories under {@code storage.root}.
+     */
+    LOCAL,
+    /**
+     * Objects of an S3-compatible bucket, with the case metadata next to them, so that upload nodes share no
+     * volume.
+     */
+    S3
+}
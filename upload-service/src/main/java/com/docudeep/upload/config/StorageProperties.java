@@ -2,6 +2,10 @@ package com.docudeep.upload.config;
 
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.time.Duration;
 
 @ConfigurationProperties(prefix = "storage")
 public class StorageProperties {
@@ -12,6 +16,31 @@ public class StorageProperties {
     @NotBlank
     private String root = "./storage/upload";
 
+    /**
+     * Number of lock stripes guarding case metadata updates (rounded up to a power of two).
+     */
+    private int lockStripes = 64;
+
+    /**
+     * Where document bytes are kept. With {@code S3}, resumable uploads are kept in the bucket too and
+     * {@code storage.root} only holds node-local working files, such as copies made for validation.
+     */
+    private StorageBackend backend = StorageBackend.LOCAL;
+
+    private final S3 s3 = new S3();
+
+    private final MetadataCache metadataCache = new MetadataCache();
+
+    private final Metadata metadata = new Metadata();
+
+    private final Blobs blobs = new Blobs();
+
+    private final Segments segments = new Segments();
+
+    private final Layout layout = new Layout();
+
+    private final Validation validation = new Validation();
+
     public String getRoot() {
         return root;
     }
@@ -19,4 +48,386 @@ public class StorageProperties {
     public void setRoot(String root) {
         this.root = root;
     }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(StorageBackend backend) {
+        this.backend = backend;
+    }
+
+    public S3 getS3() {
+        return s3;
+    }
+
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    public Blobs getBlobs() {
+        return blobs;
+    }
+
+    public Segments getSegments() {
+        return segments;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public Validation getValidation() {
+        return validation;
+    }
+
+    public static class S3 {
+
+        private String bucket;
+
+        /**
+         * Prepended to every object key, so that several environments can share a bucket. Cases are listed and
+         * {@code reset} deletes under this prefix only, so it cannot be blank.
+         */
+        private String prefix = "cases/";
+
+        private String region = "eu-west-3";
+
+        /**
+         * Endpoint of an S3-compatible store such as MinIO; AWS when unset.
+         */
+        private URI endpoint;
+
+        private boolean pathStyleAccess = false;
+
+        /**
+         * Bytes buffered per request while streaming an upload: smaller documents are stored with a single PUT,
+         * larger ones with a multipart upload of parts this size (at least 5MB, the S3 minimum).
+         */
+        private DataSize partSize = DataSize.ofMegabytes(8);
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public URI getEndpoint() {
+            return endpoint;
+        }
+
+        public void setEndpoint(URI endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public boolean isPathStyleAccess() {
+            return pathStyleAccess;
+        }
+
+        public void setPathStyleAccess(boolean pathStyleAccess) {
+            this.pathStyleAccess = pathStyleAccess;
+        }
+
+        public DataSize getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(DataSize partSize) {
+            this.partSize = partSize;
+        }
+    }
+
+    public static class MetadataCache {
+
+        /**
+         * Maximum number of parsed case metadata files kept in memory.
+         */
+        private int maxEntries = 1024;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class Metadata {
+
+        /**
+         * Indent metadata.json for human readers. Compact output is smaller and cheaper to produce.
+         */
+        private boolean prettyPrint = false;
+
+        /**
+         * Durability policy applied to metadata writes.
+         */
+        private FsyncPolicy fsync = FsyncPolicy.NONE;
+
+        /**
+         * Flush interval used by the {@link FsyncPolicy#BATCHED} policy.
+         */
+        private Duration fsyncInterval = Duration.ofMillis(50);
+
+        /**
+         * Whether mutations rewrite metadata.json directly or go through the append-only journal.
+         */
+        private MetadataPersistence persistence = MetadataPersistence.SNAPSHOT;
+
+        private final Journal journal = new Journal();
+
+        public boolean isPrettyPrint() {
+            return prettyPrint;
+        }
+
+        public void setPrettyPrint(boolean prettyPrint) {
+            this.prettyPrint = prettyPrint;
+        }
+
+        public FsyncPolicy getFsync() {
+            return fsync;
+        }
+
+        public void setFsync(FsyncPolicy fsync) {
+            this.fsync = fsync;
+        }
+
+        public Duration getFsyncInterval() {
+            return fsyncInterval;
+        }
+
+        public void setFsyncInterval(Duration fsyncInterval) {
+            this.fsyncInterval = fsyncInterval;
+        }
+
+        public MetadataPersistence getPersistence() {
+            return persistence;
+        }
+
+        public void setPersistence(MetadataPersistence persistence) {
+            this.persistence = persistence;
+        }
+
+        public Journal getJournal() {
+            return journal;
+        }
+    }
+
+    public static class Journal {
+
+        /**
+         * How often journal segments are folded into metadata.json snapshots. This is also the upper bound of
+         * how stale view-service is allowed to be in journal mode.
+         */
+        private Duration compactionInterval = Duration.ofSeconds(2);
+
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+
+    public static class Blobs {
+
+        /**
+         * Stores document bytes once per SHA-256 under {@code .blobs} and hard-links them into the case directories.
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Segments {
+
+        /**
+         * Moves validated documents out of the case directories into large append-only segment files under
+         * {@code .segments}. Cannot be combined with {@code storage.blobs.enabled}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Size at which the active segment is sealed and a new one started.
+         */
+        private DataSize maxSegmentSize = DataSize.ofGigabytes(1);
+
+        /**
+         * Share of unreferenced bytes from which a sealed segment is rewritten by compaction.
+         */
+        private double compactionThreshold = 0.5;
+
+        /**
+         * How often segments are checked for compaction.
+         */
+        private Duration compactionInterval = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxSegmentSize() {
+            return maxSegmentSize;
+        }
+
+        public void setMaxSegmentSize(DataSize maxSegmentSize) {
+            this.maxSegmentSize = maxSegmentSize;
+        }
+
+        public double getCompactionThreshold() {
+            return compactionThreshold;
+        }
+
+        public void setCompactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+
+    public static class Layout {
+
+        /**
+         * Creates case directories under two levels of hash-prefix directories ({@code ab/cd/CASE-...}) instead of
+         * directly under the root, and moves existing flat cases there in the background.
+         */
+        private boolean sharded = false;
+
+        /**
+         * How often the flat case directories left are looked for and moved.
+         */
+        private Duration migrationInterval = Duration.ofMinutes(1);
+
+        /**
+         * Maximum number of cases moved per run.
+         */
+        private int migrationBatchSize = 500;
+
+        public boolean isSharded() {
+            return sharded;
+        }
+
+        public void setSharded(boolean sharded) {
+            this.sharded = sharded;
+        }
+
+        public Duration getMigrationInterval() {
+            return migrationInterval;
+        }
+
+        public void setMigrationInterval(Duration migrationInterval) {
+            this.migrationInterval = migrationInterval;
+        }
+
+        public int getMigrationBatchSize() {
+            return migrationBatchSize;
+        }
+
+        public void setMigrationBatchSize(int migrationBatchSize) {
+            this.migrationBatchSize = migrationBatchSize;
+        }
+    }
+
+    public static class Validation {
+
+        /**
+         * Answer {@code /complete} with 202 and validate on background workers instead of the request thread.
+         */
+        private boolean async = false;
+
+        /**
+         * Documents waiting for a worker; further requests are refused with 503 until the queue drains.
+         */
+        private int queueCapacity = 100;
+
+        /**
+         * Number of validation worker threads.
+         */
+        private int workers = 2;
+
+        /**
+         * Validation outcomes kept in memory, keyed by content digest, so that identical files are parsed once.
+         */
+        private int cacheMaxEntries = 10_000;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+    }
 }
@@ -1,15 +1,54 @@
 package com.docudeep.upload.config;
 
+import com.docudeep.common.bulkhead.BulkheadInterceptor;
+import com.docudeep.common.bulkhead.ConcurrencyProperties;
+import com.docudeep.common.validation.ValidationResultCache;
+import com.docudeep.upload.controller.EndpointClass;
+import com.docudeep.upload.service.BackendCaseMetadataStore;
+import com.docudeep.upload.service.BlobStore;
+import com.docudeep.upload.service.CaseDirectories;
+import com.docudeep.upload.service.CaseMetadataStore;
+import com.docudeep.upload.service.DocumentBackend;
+import com.docudeep.upload.service.JournalCaseMetadataStore;
+import com.docudeep.upload.service.LocalDocumentBackend;
+import com.docudeep.upload.service.MetadataFileWriter;
+import com.docudeep.upload.service.S3DocumentBackend;
+import com.docudeep.upload.service.SnapshotCaseMetadataStore;
+import com.docudeep.upload.service.TimedDocumentBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 @Configuration
-@EnableConfigurationProperties(StorageProperties.class)
-public class UploadConfiguration {
+@EnableConfigurationProperties({StorageProperties.class, ConcurrencyProperties.class})
+public class UploadConfiguration implements WebMvcConfigurer {
+
+    private final BulkheadInterceptor bulkheadInterceptor;
+
+    public UploadConfiguration(ConcurrencyProperties concurrencyProperties, MeterRegistry meterRegistry) {
+        this.bulkheadInterceptor = new BulkheadInterceptor(concurrencyProperties, EndpointClass.DEFAULT_LIMITS, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(bulkheadInterceptor);
+    }
 
     @Bean
     public CorsFilter corsFilter() {
@@ -17,10 +56,69 @@ public class UploadConfiguration {
         configuration.addAllowedOriginPattern("*");
         configuration.addAllowedHeader("*");
         configuration.addAllowedMethod("*");
+        configuration.addExposedHeader("Upload-Offset");
+        configuration.addExposedHeader("Upload-Length");
+        configuration.addExposedHeader("Upload-Ranges");
+        configuration.addExposedHeader("Location");
+        configuration.addExposedHeader("Retry-After");
         configuration.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return new CorsFilter(source);
     }
+
+    @Bean
+    public ValidationResultCache validationResultCache(StorageProperties properties, MeterRegistry meterRegistry) {
+        return new ValidationResultCache(properties.getValidation().getCacheMaxEntries(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "storage", name = "backend", havingValue = "s3")
+    public S3Client s3Client(StorageProperties properties) {
+        StorageProperties.S3 s3 = properties.getS3();
+        S3ClientBuilder builder = S3Client.builder()
+            .region(Region.of(s3.getRegion()))
+            .credentialsProvider(DefaultCredentialsProvider.create())
+            .forcePathStyle(s3.isPathStyleAccess());
+        if (s3.getEndpoint() != null) {
+            builder.endpointOverride(s3.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public DocumentBackend documentBackend(StorageProperties properties,
+                                           CaseDirectories caseDirectories,
+                                           BlobStore blobStore,
+                                           ObjectProvider<S3Client> s3Client,
+                                           MeterRegistry meterRegistry) {
+        DocumentBackend backend = switch (properties.getBackend()) {
+            case LOCAL -> new LocalDocumentBackend(caseDirectories, blobStore);
+            case S3 -> new S3DocumentBackend(properties, s3Client.getObject());
+        };
+        return new TimedDocumentBackend(backend, meterRegistry);
+    }
+
+    @Bean
+    public CaseMetadataStore caseMetadataStore(StorageProperties properties,
+                                               CaseDirectories caseDirectories,
+                                               DocumentBackend documentBackend,
+                                               ObjectMapper objectMapper,
+                                               MetadataFileWriter metadataFileWriter) throws IOException {
+        StorageProperties.Metadata metadata = properties.getMetadata();
+        if (properties.getBackend() == StorageBackend.S3) {
+            if (metadata.getPersistence() == MetadataPersistence.JOURNAL) {
+                throw new IllegalStateException("storage.metadata.persistence=JOURNAL cannot be combined with storage.backend=S3");
+            }
+            return new BackendCaseMetadataStore(documentBackend, objectMapper);
+        }
+        Path root = Path.of(properties.getRoot()).toAbsolutePath().normalize();
+        SnapshotCaseMetadataStore snapshots = new SnapshotCaseMetadataStore(caseDirectories, objectMapper, metadataFileWriter);
+        return switch (metadata.getPersistence()) {
+            case SNAPSHOT -> snapshots;
+            case JOURNAL -> new JournalCaseMetadataStore(root, objectMapper, snapshots,
+                metadata.getFsync(), metadata.getJournal().getCompactionInterval());
+        };
+    }
 }
@@ -1,38 +1,64 @@
 package com.docudeep.upload.controller;
 
+import com.docudeep.common.bulkhead.Bulkhead;
 import com.docudeep.upload.controller.dto.CreateCaseRequest;
 import com.docudeep.upload.controller.dto.CreateCaseResponse;
 import com.docudeep.upload.controller.dto.DocumentResponse;
 import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
 import com.docudeep.upload.service.CaseStorageService;
+import com.docudeep.upload.service.ExpectedDigest;
+import com.docudeep.upload.service.ResumableUploadService;
+import com.docudeep.upload.service.UploadGuard;
+import com.docudeep.upload.service.ValidationQueue;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping
 public class CaseController {
 
-    private static final long TEN_MB = 10L * 1024 * 1024;
+    private static final long TEN_MB = UploadGuard.MAX_DOCUMENT_BYTES;
+    private static final String CONTENT_DIGEST_HEADER = "Content-Digest";
+    private static final String CONTENT_MD5_HEADER = "Content-MD5";
+    static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    private static final String UPLOAD_LENGTH_HEADER = "Upload-Length";
+    private static final String UPLOAD_RANGES_HEADER = "Upload-Ranges";
 
     private final CaseStorageService storageService;
+    private final ResumableUploadService resumableUploads;
+    private final ValidationQueue validationQueue;
 
-    public CaseController(CaseStorageService storageService) {
+    public CaseController(CaseStorageService storageService, ResumableUploadService resumableUploads,
+                          ValidationQueue validationQueue) {
         this.storageService = storageService;
+        this.resumableUploads = resumableUploads;
+        this.validationQueue = validationQueue;
     }
 
+    @Bulkhead(EndpointClass.UPLOADS)
     @PostMapping(path = "/cases", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public CreateCaseResponse createCase(@Valid @RequestBody CreateCaseRequest request) throws IOException {
         if (request.getDocuments().size() > 5) {
@@ -73,27 +99,109 @@ public class CaseController {
         return response;
     }
 
+    @Bulkhead(EndpointClass.UPLOADS)
     @PutMapping(path = "/storage/cases/{caseId}/documents/{documentId}", consumes = MediaType.ALL_VALUE)
     public ResponseEntity<Void> uploadDocument(@PathVariable String caseId,
                                                @PathVariable String documentId,
                                                HttpServletRequest request) throws IOException {
-        storageService.storeDocument(caseId, documentId, request.getInputStream());
+        if (request.getContentLengthLong() > TEN_MB) {
+            throw UploadGuard.tooLarge();
+        }
+        ExpectedDigest expected = ExpectedDigest.fromHeaders(request.getHeader(CONTENT_DIGEST_HEADER), request.getHeader(CONTENT_MD5_HEADER));
+        resumableUploads.discard(caseId, documentId);
+        storageService.storeDocument(caseId, documentId, request.getInputStream(), expected);
         return ResponseEntity.accepted().build();
     }
 
+    /**
+     * Progress of a resumable upload: {@code Upload-Offset} is where a sequential client resumes,
+     * {@code Upload-Ranges} lists every received range for clients sending chunks in parallel.
+     */
+    @RequestMapping(path = "/storage/cases/{caseId}/documents/{documentId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> uploadStatus(@PathVariable String caseId, @PathVariable String documentId) throws IOException {
+        return withUploadHeaders(ResponseEntity.ok(), resumableUploads.status(caseId, documentId)).build();
+    }
+
+    /**
+     * Receives one chunk of a resumable upload, written at {@code Upload-Offset}. The first chunk starts at 0 and
+     * may carry {@code Upload-Length}; the document is stored once every byte has been received.
+     */
+    @Bulkhead(EndpointClass.UPLOADS)
+    @PatchMapping(path = "/storage/cases/{caseId}/documents/{documentId}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<Void> uploadChunk(@PathVariable String caseId,
+                                            @PathVariable String documentId,
+                                            @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+                                            @RequestHeader(name = UPLOAD_LENGTH_HEADER, required = false) Long length,
+                                            HttpServletRequest request) throws IOException {
+        if ((length != null && length > TEN_MB) || request.getContentLengthLong() > TEN_MB) {
+            throw UploadGuard.tooLarge();
+        }
+        ExpectedDigest expected = ExpectedDigest.fromHeaders(request.getHeader(CONTENT_DIGEST_HEADER), request.getHeader(CONTENT_MD5_HEADER));
+        ResumableUploadService.UploadStatus status = resumableUploads.appendChunk(caseId, documentId, offset, length,
+            request.getInputStream(), expected);
+        return withUploadHeaders(ResponseEntity.status(HttpStatus.NO_CONTENT), status).build();
+    }
+
+    /**
+     * Validates an uploaded document. With {@code storage.validation.async} the document is queued instead and the
+     * answer is 202, with the validation status URL in {@code Location}.
+     */
+    @Bulkhead(EndpointClass.VALIDATION)
     @PostMapping(path = "/cases/{caseId}/documents/{documentId}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
-    public DocumentResponse completeDocument(@PathVariable String caseId, @PathVariable String documentId) throws IOException {
-        DocumentMetadata document = storageService.validateDocument(caseId, documentId);
+    public ResponseEntity<DocumentResponse> completeDocument(@PathVariable String caseId, @PathVariable String documentId) throws IOException {
+        if (!validationQueue.isEnabled()) {
+            return ResponseEntity.ok(toResponse(storageService.validateDocument(caseId, documentId)));
+        }
+        validationQueue.submit(caseId, documentId);
+        URI status = ServletUriComponentsBuilder.fromCurrentContextPath()
+            .path("/cases/{caseId}/documents/{documentId}/validation")
+            .buildAndExpand(caseId, documentId)
+            .toUri();
+        return ResponseEntity.accepted()
+            .location(status)
+            .body(toResponse(storageService.getDocument(caseId, documentId)));
+    }
+
+    /**
+     * Where an asynchronous validation stands: {@code VALIDATING} while queued or running, then {@code VALIDATED}
+     * or {@code FAILED} with its reason.
+     */
+    @GetMapping(path = "/cases/{caseId}/documents/{documentId}/validation", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DocumentResponse> validationStatus(@PathVariable String caseId, @PathVariable String documentId) {
+        DocumentMetadata document = storageService.getDocument(caseId, documentId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noStore());
+        if (document.getStatus() == DocumentStatus.VALIDATING) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.body(toResponse(document));
+    }
+
+    private static DocumentResponse toResponse(DocumentMetadata document) {
         DocumentResponse response = new DocumentResponse();
         response.setId(document.getId());
         response.setFilename(document.getFilename());
         response.setDocumentType(document.getDocumentType());
         response.setStatus(document.getStatus());
+        response.setFailureReason(document.getFailureReason());
         response.setUploadedAt(document.getUploadedAt());
         response.setSizeBytes(document.getStoredSize());
+        response.setSha256(document.getSha256());
         return response;
     }
 
+    private static ResponseEntity.BodyBuilder withUploadHeaders(ResponseEntity.BodyBuilder builder, ResumableUploadService.UploadStatus status) {
+        String ranges = status.received().stream()
+            .map(range -> range.start() + "-" + (range.end() - 1))
+            .collect(Collectors.joining(","));
+        builder.header(UPLOAD_OFFSET_HEADER, Long.toString(status.offset()))
+            .header(UPLOAD_LENGTH_HEADER, Long.toString(status.length()))
+            .cacheControl(CacheControl.noStore());
+        if (!ranges.isEmpty()) {
+            builder.header(UPLOAD_RANGES_HEADER, ranges);
+        }
+        return builder;
+    }
+
     private boolean isSupportedMimeType(String mimeType) {
         if (!StringUtils.hasText(mimeType)) {
             return false;
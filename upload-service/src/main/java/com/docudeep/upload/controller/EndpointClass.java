@@ -0,0 +1,27 @@
+package com.docudeep.upload.controller;
+
+import com.docudeep.common.bulkhead.Bulkhead;
+
+import java.util.Map;
+
+/**
+ * Groups of endpoints that share a bulkhead, so that one kind of traffic cannot take every request thread. The names
+ * go into {@link Bulkhead}, the {@code concurrency.bulkheads.limits} keys and the metric tags.
+ */
+public final class EndpointClass {
+
+    /**
+     * Case creation and document uploads, whose duration follows the client's upload speed.
+     */
+    public static final String UPLOADS = "uploads";
+
+    /**
+     * {@code /complete}, which reads the stored document back.
+     */
+    public static final String VALIDATION = "validation";
+
+    public static final Map<String, Integer> DEFAULT_LIMITS = Map.of(UPLOADS, 64, VALIDATION, 16);
+
+    private EndpointClass() {
+    }
+}
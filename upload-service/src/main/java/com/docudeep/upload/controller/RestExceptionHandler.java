@@ -1,5 +1,11 @@
 package com.docudeep.upload.controller;
 
+import com.docudeep.common.bulkhead.BulkheadFullException;
+import com.docudeep.upload.service.RevisionConflictException;
+import com.docudeep.upload.service.UploadConflictException;
+import com.docudeep.upload.service.UploadRejectedException;
+import com.docudeep.upload.service.ValidationQueueFullException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -29,6 +35,53 @@ public class RestExceptionHandler {
         ));
     }
 
+    @ExceptionHandler(UploadConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadConflict(UploadConflictException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .header(CaseController.UPLOAD_OFFSET_HEADER, Long.toString(exception.getOffset()))
+            .body(Map.of(
+                "message", exception.getMessage()
+            ));
+    }
+
+    @ExceptionHandler(UploadRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadRejected(UploadRejectedException exception) {
+        HttpStatus status = switch (exception.getReason()) {
+            case TOO_LARGE -> HttpStatus.PAYLOAD_TOO_LARGE;
+            case UNEXPECTED_CONTENT -> HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+        };
+        return ResponseEntity.status(status).body(Map.of(
+            "message", exception.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(ValidationQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleValidationQueueFull(ValidationQueueFullException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "5")
+            .body(Map.of(
+                "message", exception.getMessage()
+            ));
+    }
+
+    @ExceptionHandler(RevisionConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleRevisionConflict(RevisionConflictException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of(
+                "message", "Le dossier est modifié en parallèle, réessayez"
+            ));
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Map<String, Object>> handleBulkheadFull(BulkheadFullException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of(
+                "message", exception.getMessage()
+            ));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleUnknown(Exception exception) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -11,8 +11,10 @@ public class DocumentResponse {
     private String filename;
     private DocumentType documentType;
     private DocumentStatus status;
+    private String failureReason;
     private Instant uploadedAt;
     private long sizeBytes;
+    private String sha256;
 
     public String getId() {
         return id;
@@ -46,6 +48,14 @@ public class DocumentResponse {
         this.status = status;
     }
 
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
+
     public Instant getUploadedAt() {
         return uploadedAt;
     }
@@ -61,4 +71,12 @@ public class DocumentResponse {
     public void setSizeBytes(long sizeBytes) {
         this.sizeBytes = sizeBytes;
     }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
 }
@@ -1,6 +1,7 @@
 package com.docudeep.upload.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.time.Instant;
@@ -14,6 +15,8 @@ public class CaseMetadata {
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Instant createdAt;
     private List<DocumentMetadata> documents = new ArrayList<>();
+    @JsonIgnore
+    private String revision;
 
     public String getCaseId() {
         return caseId;
@@ -38,4 +41,29 @@ public class CaseMetadata {
     public void setDocuments(List<DocumentMetadata> documents) {
         this.documents = documents;
     }
+
+    /**
+     * Revision of the stored metadata this instance was read from or written as, when the store keeps one (see
+     * {@link com.docudeep.upload.service.BackendCaseMetadataStore}); not part of the JSON.
+     */
+    public String getRevision() {
+        return revision;
+    }
+
+    public void setRevision(String revision) {
+        this.revision = revision;
+    }
+
+    public CaseMetadata copy() {
+        CaseMetadata copy = new CaseMetadata();
+        copy.setCaseId(caseId);
+        copy.setCreatedAt(createdAt);
+        List<DocumentMetadata> documentCopies = new ArrayList<>(documents.size());
+        for (DocumentMetadata document : documents) {
+            documentCopies.add(document.copy());
+        }
+        copy.setDocuments(documentCopies);
+        copy.setRevision(revision);
+        return copy;
+    }
 }
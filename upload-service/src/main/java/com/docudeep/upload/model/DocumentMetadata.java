@@ -14,8 +14,14 @@ public class DocumentMetadata {
     private String mimeType;
     private long declaredSize;
     private long storedSize;
+    private String sha256;
     private DocumentStatus status;
     private String storageFilename;
+    /**
+     * The bytes live in a segment file (looked up by {@link #sha256}) rather than under {@link #storageFilename}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean packed;
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Instant uploadedAt;
     private String failureReason;
@@ -68,6 +74,14 @@ public class DocumentMetadata {
         this.storedSize = storedSize;
     }
 
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
     public DocumentStatus getStatus() {
         return status;
     }
@@ -84,6 +98,14 @@ public class DocumentMetadata {
         this.storageFilename = storageFilename;
     }
 
+    public boolean isPacked() {
+        return packed;
+    }
+
+    public void setPacked(boolean packed) {
+        this.packed = packed;
+    }
+
     public Instant getUploadedAt() {
         return uploadedAt;
     }
@@ -99,4 +121,21 @@ public class DocumentMetadata {
     public void setFailureReason(String failureReason) {
         this.failureReason = failureReason;
     }
+
+    public DocumentMetadata copy() {
+        DocumentMetadata copy = new DocumentMetadata();
+        copy.setId(id);
+        copy.setFilename(filename);
+        copy.setDocumentType(documentType);
+        copy.setMimeType(mimeType);
+        copy.setDeclaredSize(declaredSize);
+        copy.setStoredSize(storedSize);
+        copy.setSha256(sha256);
+        copy.setStatus(status);
+        copy.setStorageFilename(storageFilename);
+        copy.setPacked(packed);
+        copy.setUploadedAt(uploadedAt);
+        copy.setFailureReason(failureReason);
+        return copy;
+    }
 }
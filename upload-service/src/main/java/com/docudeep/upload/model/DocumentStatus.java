@@ -3,6 +3,7 @@ package com.docudeep.upload.model;
 public enum DocumentStatus {
     PENDING,
     UPLOADED,
+    VALIDATING,
     VALIDATED,
     FAILED
 }
@@ -0,0 +1,60 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Stores each case as a complete {@code metadata.json} object of the {@link DocumentBackend}, next to its
+ * documents, rewritten on every mutation. Used with {@code storage.backend=S3}, where the metadata has to be
+ * readable from every upload node.
+ * <p>
+ * Several nodes may update a case at once, and {@link CaseLocks} only serialises those of one node: every write is
+ * conditioned on the revision the case was read at, and fails with a {@link RevisionConflictException} when another
+ * node wrote it meanwhile.
+ */
+public class BackendCaseMetadataStore implements CaseMetadataStore {
+
+    private final DocumentBackend backend;
+    private final ObjectMapper objectMapper;
+
+    public BackendCaseMetadataStore(DocumentBackend backend, ObjectMapper objectMapper) {
+        this.backend = backend;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Optional<CaseMetadata> read(String caseId) throws IOException {
+        Optional<DocumentBackend.Revisioned> stored = backend.read(caseId, SnapshotCaseMetadataStore.METADATA_FILE);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        CaseMetadata metadata = objectMapper.readValue(stored.get().content(), CaseMetadata.class);
+        metadata.setRevision(stored.get().revision());
+        return Optional.of(metadata);
+    }
+
+    @Override
+    public void create(CaseMetadata metadata) throws IOException {
+        write(metadata, null);
+    }
+
+    @Override
+    public void updateDocument(CaseMetadata metadata, DocumentMetadata document) throws IOException {
+        write(metadata, metadata.getRevision());
+    }
+
+    @Override
+    public boolean shared() {
+        return true;
+    }
+
+    private void write(CaseMetadata metadata, String expectedRevision) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(metadata);
+        metadata.setRevision(backend.replace(metadata.getCaseId(), SnapshotCaseMetadataStore.METADATA_FILE, json,
+            expectedRevision));
+    }
+}
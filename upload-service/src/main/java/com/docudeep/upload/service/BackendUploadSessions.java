@@ -0,0 +1,373 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.service.ResumableUploadService.Range;
+import com.docudeep.upload.service.ResumableUploadService.UploadStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable uploads kept in the {@link DocumentBackend} rather than in files of the node, used with
+ * {@code storage.backend=S3}: any node can take the next chunk of an upload, or report its progress.
+ * <p>
+ * Each chunk is stored as its own object, {@code .<documentId>.upload.<offset>.<random>}, once its bounds and
+ * announced digests have been checked. The chunks received so far are listed in {@code .<documentId>.upload.json},
+ * updated by a conditional {@link DocumentBackend#replace} that is replayed on a fresh read when another node
+ * updated it meanwhile. The update that completes the document also marks it as completing, so that no other
+ * chunk is accepted; that node then streams the chunks in order to {@link CaseStorageService#storeDocument},
+ * which computes the digest and stores the document, and deletes them.
+ * <p>
+ * A chunk stored by a node that stops before listing it is referenced nowhere and stays until the storage is
+ * reset.
+ */
+class BackendUploadSessions {
+
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    private final DocumentBackend backend;
+    private final CaseStorageService storageService;
+    private final ObjectMapper objectMapper;
+
+    BackendUploadSessions(DocumentBackend backend, CaseStorageService storageService, ObjectMapper objectMapper) {
+        this.backend = backend;
+        this.storageService = storageService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return empty when no upload of the document is in progress
+     */
+    Optional<UploadStatus> status(String caseId, String documentId) throws IOException {
+        return read(caseId, documentId).map(current -> current.state().status());
+    }
+
+    /**
+     * Stores one chunk at {@code offset}; {@code data} has already been checked against the declared type when the
+     * chunk starts the document.
+     */
+    UploadStatus append(String caseId, DocumentMetadata document, long offset, Long declaredLength, InputStream data,
+                        ExpectedDigest expected) throws IOException {
+        String documentId = document.getId();
+        Optional<Current> current = read(caseId, documentId);
+        long length;
+        if (current.isEmpty()) {
+            if (offset != 0) {
+                throw new UploadConflictException(0);
+            }
+            length = declaredLength != null ? declaredLength : document.getDeclaredSize();
+            if (length <= 0) {
+                throw new IllegalArgumentException("La taille du document (Upload-Length) est requise");
+            }
+            if (length > UploadGuard.MAX_DOCUMENT_BYTES) {
+                throw UploadGuard.tooLarge();
+            }
+        } else {
+            SessionState state = current.get().state();
+            length = state.length();
+            if (declaredLength != null && declaredLength != length) {
+                throw new IllegalArgumentException("Upload-Length ne correspond pas à l'envoi en cours");
+            }
+            if (state.completing()) {
+                throw new UploadConflictException(length);
+            }
+        }
+        if (offset < 0 || offset > length) {
+            throw new IllegalArgumentException("Upload-Offset hors du document");
+        }
+
+        String name = "." + documentId + ".upload." + offset + "." + UUID.randomUUID();
+        ChunkCheck check = new ChunkCheck(expected, length - offset);
+        long written = backend.write(caseId, name, check.wrap(data), check);
+        if (written == 0) {
+            backend.delete(caseId, name);
+            return current.map(existing -> existing.state().status())
+                .orElseGet(() -> new UploadStatus(0, length, List.of(), false));
+        }
+
+        SessionState recorded;
+        try {
+            recorded = record(caseId, documentId, length, new Chunk(offset, offset + written, name));
+        } catch (IOException | RuntimeException e) {
+            backend.delete(caseId, name);
+            throw e;
+        }
+        if (recorded.completing()) {
+            complete(caseId, documentId, recorded);
+        }
+        return recorded.status();
+    }
+
+    /**
+     * Abandons an upload in progress, e.g. because the document is being replaced by a single {@code PUT}.
+     */
+    void discard(String caseId, String documentId) throws IOException {
+        Optional<Current> current = read(caseId, documentId);
+        if (current.isPresent()) {
+            deleteAll(caseId, documentId, current.get().state());
+        }
+    }
+
+    private SessionState record(String caseId, String documentId, long length, Chunk chunk) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Optional<Current> current = read(caseId, documentId);
+            SessionState state;
+            if (current.isEmpty()) {
+                if (chunk.start() != 0) {
+                    // Discarded, or completed, since the chunk was accepted.
+                    throw new UploadConflictException(0);
+                }
+                state = new SessionState(length, false, List.of());
+            } else {
+                state = current.get().state();
+                if (state.completing()) {
+                    throw new UploadConflictException(state.length());
+                }
+                if (state.length() != length) {
+                    throw new IllegalArgumentException("Upload-Length ne correspond pas à l'envoi en cours");
+                }
+            }
+            SessionState updated = state.with(chunk);
+            try {
+                write(caseId, documentId, updated, current.map(Current::revision).orElse(null));
+                return updated;
+            } catch (RevisionConflictException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void complete(String caseId, String documentId, SessionState state) throws IOException {
+        try (InputStream assembled = new AssembledInputStream(caseId, state.pieces())) {
+            storageService.storeDocument(caseId, documentId, assembled, ExpectedDigest.NONE);
+        } catch (IOException | RuntimeException e) {
+            reopen(caseId, documentId, e);
+            throw e;
+        }
+        deleteAll(caseId, documentId, state);
+    }
+
+    /**
+     * Clears the completing mark after a failed completion, so that the next chunk, on any node, completes it again.
+     */
+    private void reopen(String caseId, String documentId, Exception cause) {
+        try {
+            Optional<Current> current = read(caseId, documentId);
+            if (current.isPresent()) {
+                SessionState state = current.get().state();
+                write(caseId, documentId, new SessionState(state.length(), false, state.chunks()),
+                    current.get().revision());
+            }
+        } catch (IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void deleteAll(String caseId, String documentId, SessionState state) throws IOException {
+        backend.delete(caseId, stateName(documentId));
+        for (Chunk chunk : state.chunks()) {
+            backend.delete(caseId, chunk.name());
+        }
+    }
+
+    private Optional<Current> read(String caseId, String documentId) throws IOException {
+        Optional<DocumentBackend.Revisioned> stored = backend.read(caseId, stateName(documentId));
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        SessionState state = objectMapper.readValue(stored.get().content(), SessionState.class);
+        return Optional.of(new Current(state, stored.get().revision()));
+    }
+
+    private void write(String caseId, String documentId, SessionState state, String expectedRevision) throws IOException {
+        backend.replace(caseId, stateName(documentId), objectMapper.writeValueAsBytes(state), expectedRevision);
+    }
+
+    private static String stateName(String documentId) {
+        return "." + documentId + ".upload.json";
+    }
+
+    private record Current(SessionState state, String revision) {}
+
+    /**
+     * One stored chunk, bytes {@code [start, end)} of the document.
+     */
+    record Chunk(long start, long end, String name) {}
+
+    /**
+     * The part of a chunk that is read when the document is assembled: chunks may overlap when one was sent again.
+     */
+    private record Piece(String name, long skip, long length) {}
+
+    record SessionState(long length, boolean completing, List<Chunk> chunks) {
+
+        /**
+         * The state with {@code chunk} added, marked as completing if it completes the document.
+         */
+        SessionState with(Chunk chunk) {
+            List<Chunk> updated = new ArrayList<>(chunks);
+            updated.add(chunk);
+            SessionState state = new SessionState(length, false, updated);
+            return state.status().complete() ? new SessionState(length, true, updated) : state;
+        }
+
+        UploadStatus status() {
+            List<Range> received = received();
+            long offset = received.isEmpty() || received.get(0).start() != 0 ? 0 : received.get(0).end();
+            return new UploadStatus(offset, length, received, offset == length);
+        }
+
+        private List<Range> received() {
+            List<Range> received = new ArrayList<>();
+            for (Chunk chunk : sorted()) {
+                Range last = received.isEmpty() ? null : received.get(received.size() - 1);
+                if (last != null && chunk.start() <= last.end()) {
+                    received.set(received.size() - 1, new Range(last.start(), Math.max(last.end(), chunk.end())));
+                } else {
+                    received.add(new Range(chunk.start(), chunk.end()));
+                }
+            }
+            return received;
+        }
+
+        private List<Piece> pieces() {
+            List<Piece> pieces = new ArrayList<>();
+            long position = 0;
+            for (Chunk chunk : sorted()) {
+                if (chunk.end() > position) {
+                    pieces.add(new Piece(chunk.name(), position - chunk.start(), chunk.end() - position));
+                    position = chunk.end();
+                }
+            }
+            return pieces;
+        }
+
+        private List<Chunk> sorted() {
+            return chunks.stream()
+                .sorted(Comparator.comparingLong(Chunk::start).thenComparing(Chunk::end, Comparator.reverseOrder()))
+                .toList();
+        }
+    }
+
+    /**
+     * Bounds of a chunk and digests announced for it, checked as it is stored.
+     */
+    private static final class ChunkCheck implements DocumentBackend.ContentCheck {
+
+        private final ExpectedDigest expected;
+        private final long remaining;
+        private final MessageDigest sha256;
+        private final MessageDigest md5;
+
+        ChunkCheck(ExpectedDigest expected, long remaining) {
+            this.expected = expected;
+            this.remaining = remaining;
+            this.sha256 = expected.sha256() != null ? ResumableUploadService.newDigest("SHA-256") : null;
+            this.md5 = expected.md5() != null ? ResumableUploadService.newDigest("MD5") : null;
+        }
+
+        InputStream wrap(InputStream data) {
+            InputStream input = new FilterInputStream(data) {
+                private long read;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    int count = super.read(buffer, off, len);
+                    if (count > 0) {
+                        read += count;
+                        if (read > remaining) {
+                            throw new IllegalArgumentException("Le bloc dépasse la taille annoncée du document");
+                        }
+                    }
+                    return count;
+                }
+            };
+            if (sha256 != null) {
+                input = new DigestInputStream(input, sha256);
+            }
+            return md5 != null ? new DigestInputStream(input, md5) : input;
+        }
+
+        @Override
+        public String verify() {
+            ResumableUploadService.verifyDigest("sha-256", expected.sha256(), sha256);
+            ResumableUploadService.verifyDigest("MD5", expected.md5(), md5);
+            return null;
+        }
+    }
+
+    /**
+     * The chunks of a completed upload read back to back, each opened only when the previous one is done.
+     */
+    private final class AssembledInputStream extends InputStream {
+
+        private final String caseId;
+        private final Iterator<Piece> pieces;
+        private Piece piece;
+        private InputStream current;
+        private long remaining;
+
+        AssembledInputStream(String caseId, List<Piece> pieces) {
+            this.caseId = caseId;
+            this.pieces = pieces.iterator();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null || remaining == 0) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (!pieces.hasNext()) {
+                    return -1;
+                }
+                piece = pieces.next();
+                current = backend.open(caseId, piece.name());
+                current.skipNBytes(piece.skip());
+                remaining = piece.length();
+            }
+            int read = current.read(buffer, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Chunk " + piece.name() + " ended " + remaining + " bytes early");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Content-addressed store for document bytes, enabled with {@code storage.blobs.enabled}.
+ * <p>
+ * Each distinct content is kept once as {@code .blobs/<ab>/<sha256>} and every case document is a hard link to
+ * it, so the path of a document in its case directory, and everything reading it, is unchanged. The link count
+ * of the blob is its reference count: a blob whose only remaining link is its own entry in {@code .blobs} is
+ * garbage. Linking and collecting a given digest happen under the same lock stripe, so a blob is never deleted
+ * while a new reference to it is being created.
+ */
+@Component
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+    private static final String BLOB_DIRECTORY = ".blobs";
+
+    private final boolean enabled;
+    private final Path blobRoot;
+    // Stripes distinct from the case locks: blob operations are keyed by digest and never nest with case updates.
+    private final CaseLocks digestLocks;
+    private final Counter deduplicated;
+
+    public BlobStore(StorageProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.enabled = properties.getBlobs().isEnabled();
+        this.blobRoot = Path.of(properties.getRoot()).toAbsolutePath().normalize().resolve(BLOB_DIRECTORY);
+        this.digestLocks = new CaseLocks(properties);
+        this.deduplicated = Counter.builder("docudeep.blobs.deduplicated")
+            .description("Document uploads served by an already stored blob")
+            .register(meterRegistry);
+        if (enabled) {
+            Files.createDirectories(blobRoot);
+            checkHardLinkSupport();
+            collectGarbage();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds verified content to the store and points {@code destination} at it. When the same bytes are already
+     * stored, {@code file} is simply discarded.
+     */
+    public void store(Path file, String sha256, Path destination) throws IOException {
+        digestLocks.withLock(sha256, () -> {
+            Path blob = blobPath(sha256);
+            if (Files.exists(blob)) {
+                Files.delete(file);
+                deduplicated.increment();
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(file, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+            link(blob, destination);
+            return null;
+        });
+    }
+
+    /**
+     * Drops the blob with this digest once no document links to it any more.
+     */
+    public void release(String sha256) throws IOException {
+        digestLocks.withLock(sha256, () -> {
+            deleteIfUnreferenced(blobPath(sha256));
+            return null;
+        });
+    }
+
+    /**
+     * Removes unreferenced blobs, e.g. left behind by a crash between storing a blob and linking it.
+     */
+    void collectGarbage() throws IOException {
+        List<Path> blobs;
+        try (var files = Files.walk(blobRoot)) {
+            blobs = files.filter(Files::isRegularFile).toList();
+        }
+        int removed = 0;
+        for (Path blob : blobs) {
+            String sha256 = blob.getFileName().toString();
+            boolean deleted = digestLocks.withLock(sha256, () -> deleteIfUnreferenced(blob));
+            if (deleted) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed {} unreferenced blobs", removed);
+        }
+    }
+
+    private void link(Path blob, Path destination) throws IOException {
+        Path temp = destination.resolveSibling("." + destination.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createLink(temp, blob);
+            try {
+                Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // rename(2) leaves the source in place when both names already link to the same blob.
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean deleteIfUnreferenced(Path blob) throws IOException {
+        try {
+            if (linkCount(blob) > 1) {
+                return false;
+            }
+            Files.delete(blob);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return blobRoot.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static int linkCount(Path file) throws IOException {
+        return (Integer) Files.getAttribute(file, "unix:nlink");
+    }
+
+    private void checkHardLinkSupport() throws IOException {
+        Path probe = blobRoot.resolve(".probe-" + UUID.randomUUID());
+        Path link = blobRoot.resolve(probe.getFileName() + ".link");
+        try {
+            Files.createFile(probe);
+            Files.createLink(link, probe);
+            if (linkCount(probe) != 2) {
+                throw new IllegalStateException("Hard link counts are not reported by the file system of " + blobRoot);
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            throw new IllegalStateException("storage.blobs.enabled requires hard links on " + blobRoot, e);
+        } finally {
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(probe);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Location of the case directories under {@code storage.root}.
+ * <p>
+ * Flat layout: {@code <root>/<caseId>}. Sharded layout ({@code storage.layout.sharded}):
+ * {@code <root>/ab/cd/<caseId>}, where {@code abcd} are the first two bytes of the SHA-256 of the case id, so
+ * that no directory holds more than a few hundred entries even with millions of cases. view-service applies the
+ * same rule.
+ * <p>
+ * Both layouts are always read: a case is looked up in its sharded location first, then in the flat one, so cases
+ * stay available while {@link CaseLayoutMigrator} moves them. Code touching the files of a case does so inside
+ * {@link #withDirectory}, which holds a shared lease on the case; a case is only moved under the exclusive lease,
+ * i.e. never while one of its files is being written or read.
+ */
+@Component
+public class CaseDirectories {
+
+    static final int SHARD_LEVELS = 2;
+    private static final Pattern SHARD_NAME = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path root;
+    private final boolean sharded;
+    private final ReentrantReadWriteLock[] leases;
+
+    public CaseDirectories(StorageProperties properties) {
+        this.root = Path.of(properties.getRoot()).toAbsolutePath().normalize();
+        this.sharded = properties.getLayout().isSharded();
+        int requested = Math.max(1, properties.getLockStripes());
+        int size = Integer.highestOneBit(requested);
+        if (size < requested) {
+            size <<= 1;
+        }
+        this.leases = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            leases[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Runs {@code action} with the directory of the case, which does not move until it returns. The directory
+     * exists only if the case does; new cases go to the layout configured.
+     */
+    public <T> T withDirectory(String caseId, DirectoryAction<T> action) throws IOException {
+        Lock lease = leaseFor(caseId).readLock();
+        lease.lock();
+        try {
+            return action.run(resolve(caseId));
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    /**
+     * Ids of every case, in either layout. Flat directories are listed before the shards so that a case moved
+     * during the scan is seen at least once.
+     */
+    public List<String> caseIds() throws IOException {
+        Set<String> caseIds = new LinkedHashSet<>(flatCaseIds());
+        if (Files.isDirectory(root)) {
+            collectSharded(root, 0, caseIds);
+        }
+        return new ArrayList<>(caseIds);
+    }
+
+    /**
+     * Ids of the cases still in the flat layout.
+     */
+    public List<String> flatCaseIds() throws IOException {
+        List<String> caseIds = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return caseIds;
+        }
+        try (Stream<Path> entries = Files.list(root)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (isCaseDirectoryName(name) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    caseIds.add(name);
+                }
+            }
+        }
+        return caseIds;
+    }
+
+    /**
+     * Moves a flat case to its sharded location, unless the case is in use.
+     *
+     * @return whether the case was moved
+     */
+    public boolean migrate(String caseId) throws IOException {
+        Lock exclusive = leaseFor(caseId).writeLock();
+        if (!exclusive.tryLock()) {
+            return false;
+        }
+        try {
+            Path flat = root.resolve(caseId);
+            Path target = shardedPath(caseId);
+            if (!Files.isDirectory(flat, LinkOption.NOFOLLOW_LINKS)) {
+                return false;
+            }
+            if (Files.exists(target)) {
+                throw new FileAlreadyExistsException(target.toString(), flat.toString(), "case stored in both layouts");
+            }
+            Files.createDirectories(target.getParent());
+            // A rename within the root: the case is never seen half-moved, and hard links to blobs are kept.
+            Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    Path shardedPath(String caseId) {
+        String prefix = HexFormat.of().formatHex(sha256(caseId), 0, SHARD_LEVELS);
+        Path directory = root;
+        for (int level = 0; level < SHARD_LEVELS; level++) {
+            directory = directory.resolve(prefix.substring(level * 2, level * 2 + 2));
+        }
+        return directory.resolve(caseId);
+    }
+
+    private Path resolve(String caseId) {
+        Path shardedDirectory = shardedPath(caseId);
+        if (Files.isDirectory(shardedDirectory)) {
+            return shardedDirectory;
+        }
+        Path flat = root.resolve(caseId);
+        if (sharded && !Files.isDirectory(flat)) {
+            return shardedDirectory;
+        }
+        return flat;
+    }
+
+    private void collectSharded(Path directory, int level, Set<String> caseIds) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (level < SHARD_LEVELS && isShardName(name)) {
+                    collectSharded(entry, level + 1, caseIds);
+                } else if (level == SHARD_LEVELS && isCaseDirectoryName(name) && Files.isDirectory(entry)) {
+                    caseIds.add(name);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Removed by a storage reset while scanning.
+        }
+    }
+
+    private ReentrantReadWriteLock leaseFor(String caseId) {
+        int hash = caseId.hashCode();
+        hash ^= (hash >>> 16);
+        return leases[hash & (leases.length - 1)];
+    }
+
+    static boolean isShardName(String name) {
+        return SHARD_NAME.matcher(name).matches();
+    }
+
+    private static boolean isCaseDirectoryName(String name) {
+        // Skips the shards and internals such as .journal, .blobs and .segments.
+        return !name.isEmpty() && !name.startsWith(".") && !isShardName(name);
+    }
+
+    private static byte[] sha256(String caseId) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(caseId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface DirectoryAction<T> {
+        T run(Path directory) throws IOException;
+    }
+}
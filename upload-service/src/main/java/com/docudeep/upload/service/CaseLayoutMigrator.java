@@ -0,0 +1,101 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves the cases still in the flat layout to their sharded location, {@code storage.layout.migration-batch-size}
+ * cases per run, while the services keep running: both services read either layout, and a case in use is skipped
+ * until a later run (see {@link CaseDirectories}).
+ */
+@Component
+public class CaseLayoutMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(CaseLayoutMigrator.class);
+
+    private final CaseDirectories caseDirectories;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Counter migrated;
+    private final AtomicLong remaining = new AtomicLong(-1);
+
+    public CaseLayoutMigrator(StorageProperties properties, CaseDirectories caseDirectories, MeterRegistry meterRegistry) {
+        this.caseDirectories = caseDirectories;
+        this.batchSize = Math.max(1, properties.getLayout().getMigrationBatchSize());
+        this.migrated = Counter.builder("docudeep.layout.migrated")
+            .description("Cases moved from the flat to the sharded layout")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.layout.flat", remaining, AtomicLong::get)
+            .description("Cases left in the flat layout after the last migration run, -1 before the first")
+            .register(meterRegistry);
+        if (properties.getLayout().isSharded()) {
+            long intervalMillis = Math.max(1, properties.getLayout().getMigrationInterval().toMillis());
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "case-layout-migrator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::migrateQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Moves up to one batch of flat cases.
+     *
+     * @return the number of cases moved
+     */
+    public int migrate() throws IOException {
+        List<String> flat = caseDirectories.flatCaseIds();
+        int moved = 0;
+        for (String caseId : flat) {
+            if (moved == batchSize) {
+                break;
+            }
+            try {
+                if (caseDirectories.migrate(caseId)) {
+                    moved++;
+                    migrated.increment();
+                }
+            } catch (IOException e) {
+                // Left where it is, still readable; the other cases are not held up.
+                log.warn("Unable to move case {} to the sharded layout", caseId, e);
+            }
+        }
+        long left = flat.size() - moved;
+        if (left == 0 && remaining.get() != 0) {
+            log.info("Every case is now in the sharded layout");
+        }
+        remaining.set(left);
+        return moved;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void migrateQuietly() {
+        try {
+            migrate();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Case layout migration failed, will retry", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks serialising read-modify-write cycles on a case's metadata.
+ * <p>
+ * Two cases may share a stripe, which only costs some contention; a single case always maps to the same
+ * stripe, so concurrent uploads to the documents of one case never overwrite each other's status.
+ */
+@Component
+public class CaseLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public CaseLocks(StorageProperties properties) {
+        int requested = Math.max(1, properties.getLockStripes());
+        int size = Integer.highestOneBit(requested);
+        if (size < requested) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(String caseId, LockedAction<T> action) throws IOException {
+        ReentrantLock lock = stripeFor(caseId);
+        lock.lock();
+        try {
+            return action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(String caseId) {
+        int hash = caseId.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    @FunctionalInterface
+    public interface LockedAction<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of parsed {@code metadata.json} files.
+ * <p>
+ * Entries are defensive copies: callers get their own instance on every read and the cache keeps its own
+ * instance on every write, so a caller mutating a case it failed to persist never leaks into the cache.
+ */
+@Component
+public class CaseMetadataCache {
+
+    private final int maxEntries;
+    private final Map<String, CaseMetadata> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CaseMetadataCache(StorageProperties properties, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(1, properties.getMetadataCache().getMaxEntries());
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CaseMetadata> eldest) {
+                if (size() > CaseMetadataCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("docudeep.metadata.cache.requests", hits, LongAdder::doubleValue)
+            .description("Case metadata lookups served from memory")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("docudeep.metadata.cache.requests", misses, LongAdder::doubleValue)
+            .description("Case metadata lookups that had to read metadata.json")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        FunctionCounter.builder("docudeep.metadata.cache.evictions", evictions, LongAdder::doubleValue)
+            .description("Case metadata entries evicted to stay within the size bound")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.metadata.cache.size", this, CaseMetadataCache::size)
+            .description("Case metadata entries currently held in memory")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns a copy of the cached metadata, or {@code null} when the case is not cached.
+     */
+    public CaseMetadata get(String caseId) {
+        CaseMetadata cached;
+        synchronized (entries) {
+            cached = entries.get(caseId);
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.copy();
+    }
+
+    public void put(CaseMetadata metadata) {
+        CaseMetadata copy = metadata.copy();
+        synchronized (entries) {
+            entries.put(copy.getCaseId(), copy);
+        }
+    }
+
+    public void invalidate(String caseId) {
+        synchronized (entries) {
+            entries.remove(caseId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+}
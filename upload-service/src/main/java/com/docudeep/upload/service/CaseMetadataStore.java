@@ -0,0 +1,40 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Persistence of case metadata. Callers serialise mutations of a given case (see {@link CaseLocks}); a
+ * {@link #shared() shared} store also refuses a write based on a stale read with a
+ * {@link RevisionConflictException}.
+ */
+public interface CaseMetadataStore {
+
+    Optional<CaseMetadata> read(String caseId) throws IOException;
+
+    void create(CaseMetadata metadata) throws IOException;
+
+    /**
+     * Persists a change to one document; {@code metadata} is the whole case with the change already applied.
+     */
+    void updateDocument(CaseMetadata metadata, DocumentMetadata document) throws IOException;
+
+    /**
+     * Whether other upload nodes write to this store too: a case cached by this node may then be stale.
+     */
+    default boolean shared() {
+        return false;
+    }
+
+    /**
+     * Forgets everything held outside of {@code storage.root}, ahead of the root being wiped.
+     */
+    default void clear() throws IOException {
+    }
+
+    default void close() {
+    }
+}
@@ -5,38 +5,62 @@ import com.docudeep.upload.model.CaseMetadata;
 import com.docudeep.upload.model.DocumentMetadata;
 import com.docudeep.upload.model.DocumentStatus;
 import com.docudeep.upload.model.DocumentType;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class CaseStorageService {
 
-    private static final TypeReference<CaseMetadata> CASE_METADATA_TYPE = new TypeReference<>() {};
+    // A conflict means another node just updated the case; a few fresh attempts are enough to get through.
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
 
     private final Path root;
-    private final ObjectMapper objectMapper;
+    private final CaseMetadataCache metadataCache;
+    private final CaseLocks caseLocks;
+    private final CaseMetadataStore metadataStore;
+    private final DocumentContentValidator contentValidator;
+    private final SegmentStore segmentStore;
+    private final DocumentBackend backend;
 
-    public CaseStorageService(StorageProperties properties, ObjectMapper objectMapper) throws IOException {
+    public CaseStorageService(StorageProperties properties,
+                              CaseMetadataCache metadataCache,
+                              CaseLocks caseLocks,
+                              CaseMetadataStore metadataStore,
+                              DocumentContentValidator contentValidator,
+                              SegmentStore segmentStore,
+                              DocumentBackend backend) throws IOException {
         this.root = Path.of(properties.getRoot()).toAbsolutePath().normalize();
-        this.objectMapper = objectMapper;
+        this.metadataCache = metadataCache;
+        this.caseLocks = caseLocks;
+        this.metadataStore = metadataStore;
+        this.contentValidator = contentValidator;
+        this.segmentStore = segmentStore;
+        this.backend = backend;
         Files.createDirectories(root);
     }
 
     public CaseMetadata createCase(List<DocumentRequest> documents) throws IOException {
         String caseId = "CASE-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        Path caseDir = ensureCaseDirectory(caseId);
+        backend.createCase(caseId);
 
         CaseMetadata metadata = new CaseMetadata();
         metadata.setCaseId(caseId);
@@ -55,119 +79,394 @@ public class CaseStorageService {
         }
 
         metadata.setDocuments(documentMetadata);
-        writeMetadata(caseDir, metadata);
+        caseLocks.withLock(caseId, () -> {
+            try {
+                metadataStore.create(metadata);
+            } catch (IOException e) {
+                metadataCache.invalidate(caseId);
+                throw e;
+            }
+            remember(metadata);
+            return null;
+        });
         return metadata;
     }
 
+    /**
+     * Reads a case through the metadata cache, or straight from the store when other nodes write to it too.
+     */
     public Optional<CaseMetadata> findCase(String caseId) {
-        Path metadataFile = caseMetadataFile(caseId);
-        if (!Files.exists(metadataFile)) {
-            return Optional.empty();
+        CaseMetadata cached = metadataStore.shared() ? null : metadataCache.get(caseId);
+        if (cached != null) {
+            return Optional.of(cached);
         }
         try {
-            return Optional.of(objectMapper.readValue(metadataFile.toFile(), CASE_METADATA_TYPE));
+            Optional<CaseMetadata> metadata = metadataStore.read(caseId);
+            metadata.ifPresent(this::remember);
+            return metadata;
         } catch (IOException e) {
             throw new IllegalStateException("Unable to read case metadata", e);
         }
     }
 
     public void storeDocument(String caseId, String documentId, InputStream data) throws IOException {
-        CaseMetadata metadata = findCase(caseId)
-            .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+        storeDocument(caseId, documentId, data, ExpectedDigest.NONE);
+    }
 
-        DocumentMetadata document = metadata.getDocuments().stream()
-            .filter(doc -> doc.getId().equals(documentId))
-            .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+    /**
+     * Stores the body of a document. Its SHA-256 is computed while it is streamed to the backend and, like the
+     * optional MD5, checked against the digests announced by the client before it replaces any previous upload.
+     * When the client announces the SHA-256 of the bytes already stored for this very document, the body is not read
+     * at all. Bytes held for other documents are only shared, by the blob store, once the body has been read and
+     * checked: knowing a digest must not be enough to copy someone else's document.
+     */
+    public void storeDocument(String caseId, String documentId, InputStream data, ExpectedDigest expected) throws IOException {
+        DocumentMetadata document = findDocument(caseId, documentId);
+        if (isAlreadyStored(caseId, document, expected)) {
+            return;
+        }
+        String storageFilename = storageFilename(document);
 
-        Path caseDir = ensureCaseDirectory(caseId);
-        String storageFilename = document.getId() + "_" + document.getFilename();
-        Path destination = caseDir.resolve(storageFilename);
+        // The bytes are written outside the case lock so that documents of the same case upload in parallel.
+        DigestCheck check = new DigestCheck(expected);
+        // The signature is checked before anything is written, the size limit while writing.
+        InputStream input = check.wrap(UploadGuard.inspect(data, document.getMimeType()));
+        long storedBytes = backend.write(caseId, storageFilename, input, check);
+        byte[] sha256Digest = check.sha256Digest;
+        recordUpload(caseId, document.getId(), document.getSha256(), storageFilename, storedBytes, sha256Digest);
+    }
 
-        long storedBytes = Files.copy(data, destination, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Stores a document whose bytes were assembled in {@code file}, a file of the case directory, by a resumable
+     * upload. The file is moved into place when the backend is the local disk, uploaded then deleted otherwise.
+     */
+    public void storeAssembledDocument(String caseId, String documentId, Path file, byte[] sha256Digest) throws IOException {
+        DocumentMetadata document = findDocument(caseId, documentId);
+        String storageFilename = storageFilename(document);
+        long storedBytes = Files.size(file);
+        backend.put(caseId, storageFilename, file, HexFormat.of().formatHex(sha256Digest));
+        recordUpload(caseId, documentId, document.getSha256(), storageFilename, storedBytes, sha256Digest);
+    }
 
-        document.setStorageFilename(storageFilename);
-        document.setStoredSize(storedBytes);
-        document.setUploadedAt(Instant.now());
-        document.setStatus(DocumentStatus.UPLOADED);
-        document.setFailureReason(null);
+    /**
+     * Inspects the stored content outside the case lock, then records the outcome. If the document was uploaded
+     * again meanwhile, the outcome is about bytes that are gone and the status is left alone.
+     * <p>
+     * With segments enabled, a document that passes is appended to the active segment and its file removed from
+     * the case directory.
+     */
+    public DocumentMetadata validateDocument(String caseId, String documentId) throws IOException {
+        DocumentMetadata inspected = findDocument(caseId, documentId);
+        String contentFailure = null;
+        if (inspected.getStorageFilename() != null && inspected.getStoredSize() > 0) {
+            contentFailure = inspectContent(caseId, inspected);
+        }
+        String failureReason = contentFailure;
 
-        writeMetadata(caseDir, metadata);
+        boolean pack = failureReason == null && segmentStore.isEnabled() && !inspected.isPacked()
+            && inspected.getStorageFilename() != null && inspected.getStoredSize() > 0 && inspected.getSha256() != null;
+        if (!pack) {
+            return recordValidation(caseId, documentId, inspected, failureReason, null);
+        }
+        // Segments need the local backend (see S3DocumentBackend): the file is the stored one.
+        return segmentStore.withPackingLock(() -> backend.withFile(caseId, inspected.getStorageFilename(), file -> {
+            Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            if (segmentStore.append(file, inspected.getSha256()).isEmpty()) {
+                // Replaced by a new upload since it was inspected: left for that upload's validation.
+                return recordValidation(caseId, documentId, inspected, null, null);
+            }
+            return recordValidation(caseId, documentId, inspected, null, fileKey);
+        }));
     }
 
-    public DocumentMetadata validateDocument(String caseId, String documentId) throws IOException {
-        CaseMetadata metadata = findCase(caseId)
-            .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+    /**
+     * @param packedFileKey identity of the case file whose bytes were just packed, {@code null} when nothing was
+     *                      packed; the file is removed only if a new upload has not replaced it meanwhile
+     */
+    private DocumentMetadata recordValidation(String caseId, String documentId, DocumentMetadata inspected,
+                                              String failureReason, Object packedFileKey) throws IOException {
+        return updateCase(caseId, () -> {
+            CaseMetadata metadata = findCase(caseId)
+                .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+            DocumentMetadata document = requireDocument(metadata, documentId);
 
-        DocumentMetadata document = metadata.getDocuments().stream()
-            .filter(doc -> doc.getId().equals(documentId))
-            .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+            if (document.getStorageFilename() == null) {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setFailureReason("Document not uploaded");
+            } else if (document.getStoredSize() <= 0) {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setFailureReason("Fichier vide");
+            } else if (!Objects.equals(document.getSha256(), inspected.getSha256())
+                || !Objects.equals(document.getStorageFilename(), inspected.getStorageFilename())) {
+                return document;
+            } else if (failureReason != null) {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setFailureReason(failureReason);
+            } else {
+                document.setStatus(DocumentStatus.VALIDATED);
+                document.setFailureReason(null);
+            }
+
+            if (packedFileKey != null && document.getStatus() == DocumentStatus.VALIDATED) {
+                document.setPacked(true);
+                persistDocument(metadata, document);
+                backend.withFile(caseId, document.getStorageFilename(), file -> {
+                    try {
+                        if (packedFileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey())) {
+                            Files.delete(file);
+                        }
+                    } catch (NoSuchFileException ignored) {
+                        // Already gone: nothing left to clean up.
+                    }
+                    return null;
+                });
+                return document;
+            }
+            persistDocument(metadata, document);
+            return document;
+        });
+    }
 
-        if (document.getStorageFilename() == null) {
-            document.setStatus(DocumentStatus.FAILED);
-            document.setFailureReason("Document not uploaded");
-        } else if (document.getStoredSize() <= 0) {
-            document.setStatus(DocumentStatus.FAILED);
-            document.setFailureReason("Fichier vide");
-        } else {
-            document.setStatus(DocumentStatus.VALIDATED);
-            document.setFailureReason(null);
+    private String inspectContent(String caseId, DocumentMetadata document) throws IOException {
+        if (!document.isPacked()) {
+            return backend.withFile(caseId, document.getStorageFilename(),
+                file -> contentValidator.validate(file, document.getSha256(), document.getMimeType()));
+        }
+        try (SegmentStore.Slice slice = segmentStore.open(document.getSha256())
+            .orElseThrow(() -> new NoSuchFileException("segment content " + document.getSha256()))) {
+            return contentValidator.validate(slice.channel(), slice.offset(), slice.length(),
+                document.getSha256(), document.getMimeType());
         }
+    }
+
+    /**
+     * Flags a document as waiting for asynchronous validation.
+     *
+     * @return the status it had before, to be restored if the validation cannot be scheduled
+     */
+    public DocumentStatus markValidating(String caseId, String documentId) throws IOException {
+        return updateCase(caseId, () -> {
+            CaseMetadata metadata = findCase(caseId)
+                .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+            DocumentMetadata document = requireDocument(metadata, documentId);
+            DocumentStatus previous = document.getStatus();
+            if (previous != DocumentStatus.VALIDATING) {
+                document.setStatus(DocumentStatus.VALIDATING);
+                persistDocument(metadata, document);
+            }
+            return previous;
+        });
+    }
+
+    /**
+     * Puts back the status a document had before {@link #markValidating}, unless it has moved on since (validated,
+     * or uploaded again).
+     */
+    public void restoreStatus(String caseId, String documentId, DocumentStatus previous) throws IOException {
+        updateCase(caseId, () -> {
+            CaseMetadata metadata = findCase(caseId)
+                .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+            DocumentMetadata document = requireDocument(metadata, documentId);
+            if (document.getStatus() == DocumentStatus.VALIDATING && previous != DocumentStatus.VALIDATING) {
+                document.setStatus(previous);
+                persistDocument(metadata, document);
+            }
+            return null;
+        });
+    }
 
-        writeMetadata(ensureCaseDirectory(caseId), metadata);
-        return document;
+    public DocumentMetadata getDocument(String caseId, String documentId) {
+        return findDocument(caseId, documentId);
     }
 
     public void reset() throws IOException {
+        metadataCache.clear();
+        metadataStore.clear();
+        segmentStore.clear();
+        backend.clear();
         FileSystemUtils.deleteRecursively(root);
         Files.createDirectories(root);
     }
 
+    /**
+     * Current path of a document's file with the local backend; it may move to the sharded layout afterwards.
+     */
     public Path resolveDocumentPath(String caseId, String documentId) {
-        return findCase(caseId)
+        String filename = findCase(caseId)
             .flatMap(caseMetadata -> caseMetadata.getDocuments().stream()
                 .filter(doc -> doc.getId().equals(documentId))
                 .findFirst())
             .map(DocumentMetadata::getStorageFilename)
-            .map(filename -> root.resolve(caseId).resolve(filename))
             .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+        try {
+            return backend.localPath(caseId, filename)
+                .orElseThrow(() -> new IllegalStateException("Documents are not stored on the local disk"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to resolve case directory", e);
+        }
     }
 
+    /**
+     * Every case, read straight from the store: going through the metadata cache would replace its working set
+     * with whatever the scan read last.
+     */
     public List<CaseMetadata> listCases() throws IOException {
         if (!Files.exists(root)) {
             return List.of();
         }
 
         List<CaseMetadata> cases = new ArrayList<>();
-        try (var directories = Files.list(root)) {
-            directories.filter(Files::isDirectory).forEach(caseDir -> {
-                Path metadataFile = caseDir.resolve("metadata.json");
-                if (Files.exists(metadataFile)) {
-                    try {
-                        cases.add(objectMapper.readValue(metadataFile.toFile(), CASE_METADATA_TYPE));
-                    } catch (IOException ignored) {
-                        // Skip unreadable metadata files
-                    }
-                }
-            });
+        for (String caseId : backend.caseIds()) {
+            try {
+                metadataStore.read(caseId).ifPresent(cases::add);
+            } catch (IOException | RuntimeException ignored) {
+                // Skip unreadable metadata files
+            }
         }
         return cases;
     }
 
-    private Path ensureCaseDirectory(String caseId) throws IOException {
-        Path caseDir = root.resolve(caseId);
-        Files.createDirectories(caseDir);
-        return caseDir;
+    /**
+     * Digests of every packed document, i.e. the segment contents still in use. Unlike {@link #listCases()}, an
+     * unreadable metadata file is an error: skipping it would let compaction drop live bytes.
+     */
+    public Set<String> packedDigests() throws IOException {
+        Set<String> digests = new HashSet<>();
+        for (String caseId : backend.caseIds()) {
+            Optional<CaseMetadata> metadata = metadataStore.read(caseId);
+            for (DocumentMetadata document : metadata.map(CaseMetadata::getDocuments).orElse(List.of())) {
+                if (document.isPacked() && document.getSha256() != null) {
+                    digests.add(document.getSha256());
+                }
+            }
+        }
+        return digests;
+    }
+
+    private DocumentMetadata findDocument(String caseId, String documentId) {
+        CaseMetadata metadata = findCase(caseId)
+            .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+        return requireDocument(metadata, documentId);
+    }
+
+    private DocumentMetadata requireDocument(CaseMetadata metadata, String documentId) {
+        return metadata.getDocuments().stream()
+            .filter(doc -> doc.getId().equals(documentId))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+    }
+
+    private static String storageFilename(DocumentMetadata document) {
+        return document.getId() + "_" + document.getFilename();
+    }
+
+    private void recordUpload(String caseId, String documentId, String previousSha256, String storageFilename,
+                              long storedBytes, byte[] sha256Digest) throws IOException {
+        String storedSha256 = HexFormat.of().formatHex(sha256Digest);
+        if (previousSha256 != null && !previousSha256.equals(storedSha256)) {
+            backend.release(previousSha256);
+        }
+        Instant uploadedAt = Instant.now();
+
+        updateCase(caseId, () -> {
+            CaseMetadata metadata = findCase(caseId)
+                .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+            DocumentMetadata current = requireDocument(metadata, documentId);
+
+            current.setStorageFilename(storageFilename);
+            current.setPacked(false);
+            current.setStoredSize(storedBytes);
+            current.setSha256(storedSha256);
+            current.setUploadedAt(uploadedAt);
+            current.setStatus(DocumentStatus.UPLOADED);
+            current.setFailureReason(null);
+
+            persistDocument(metadata, current);
+            return null;
+        });
+    }
+
+    private boolean isAlreadyStored(String caseId, DocumentMetadata document, ExpectedDigest expected) throws IOException {
+        if (expected.sha256() == null || document.getSha256() == null || document.getStorageFilename() == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.sha256(), HexFormat.of().parseHex(document.getSha256()))
+            && (document.isPacked() || backend.exists(caseId, document.getStorageFilename()));
+    }
+
+    private static void verifyDigest(String algorithm, byte[] expected, byte[] actual) {
+        if (expected != null && !MessageDigest.isEqual(expected, actual)) {
+            throw new IllegalArgumentException("Le contenu reçu ne correspond pas à l'empreinte " + algorithm + " annoncée");
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write cycle of a case's metadata under its lock. When another node sharing the store
+     * wrote the case since it was read, the cycle starts over from a fresh read.
+     */
+    private <T> T updateCase(String caseId, CaseLocks.LockedAction<T> update) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return caseLocks.withLock(caseId, update);
+            } catch (RevisionConflictException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void persistDocument(CaseMetadata metadata, DocumentMetadata document) throws IOException {
+        try {
+            metadataStore.updateDocument(metadata, document);
+        } catch (IOException e) {
+            metadataCache.invalidate(metadata.getCaseId());
+            throw e;
+        }
+        remember(metadata);
     }
 
-    private Path caseMetadataFile(String caseId) {
-        return root.resolve(caseId).resolve("metadata.json");
+    private void remember(CaseMetadata metadata) {
+        if (!metadataStore.shared()) {
+            metadataCache.put(metadata);
+        }
     }
 
-    private void writeMetadata(Path caseDir, CaseMetadata metadata) throws IOException {
-        Path file = caseDir.resolve("metadata.json");
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), metadata);
+    /**
+     * Digests of a body being written, checked against those announced by the client once it has been read.
+     */
+    private static final class DigestCheck implements DocumentBackend.ContentCheck {
+
+        private final ExpectedDigest expected;
+        private final MessageDigest sha256 = newDigest("SHA-256");
+        private final MessageDigest md5;
+        private byte[] sha256Digest;
+
+        DigestCheck(ExpectedDigest expected) {
+            this.expected = expected;
+            this.md5 = expected.md5() != null ? newDigest("MD5") : null;
+        }
+
+        InputStream wrap(InputStream data) {
+            InputStream input = new DigestInputStream(data, sha256);
+            return md5 != null ? new DigestInputStream(input, md5) : input;
+        }
+
+        @Override
+        public String verify() {
+            sha256Digest = sha256.digest();
+            verifyDigest("sha-256", expected.sha256(), sha256Digest);
+            verifyDigest("MD5", expected.md5(), md5 == null ? null : md5.digest());
+            return HexFormat.of().formatHex(sha256Digest);
+        }
     }
 
     public record DocumentRequest(String filename, String mimeType, long sizeBytes, DocumentType documentType) {}
@@ -0,0 +1,121 @@
+package com.docudeep.upload.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage of the objects of a case, selected with {@code storage.backend}: the document bytes and, with the
+ * {@code S3} backend, the case metadata ({@link BackendCaseMetadataStore}). An object is named by its case id and
+ * a name unique within the case.
+ * <p>
+ * {@link LocalDocumentBackend} keeps them as files of the case directories under {@code storage.root};
+ * {@link S3DocumentBackend} as objects {@code <prefix><caseId>/<name>} of a bucket. Both are timed by
+ * {@link TimedDocumentBackend}, so their latencies can be compared.
+ */
+public interface DocumentBackend {
+
+    /**
+     * Short name of the backend, used as a metric tag.
+     */
+    String type();
+
+    /**
+     * Prepares the storage of a new case.
+     */
+    void createCase(String caseId) throws IOException;
+
+    /**
+     * Stores the bytes of {@code data} as {@code name}, replacing any previous object. The stream is written as it
+     * is read, never held in memory as a whole. {@code check} runs once it is exhausted: nothing becomes visible
+     * unless it returns.
+     *
+     * @return the number of bytes stored
+     */
+    long write(String caseId, String name, InputStream data, ContentCheck check) throws IOException;
+
+    /**
+     * Stores the content of a local file whose SHA-256 is known. The file is consumed: moved when possible,
+     * deleted otherwise.
+     */
+    void put(String caseId, String name, Path file, String sha256) throws IOException;
+
+    /**
+     * Tells the backend that a document no longer refers to the content with this digest.
+     */
+    default void release(String sha256) throws IOException {
+    }
+
+    /**
+     * Reads a small object whole, with the revision a later {@link #replace} is conditioned on.
+     *
+     * @return empty when there is no such object
+     */
+    Optional<Revisioned> read(String caseId, String name) throws IOException;
+
+    /**
+     * Stores {@code content} as {@code name} only if the object is still at {@code expectedRevision}, or does not
+     * exist yet when it is {@code null}.
+     *
+     * @return the revision of the stored content
+     * @throws RevisionConflictException when the object was written or created meanwhile
+     */
+    String replace(String caseId, String name, byte[] content, String expectedRevision) throws IOException;
+
+    boolean exists(String caseId, String name) throws IOException;
+
+    /**
+     * Deletes an object, if there is one.
+     */
+    void delete(String caseId, String name) throws IOException;
+
+    /**
+     * Opens an object for sequential reading. The caller closes the stream.
+     *
+     * @throws java.nio.file.NoSuchFileException when there is no such object
+     */
+    InputStream open(String caseId, String name) throws IOException;
+
+    /**
+     * Runs {@code action} on a local file holding the object: the stored file itself when the backend is the
+     * local disk, a temporary copy deleted afterwards otherwise.
+     *
+     * @throws java.nio.file.NoSuchFileException when there is no such object
+     */
+    <T> T withFile(String caseId, String name, FileAction<T> action) throws IOException;
+
+    /**
+     * Current path of the object when the backend keeps it as a file under {@code storage.root}.
+     */
+    default Optional<Path> localPath(String caseId, String name) throws IOException {
+        return Optional.empty();
+    }
+
+    List<String> caseIds() throws IOException;
+
+    /**
+     * Deletes every object kept outside of {@code storage.root}, ahead of the root being wiped.
+     */
+    void clear() throws IOException;
+
+    record Revisioned(byte[] content, String revision) {
+    }
+
+    @FunctionalInterface
+    interface ContentCheck {
+
+        /**
+         * Checks the bytes just read, throwing to discard them.
+         *
+         * @return their SHA-256 in hex, or {@code null} when it was not computed
+         */
+        String verify() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface FileAction<T> {
+        T run(Path file) throws IOException;
+    }
+}
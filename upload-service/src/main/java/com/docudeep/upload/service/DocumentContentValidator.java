@@ -0,0 +1,231 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.common.pdf.PdfTrailerInspector;
+import com.docudeep.common.validation.ValidationResultCache;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Checks the stored bytes of a document without decoding it: PDFs by their trailer (see {@link PdfTrailerInspector})
+ * and images by their header; a PDF whose trailer cannot be located is parsed in full with PDFBox. Outcomes are kept
+ * in {@link ValidationResultCache} under the file's SHA-256, so the same content is inspected once.
+ */
+@Component
+public class DocumentContentValidator {
+
+    /**
+     * Part of the cache key: bump it whenever a change here can turn a past outcome around.
+     */
+    static final String VERSION = "2";
+
+    private final ValidationResultCache resultCache;
+
+    public DocumentContentValidator(ValidationResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @param sha256 digest of {@code file}, or {@code null} when unknown (the outcome is then not cached)
+     * @return the reason the content is rejected, or {@code null} when it is acceptable
+     * @throws IOException when the file cannot be read; such failures are not cached
+     */
+    public String validate(Path file, String sha256, String mimeType) throws IOException {
+        return validate(sha256, mimeType, () -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return inspect(new Region(channel, 0, channel.size()), mimeType);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #validate(Path, String, String)} for {@code length} bytes of {@code channel} starting at
+     * {@code offset}, e.g. a document packed in a segment file.
+     */
+    public String validate(FileChannel channel, long offset, long length, String sha256, String mimeType) throws IOException {
+        return validate(sha256, mimeType, () -> inspect(new Region(channel, offset, length), mimeType));
+    }
+
+    private String validate(String sha256, String mimeType, Inspection inspection) throws IOException {
+        if (sha256 == null) {
+            return inspection.run();
+        }
+        ValidationResultCache.Key key = new ValidationResultCache.Key(sha256, mimeType.toLowerCase(Locale.ROOT), VERSION);
+        Optional<ValidationResultCache.Result> cached = resultCache.get(key);
+        if (cached.isPresent()) {
+            return cached.get().failureReason();
+        }
+        long start = System.nanoTime();
+        String failureReason = inspection.run();
+        resultCache.put(key, new ValidationResultCache.Result(failureReason, System.nanoTime() - start));
+        return failureReason;
+    }
+
+    private static String inspect(Region content, String mimeType) throws IOException {
+        return switch (mimeType.toLowerCase(Locale.ROOT)) {
+            case "application/pdf" -> inspectPdf(content);
+            case "image/png", "image/jpeg" -> inspectImage(content, mimeType);
+            default -> null;
+        };
+    }
+
+    private static String inspectPdf(Region content) throws IOException {
+        PdfTrailerInspector.Outcome outcome;
+        try {
+            outcome = PdfTrailerInspector.inspect(content.length(), content::read);
+        } catch (IllegalArgumentException e) {
+            return "Le document PDF est illisible";
+        }
+        return switch (outcome) {
+            case PLAIN -> null;
+            case ENCRYPTED -> "Le document PDF est protégé par mot de passe";
+            case UNKNOWN -> parsePdf(content);
+        };
+    }
+
+    /**
+     * Full parse for a PDF whose trailer could not be located, e.g. a damaged cross-reference table that PDFBox
+     * rebuilds by scanning the file. Scratch buffers go to a temp file, so the heap budget stays constant.
+     */
+    private static String parsePdf(Region content) throws IOException {
+        ReadFailures input = new ReadFailures(content.inputStream());
+        try (PDDocument pdf = PDDocument.load(input, MemoryUsageSetting.setupTempFileOnly())) {
+            return pdf.isEncrypted() ? "Le document PDF est protégé par mot de passe" : null;
+        } catch (InvalidPasswordException e) {
+            return "Le document PDF est protégé par mot de passe";
+        } catch (IOException e) {
+            if (input.failure != null) {
+                // The file could not be read, which says nothing about its content.
+                throw input.failure;
+            }
+            return "Le document PDF est illisible";
+        }
+    }
+
+    private static String inspectImage(Region content, String mimeType) throws IOException {
+        // In-memory cache of the bytes read so far: the header is all a reader needs here.
+        try (ImageInputStream input = new MemoryCacheImageInputStream(content.inputStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return "Le fichier image est illisible";
+            }
+            ImageReader reader = readers.next();
+            try {
+                ImageReaderSpi provider = reader.getOriginatingProvider();
+                if (provider != null && Arrays.stream(provider.getMIMETypes()).noneMatch(mimeType::equalsIgnoreCase)) {
+                    return "Le contenu de l'image ne correspond pas au type déclaré : " + mimeType;
+                }
+                reader.setInput(input, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0 ? null : "Le fichier image est illisible";
+            } catch (IIOException | IndexOutOfBoundsException e) {
+                return "Le fichier image est illisible";
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Remembers a failure of the underlying reads, which PDFBox reports like any parse error.
+     */
+    private static final class ReadFailures extends FilterInputStream {
+
+        private IOException failure;
+
+        ReadFailures(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            try {
+                return super.read(buffer, off, len);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Inspection {
+        String run() throws IOException;
+    }
+
+    /**
+     * {@code length} bytes of {@code channel} from {@code offset}, read with positional reads so the channel's
+     * own position is never touched.
+     */
+    private record Region(FileChannel channel, long offset, long length) {
+
+        byte[] read(long position, int count) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(count, length - position)));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + position + buffer.position()) >= 0) {
+                // Keep reading until the range is filled or the file ends.
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        InputStream inputStream() {
+            return new InputStream() {
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = Region.this.read(position, 1);
+                    if (one.length == 0) {
+                        return -1;
+                    }
+                    position++;
+                    return one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] target, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int count = (int) Math.min(len, length - position);
+                    if (count <= 0) {
+                        return -1;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(target, off, count);
+                    int read = channel.read(buffer, offset + position);
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+}
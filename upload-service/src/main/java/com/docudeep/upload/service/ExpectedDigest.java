@@ -0,0 +1,55 @@
+package com.docudeep.upload.service;
+
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Digests announced by the client for an upload body, taken from {@code Content-Digest} (RFC 9530, only
+ * {@code sha-256} is used) and {@code Content-MD5}. Either may be {@code null}.
+ */
+public record ExpectedDigest(byte[] sha256, byte[] md5) {
+
+    public static final ExpectedDigest NONE = new ExpectedDigest(null, null);
+
+    public static ExpectedDigest fromHeaders(String contentDigest, String contentMd5) {
+        byte[] sha256 = contentDigest == null ? null : parseContentDigest(contentDigest);
+        byte[] md5 = contentMd5 == null ? null : decode(contentMd5.trim(), 16, "Content-MD5");
+        return new ExpectedDigest(sha256, md5);
+    }
+
+    /**
+     * Reads the {@code sha-256} member of a {@code Content-Digest} dictionary such as
+     * {@code sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:, sha-512=:...:}. Other algorithms are ignored.
+     */
+    private static byte[] parseContentDigest(String header) {
+        for (String member : header.split(",")) {
+            int separator = member.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("En-tête Content-Digest invalide");
+            }
+            String algorithm = member.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            if (!algorithm.equals("sha-256")) {
+                continue;
+            }
+            String value = member.substring(separator + 1).trim();
+            if (value.length() < 2 || value.charAt(0) != ':' || value.charAt(value.length() - 1) != ':') {
+                throw new IllegalArgumentException("En-tête Content-Digest invalide");
+            }
+            return decode(value.substring(1, value.length() - 1), 32, "Content-Digest");
+        }
+        return null;
+    }
+
+    private static byte[] decode(String value, int length, String header) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("En-tête " + header + " invalide");
+        }
+        if (bytes.length != length) {
+            throw new IllegalArgumentException("En-tête " + header + " invalide");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,349 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.FsyncPolicy;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persists metadata mutations as small JSON lines appended to a node-local journal under
+ * {@code <root>/.journal}, instead of rewriting the whole metadata.json on every status change.
+ * <p>
+ * The latest state of every case touched since the last compaction is kept in memory. A background
+ * compactor seals the active segment, writes one metadata.json snapshot per dirty case and deletes the
+ * sealed segments. Segments left behind by a crash are replayed onto the snapshots at startup.
+ * <p>
+ * With {@link FsyncPolicy#BATCHED}, appenders wait for a group commit: the first waiter forces the segment
+ * and every record appended up to that point becomes durable with a single fsync.
+ */
+public class JournalCaseMetadataStore implements CaseMetadataStore {
+
+    static final String JOURNAL_DIRECTORY = ".journal";
+
+    private static final Logger log = LoggerFactory.getLogger(JournalCaseMetadataStore.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path journalDir;
+    private final ObjectMapper objectMapper;
+    private final SnapshotCaseMetadataStore snapshots;
+    private final FsyncPolicy fsyncPolicy;
+    private final Map<String, DirtyCase> dirty = new ConcurrentHashMap<>();
+
+    /** Guards the active segment and the append counters. Always acquired after {@link #flushLock}. */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /** Serialises forces and segment rotation. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private FileChannel activeSegment;
+    private long activeSequence;
+    private long appendedBytes;
+    private volatile long durableBytes;
+
+    private final ScheduledExecutorService compactor;
+
+    public JournalCaseMetadataStore(Path root,
+                                    ObjectMapper objectMapper,
+                                    SnapshotCaseMetadataStore snapshots,
+                                    FsyncPolicy fsyncPolicy,
+                                    Duration compactionInterval) throws IOException {
+        this.journalDir = root.resolve(JOURNAL_DIRECTORY);
+        this.objectMapper = objectMapper;
+        this.snapshots = snapshots;
+        this.fsyncPolicy = fsyncPolicy;
+
+        Files.createDirectories(journalDir);
+        this.activeSequence = replay() + 1;
+
+        long intervalMillis = Math.max(1, compactionInterval.toMillis());
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<CaseMetadata> read(String caseId) throws IOException {
+        DirtyCase pending = dirty.get(caseId);
+        if (pending != null) {
+            return Optional.of(pending.metadata().copy());
+        }
+        return snapshots.read(caseId);
+    }
+
+    @Override
+    public void create(CaseMetadata metadata) throws IOException {
+        record(metadata, new JournalRecord(RecordType.CASE, metadata.getCaseId(), metadata, null));
+    }
+
+    @Override
+    public void updateDocument(CaseMetadata metadata, DocumentMetadata document) throws IOException {
+        record(metadata, new JournalRecord(RecordType.DOCUMENT, metadata.getCaseId(), null, document));
+    }
+
+    @Override
+    public void clear() throws IOException {
+        flushLock.lock();
+        appendLock.lock();
+        try {
+            closeActiveSegment();
+            dirty.clear();
+            appendedBytes = 0;
+            durableBytes = 0;
+        } finally {
+            appendLock.unlock();
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+            compact();
+        } catch (IOException e) {
+            log.warn("Final journal compaction failed, segments will be replayed on next start", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(CaseMetadata metadata, JournalRecord record) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(record);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n').flip();
+
+        long position;
+        appendLock.lock();
+        try {
+            FileChannel channel = activeSegment();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            appendedBytes += line.length + 1;
+            position = appendedBytes;
+            // Published under the append lock so that a compaction sealing this segment always sees it.
+            dirty.put(metadata.getCaseId(), new DirtyCase(metadata.copy(), activeSequence));
+            if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+                channel.force(false);
+                durableBytes = appendedBytes;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (fsyncPolicy == FsyncPolicy.BATCHED) {
+            awaitDurable(position);
+        }
+    }
+
+    private void awaitDurable(long position) throws IOException {
+        flushLock.lock();
+        try {
+            if (durableBytes >= position) {
+                // Another appender's force already covered this record.
+                return;
+            }
+            FileChannel channel;
+            long target;
+            appendLock.lock();
+            try {
+                channel = activeSegment;
+                target = appendedBytes;
+            } finally {
+                appendLock.unlock();
+            }
+            // Rotation needs the flush lock, so the channel cannot be closed underneath this force.
+            if (channel != null) {
+                channel.force(false);
+            }
+            durableBytes = target;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Metadata journal compaction failed, will retry", e);
+        }
+    }
+
+    void compact() throws IOException {
+        long sealedSequence;
+        flushLock.lock();
+        appendLock.lock();
+        try {
+            if (activeSegment != null) {
+                activeSegment.force(false);
+                closeActiveSegment();
+                durableBytes = appendedBytes;
+                activeSequence++;
+            }
+            sealedSequence = activeSequence - 1;
+        } finally {
+            appendLock.unlock();
+            flushLock.unlock();
+        }
+
+        List<Map.Entry<String, DirtyCase>> compacted = new ArrayList<>();
+        for (Map.Entry<String, DirtyCase> entry : dirty.entrySet()) {
+            DirtyCase pending = entry.getValue();
+            if (pending.sequence() <= sealedSequence) {
+                snapshots.write(pending.metadata());
+                compacted.add(Map.entry(entry.getKey(), pending));
+            }
+        }
+        snapshots.flush();
+
+        for (Path segment : segments()) {
+            if (sequenceOf(segment) <= sealedSequence) {
+                Files.deleteIfExists(segment);
+            }
+        }
+        // A case updated again during compaction keeps its newer entry, backed by the active segment.
+        compacted.forEach(entry -> dirty.remove(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Applies segments left over from a previous run to the snapshots and returns the highest sequence seen.
+     */
+    private long replay() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, CaseMetadata> replayed = new HashMap<>();
+        long lastSequence = 0;
+        for (Path segment : segments) {
+            lastSequence = Math.max(lastSequence, sequenceOf(segment));
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JournalRecord record;
+                    try {
+                        record = objectMapper.readValue(line, JournalRecord.class);
+                    } catch (IOException e) {
+                        // Only the tail of the last segment can be torn by a crash; nothing after it was acknowledged.
+                        log.warn("Ignoring unreadable journal record in {}", segment.getFileName());
+                        break;
+                    }
+                    apply(replayed, record);
+                }
+            }
+        }
+
+        for (CaseMetadata metadata : replayed.values()) {
+            snapshots.write(metadata);
+        }
+        snapshots.flush();
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+        log.info("Replayed {} journal segment(s) onto {} case snapshot(s)", segments.size(), replayed.size());
+        return lastSequence;
+    }
+
+    private void apply(Map<String, CaseMetadata> replayed, JournalRecord record) throws IOException {
+        if (record.type() == RecordType.CASE) {
+            replayed.put(record.caseId(), record.metadata());
+            return;
+        }
+        CaseMetadata metadata = replayed.get(record.caseId());
+        if (metadata == null) {
+            metadata = snapshots.read(record.caseId()).orElse(null);
+            if (metadata == null) {
+                log.warn("Dropping journal record for unknown case {}", record.caseId());
+                return;
+            }
+            replayed.put(record.caseId(), metadata);
+        }
+        List<DocumentMetadata> documents = metadata.getDocuments();
+        for (int i = 0; i < documents.size(); i++) {
+            if (documents.get(i).getId().equals(record.document().getId())) {
+                documents.set(i, record.document());
+                return;
+            }
+        }
+        documents.add(record.document());
+    }
+
+    private FileChannel activeSegment() throws IOException {
+        if (activeSegment == null) {
+            Files.createDirectories(journalDir);
+            Path segment = journalDir.resolve(SEGMENT_PREFIX + String.format("%016d", activeSequence) + SEGMENT_SUFFIX);
+            activeSegment = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return activeSegment;
+    }
+
+    private void closeActiveSegment() throws IOException {
+        if (activeSegment != null) {
+            activeSegment.close();
+            activeSegment = null;
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return List.of();
+        }
+        try (var files = Files.list(journalDir)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    enum RecordType {
+        CASE,
+        DOCUMENT
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record JournalRecord(RecordType type, String caseId, CaseMetadata metadata, DocumentMetadata document) {
+    }
+
+    private record DirtyCase(CaseMetadata metadata, long sequence) {
+    }
+}
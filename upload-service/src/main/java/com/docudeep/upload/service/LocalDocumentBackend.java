@@ -0,0 +1,165 @@
+package com.docudeep.upload.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link DocumentBackend} on the case directories of {@code storage.root}, the layout view-service reads. A write
+ * goes to a temporary file of the case directory, renamed over the previous file once checked; with the
+ * {@link BlobStore} enabled, identical contents are stored once and hard-linked.
+ * <p>
+ * The revision of an object is the SHA-256 of its content. A single node writes the disk and holds the case lock
+ * around {@link #replace}, so checking it then renaming is enough.
+ */
+public class LocalDocumentBackend implements DocumentBackend {
+
+    private final CaseDirectories caseDirectories;
+    private final BlobStore blobStore;
+
+    public LocalDocumentBackend(CaseDirectories caseDirectories, BlobStore blobStore) {
+        this.caseDirectories = caseDirectories;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public String type() {
+        return "local";
+    }
+
+    @Override
+    public void createCase(String caseId) throws IOException {
+        caseDirectories.withDirectory(caseId, Files::createDirectories);
+    }
+
+    @Override
+    public long write(String caseId, String name, InputStream data, ContentCheck check) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> {
+            Files.createDirectories(caseDir);
+            Path temp = caseDir.resolve("." + name + "." + UUID.randomUUID() + ".tmp");
+            try {
+                long size = Files.copy(data, temp);
+                place(temp, check.verify(), caseDir.resolve(name));
+                return size;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        });
+    }
+
+    @Override
+    public void put(String caseId, String name, Path file, String sha256) throws IOException {
+        caseDirectories.withDirectory(caseId, caseDir -> {
+            Files.createDirectories(caseDir);
+            place(file, sha256, caseDir.resolve(name));
+            return null;
+        });
+    }
+
+    @Override
+    public void release(String sha256) throws IOException {
+        if (blobStore.isEnabled()) {
+            // The previous upload's link was replaced; its blob goes once no other case uses it.
+            blobStore.release(sha256);
+        }
+    }
+
+    @Override
+    public Optional<Revisioned> read(String caseId, String name) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> {
+            try {
+                byte[] content = Files.readAllBytes(caseDir.resolve(name));
+                return Optional.of(new Revisioned(content, revision(content)));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    @Override
+    public String replace(String caseId, String name, byte[] content, String expectedRevision) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> {
+            Path destination = caseDir.resolve(name);
+            String current = Files.exists(destination) ? revision(Files.readAllBytes(destination)) : null;
+            if (!Objects.equals(current, expectedRevision)) {
+                throw new RevisionConflictException(caseId + "/" + name);
+            }
+            Files.createDirectories(caseDir);
+            Path temp = caseDir.resolve("." + name + "." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.write(temp, content);
+                place(temp, null, destination);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return revision(content);
+        });
+    }
+
+    @Override
+    public boolean exists(String caseId, String name) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> Files.exists(caseDir.resolve(name)));
+    }
+
+    @Override
+    public void delete(String caseId, String name) throws IOException {
+        caseDirectories.withDirectory(caseId, caseDir -> Files.deleteIfExists(caseDir.resolve(name)));
+    }
+
+    @Override
+    public InputStream open(String caseId, String name) throws IOException {
+        // An open file stays readable when its case moves to the sharded layout.
+        return caseDirectories.withDirectory(caseId, caseDir -> Files.newInputStream(caseDir.resolve(name)));
+    }
+
+    @Override
+    public <T> T withFile(String caseId, String name, FileAction<T> action) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> action.run(caseDir.resolve(name)));
+    }
+
+    @Override
+    public Optional<Path> localPath(String caseId, String name) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> Optional.of(caseDir.resolve(name)));
+    }
+
+    @Override
+    public List<String> caseIds() throws IOException {
+        return caseDirectories.caseIds();
+    }
+
+    @Override
+    public void clear() {
+        // Everything lives under storage.root.
+    }
+
+    private void place(Path file, String sha256, Path destination) throws IOException {
+        if (blobStore.isEnabled() && sha256 != null) {
+            blobStore.store(file, sha256, destination);
+            return;
+        }
+        try {
+            Files.move(file, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String revision(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.FsyncPolicy;
+import com.docudeep.upload.config.StorageProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes JSON files so that readers only ever observe the previous or the next complete version.
+ * <p>
+ * Content goes to a temporary sibling first and is then renamed over the target, which is atomic on POSIX
+ * file systems. How much of that reaches stable storage before returning is governed by {@link FsyncPolicy}; unless
+ * it is {@link FsyncPolicy#NONE}, the temporary file is forced before the rename, so that a crash can never leave the
+ * target pointing at data that was not written yet.
+ */
+@Component
+public class MetadataFileWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(MetadataFileWriter.class);
+
+    private final ObjectWriter writer;
+    private final FsyncPolicy fsyncPolicy;
+    private final Set<Path> pendingDirectories = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+
+    public MetadataFileWriter(StorageProperties properties, ObjectMapper objectMapper) {
+        StorageProperties.Metadata metadata = properties.getMetadata();
+        this.writer = metadata.isPrettyPrint() ? objectMapper.writerWithDefaultPrettyPrinter() : objectMapper.writer();
+        this.fsyncPolicy = metadata.getFsync();
+        if (fsyncPolicy == FsyncPolicy.BATCHED) {
+            long intervalMillis = Math.max(1, metadata.getFsyncInterval().toMillis());
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metadata-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushPending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public void write(Path target, Object value) throws IOException {
+        byte[] content = writer.writeValueAsBytes(value);
+        Path directory = target.getParent();
+        Path temp = directory.resolve("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                force(channel, temp);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        switch (fsyncPolicy) {
+            case PER_WRITE -> forceDirectory(directory);
+            case BATCHED -> pendingDirectories.add(directory);
+            case NONE -> {
+                // Left to the operating system.
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flushPending();
+        }
+    }
+
+    /**
+     * Forces the directories whose fsync was deferred by the {@link FsyncPolicy#BATCHED} policy, making the renames
+     * done in them durable. The files themselves were forced before being renamed.
+     */
+    public void flushPending() {
+        if (pendingDirectories.isEmpty()) {
+            return;
+        }
+        List<Path> directories = new ArrayList<>(pendingDirectories);
+        pendingDirectories.removeAll(directories);
+        directories.forEach(this::forceDirectory);
+    }
+
+    void force(FileChannel channel, Path file) throws IOException {
+        channel.force(false);
+    }
+
+    void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (NoSuchFileException e) {
+            // The case was deleted since it was written; nothing left to make durable.
+        } catch (IOException e) {
+            // Some platforms (notably Windows) cannot open directories; the rename is still atomic there.
+            log.debug("Unable to fsync directory {}", directory, e);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageBackend;
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads: a document is sent as {@code PATCH} chunks, each written at its {@code Upload-Offset} in a
+ * partial file of the case directory. Chunks may arrive out of order or in parallel; the received ranges are
+ * persisted next to the partial file so that an interrupted upload resumes, even across a restart, from what
+ * {@link #status} reports. Once every byte has been received the partial file is handed to
+ * {@link CaseStorageService#storeAssembledDocument}, which moves it into place.
+ * <p>
+ * While chunks arrive in order the SHA-256 of the document is computed as they are written; the file is only
+ * read again when chunks were received out of order or in parallel, when a chunk rewrote bytes already hashed, or
+ * after a restart.
+ * <p>
+ * With {@code storage.backend=S3} the partial file and its state would tie an upload to one node, so the chunks
+ * and their list are kept in the bucket instead, see {@link BackendUploadSessions}.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CaseDirectories caseDirectories;
+    private final CaseStorageService storageService;
+    private final CaseLocks caseLocks;
+    private final MetadataFileWriter stateWriter;
+    private final ObjectMapper objectMapper;
+    private final BackendUploadSessions backendSessions;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public ResumableUploadService(StorageProperties properties,
+                                  CaseDirectories caseDirectories,
+                                  CaseStorageService storageService,
+                                  CaseLocks caseLocks,
+                                  MetadataFileWriter stateWriter,
+                                  ObjectMapper objectMapper,
+                                  DocumentBackend backend) {
+        this.caseDirectories = caseDirectories;
+        this.storageService = storageService;
+        this.caseLocks = caseLocks;
+        this.stateWriter = stateWriter;
+        this.objectMapper = objectMapper;
+        this.backendSessions = properties.getBackend() == StorageBackend.S3
+            ? new BackendUploadSessions(backend, storageService, objectMapper)
+            : null;
+    }
+
+    public UploadStatus status(String caseId, String documentId) throws IOException {
+        DocumentMetadata document = requireDocument(caseId, documentId);
+        if (backendSessions != null) {
+            Optional<UploadStatus> status = backendSessions.status(caseId, documentId);
+            return status.isPresent() ? status.get() : storedStatus(document);
+        }
+        return caseDirectories.withDirectory(caseId, caseDir -> caseLocks.withLock(caseId, () -> {
+            Session session = loadSession(caseId, documentId);
+            return session != null ? session.status() : storedStatus(document);
+        }));
+    }
+
+    private static UploadStatus storedStatus(DocumentMetadata document) {
+        if (document.getStatus() != DocumentStatus.PENDING && document.getStoredSize() > 0) {
+            long size = document.getStoredSize();
+            return new UploadStatus(size, size, List.of(new Range(0, size)), true);
+        }
+        return new UploadStatus(0, document.getDeclaredSize(), List.of(), false);
+    }
+
+    /**
+     * Writes one chunk at {@code offset}. The first chunk of an upload must start at 0; its length is
+     * {@code declaredLength} or, when absent, the size declared at case creation.
+     */
+    public UploadStatus appendChunk(String caseId, String documentId, long offset, Long declaredLength,
+                                    InputStream data, ExpectedDigest expected) throws IOException {
+        if (backendSessions != null) {
+            DocumentMetadata document = requireDocument(caseId, documentId);
+            InputStream body = offset == 0 ? UploadGuard.inspect(data, document.getMimeType()) : data;
+            return backendSessions.append(caseId, document, offset, declaredLength, body, expected);
+        }
+        // The case directory stays in place until the chunk is written and, for the last one, the file moved.
+        return caseDirectories.withDirectory(caseId,
+            caseDir -> append(caseId, documentId, offset, declaredLength, data, expected));
+    }
+
+    private UploadStatus append(String caseId, String documentId, long offset, Long declaredLength,
+                                InputStream data, ExpectedDigest expected) throws IOException {
+        DocumentMetadata document = requireDocument(caseId, documentId);
+        Path partFile = partFile(caseId, documentId);
+        // The chunk holding the start of the file is checked against the declared type before anything is written.
+        InputStream body = offset == 0 ? UploadGuard.inspect(data, document.getMimeType()) : data;
+
+        Claim claim = caseLocks.withLock(caseId, () -> {
+            Session current = loadSession(caseId, documentId);
+            if (current == null) {
+                if (offset != 0) {
+                    throw new UploadConflictException(0);
+                }
+                long length = declaredLength != null ? declaredLength : document.getDeclaredSize();
+                if (length <= 0) {
+                    throw new IllegalArgumentException("La taille du document (Upload-Length) est requise");
+                }
+                if (length > UploadGuard.MAX_DOCUMENT_BYTES) {
+                    throw UploadGuard.tooLarge();
+                }
+                current = new Session(length);
+                sessions.put(key(caseId, documentId), current);
+                saveState(caseId, documentId, current);
+            } else if (declaredLength != null && declaredLength != current.length) {
+                throw new IllegalArgumentException("Upload-Length ne correspond pas à l'envoi en cours");
+            }
+            if (current.completing) {
+                throw new UploadConflictException(current.length);
+            }
+            if (offset < 0 || offset > current.length) {
+                throw new IllegalArgumentException("Upload-Offset hors du document");
+            }
+            current.writers++;
+            return new Claim(current, current.claimDigest(offset));
+        });
+        Session session = claim.session();
+
+        long written;
+        try {
+            written = writeChunk(partFile, offset, session.length - offset, body, expected,
+                claim.feedsDigest() ? session.digest : null);
+        } catch (IOException | RuntimeException e) {
+            // Bytes of a failed chunk may be on disk but are not counted as received; a retry overwrites them.
+            caseLocks.withLock(caseId, () -> {
+                session.writers--;
+                if (claim.feedsDigest()) {
+                    session.releaseDigest(-1);
+                }
+                return null;
+            });
+            throw e;
+        }
+
+        boolean complete = caseLocks.withLock(caseId, () -> {
+            session.writers--;
+            if (claim.feedsDigest()) {
+                session.releaseDigest(offset + written);
+            }
+            session.addRange(offset, offset + written);
+            saveState(caseId, documentId, session);
+            if (session.isComplete() && session.writers == 0 && !session.completing) {
+                session.completing = true;
+                return true;
+            }
+            return false;
+        });
+        if (complete) {
+            complete(caseId, documentId, session, partFile);
+        }
+        return caseLocks.withLock(caseId, session::status);
+    }
+
+    /**
+     * Abandons an upload in progress, e.g. because the document is being replaced by a single {@code PUT}.
+     */
+    public void discard(String caseId, String documentId) throws IOException {
+        if (backendSessions != null) {
+            backendSessions.discard(caseId, documentId);
+            return;
+        }
+        caseDirectories.withDirectory(caseId, caseDir -> caseLocks.withLock(caseId, () -> {
+            sessions.remove(key(caseId, documentId));
+            Files.deleteIfExists(partFile(caseId, documentId));
+            Files.deleteIfExists(stateFile(caseId, documentId));
+            return null;
+        }));
+    }
+
+    private void complete(String caseId, String documentId, Session session, Path partFile) throws IOException {
+        try {
+            byte[] sha256 = session.digested == session.length && session.digest != null
+                ? session.digest.digest()
+                : digest(partFile);
+            storageService.storeAssembledDocument(caseId, documentId, partFile, sha256);
+        } catch (IOException | RuntimeException e) {
+            caseLocks.withLock(caseId, () -> {
+                session.completing = false;
+                session.digest = null;
+                return null;
+            });
+            throw e;
+        }
+        caseLocks.withLock(caseId, () -> {
+            sessions.remove(key(caseId, documentId));
+            Files.deleteIfExists(partFile);
+            Files.deleteIfExists(stateFile(caseId, documentId));
+            return null;
+        });
+    }
+
+    private long writeChunk(Path partFile, long offset, long remaining, InputStream data, ExpectedDigest expected,
+                            MessageDigest documentDigest) throws IOException {
+        MessageDigest sha256 = expected.sha256() != null ? newDigest("SHA-256") : null;
+        MessageDigest md5 = expected.md5() != null ? newDigest("MD5") : null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                if (written + read > remaining) {
+                    throw new IllegalArgumentException("Le bloc dépasse la taille annoncée du document");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk, offset + written + chunk.position());
+                }
+                if (sha256 != null) {
+                    sha256.update(buffer, 0, read);
+                }
+                if (md5 != null) {
+                    md5.update(buffer, 0, read);
+                }
+                if (documentDigest != null) {
+                    documentDigest.update(buffer, 0, read);
+                }
+                written += read;
+            }
+        }
+        verifyDigest("sha-256", expected.sha256(), sha256);
+        verifyDigest("MD5", expected.md5(), md5);
+        return written;
+    }
+
+    private Session loadSession(String caseId, String documentId) throws IOException {
+        Session session = sessions.get(key(caseId, documentId));
+        if (session != null) {
+            return session;
+        }
+        Path stateFile = stateFile(caseId, documentId);
+        if (!Files.exists(stateFile) || !Files.exists(partFile(caseId, documentId))) {
+            return null;
+        }
+        UploadState state = objectMapper.readValue(stateFile.toFile(), UploadState.class);
+        session = new Session(state.length());
+        for (Range range : state.received()) {
+            session.addRange(range.start(), range.end());
+        }
+        if (!state.received().isEmpty()) {
+            // The running digest did not survive the restart; it is recomputed from the file on completion.
+            session.digest = null;
+        }
+        sessions.put(key(caseId, documentId), session);
+        return session;
+    }
+
+    private void saveState(String caseId, String documentId, Session session) throws IOException {
+        stateWriter.write(stateFile(caseId, documentId), new UploadState(session.length, session.received()));
+    }
+
+    private DocumentMetadata requireDocument(String caseId, String documentId) {
+        CaseMetadata metadata = storageService.findCase(caseId)
+            .orElseThrow(() -> new IllegalArgumentException("Case not found"));
+        return metadata.getDocuments().stream()
+            .filter(doc -> doc.getId().equals(documentId))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+    }
+
+    /**
+     * Only called while the public entry point holds the case directory, so the path stays valid.
+     */
+    private Path partFile(String caseId, String documentId) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> {
+            Files.createDirectories(caseDir);
+            return caseDir.resolve("." + documentId + ".upload");
+        });
+    }
+
+    private Path stateFile(String caseId, String documentId) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> caseDir.resolve("." + documentId + ".upload.json"));
+    }
+
+    private static String key(String caseId, String documentId) {
+        return caseId + "/" + documentId;
+    }
+
+    private static byte[] digest(Path file) throws IOException {
+        MessageDigest sha256 = newDigest("SHA-256");
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), sha256)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return sha256.digest();
+    }
+
+    static void verifyDigest(String algorithm, byte[] expected, MessageDigest actual) {
+        if (expected != null && !MessageDigest.isEqual(expected, actual.digest())) {
+            throw new IllegalArgumentException("Le bloc reçu ne correspond pas à l'empreinte " + algorithm + " annoncée");
+        }
+    }
+
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    /**
+     * Progress of an upload: {@code offset} is the end of the contiguous prefix received so far, {@code received}
+     * lists every received range (end exclusive) for clients that send chunks in parallel.
+     */
+    public record UploadStatus(long offset, long length, List<Range> received, boolean complete) {}
+
+    public record Range(long start, long end) {}
+
+    record UploadState(long length, List<Range> received) {}
+
+    private record Claim(Session session, boolean feedsDigest) {}
+
+    /**
+     * In-memory state of one upload, guarded by the case lock.
+     */
+    private static final class Session {
+
+        private final long length;
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+        // SHA-256 of [0, digested) while chunks arrive in order; null once a chunk may have rewritten hashed bytes.
+        private MessageDigest digest = newDigest("SHA-256");
+        private long digested;
+        private boolean digesting;
+        private int writers;
+        private boolean completing;
+
+        private Session(long length) {
+            this.length = length;
+        }
+
+        /**
+         * Lets the chunk starting at {@code offset} feed the running digest if it continues it exactly and nothing
+         * else is being written. A chunk that may overwrite hashed bytes, i.e. one starting below {@code digested}
+         * or written alongside the chunk feeding the digest, drops it: the file is hashed again on completion.
+         */
+        private boolean claimDigest(long offset) {
+            if (digest != null && (offset < digested || digesting)) {
+                digest = null;
+            }
+            if (digest == null || writers > 0 || offset != digested) {
+                return false;
+            }
+            digesting = true;
+            return true;
+        }
+
+        private void releaseDigest(long digestedUpTo) {
+            digesting = false;
+            if (digestedUpTo < 0) {
+                digest = null;
+            } else {
+                digested = digestedUpTo;
+            }
+        }
+
+        private void addRange(long start, long end) {
+            if (start >= end) {
+                return;
+            }
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+            while (next != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                ranges.remove(next.getKey());
+                next = ranges.ceilingEntry(start);
+            }
+            ranges.put(start, end);
+        }
+
+        private boolean isComplete() {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return first != null && first.getKey() == 0 && first.getValue() == length;
+        }
+
+        private List<Range> received() {
+            List<Range> received = new ArrayList<>();
+            ranges.forEach((start, end) -> received.add(new Range(start, end)));
+            return received;
+        }
+
+        private UploadStatus status() {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            long offset = first != null && first.getKey() == 0 ? first.getValue() : 0;
+            return new UploadStatus(offset, length, received(), isComplete());
+        }
+    }
+}
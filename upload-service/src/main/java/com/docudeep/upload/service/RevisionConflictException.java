@@ -0,0 +1,14 @@
+package com.docudeep.upload.service;
+
+import java.io.IOException;
+
+/**
+ * A conditional write refused because the object changed since the revision it was based on was read, typically
+ * by another upload node sharing the {@link DocumentBackend}.
+ */
+public class RevisionConflictException extends IOException {
+
+    public RevisionConflictException(String object) {
+        super("Object " + object + " was modified concurrently");
+    }
+}
@@ -0,0 +1,325 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link DocumentBackend} on an S3-compatible bucket, selected with {@code storage.backend=S3}: objects are keyed
+ * {@code <prefix><caseId>/<name>}, so any upload node can serve any case without a shared volume. Only keys under
+ * the prefix are listed and cleared, so the rest of the bucket is never touched.
+ * <p>
+ * Writes are streamed: at most {@code storage.s3.part-size} bytes are buffered, in a buffer that only grows to
+ * that size for bodies that need it. A body that fits in one part is
+ * stored with a single PUT, a larger one with a multipart upload whose parts are sent as they fill; the upload is
+ * only completed once the content check passes, and aborted otherwise, so a rejected body never replaces the
+ * previous object. Blobs and segments need the local disk and cannot be enabled with this backend.
+ * <p>
+ * The revision of an object is its ETag: {@link #replace} is a conditional PUT ({@code If-Match}, or
+ * {@code If-None-Match: *} for a new object), so that two nodes updating the same {@code metadata.json} cannot
+ * silently overwrite each other.
+ */
+public class S3DocumentBackend implements DocumentBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(S3DocumentBackend.class);
+    // S3 rejects multipart uploads whose parts, the last one excepted, are smaller than 5 MiB.
+    private static final long MIN_PART_BYTES = 5L * 1024 * 1024;
+    private static final String DOWNLOAD_DIRECTORY = ".downloads";
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+    private final int partSize;
+    private final Path downloads;
+
+    public S3DocumentBackend(StorageProperties properties, S3Client s3Client) {
+        StorageProperties.S3 s3 = properties.getS3();
+        if (s3.getBucket() == null || s3.getBucket().isBlank()) {
+            throw new IllegalStateException("storage.s3.bucket is required with storage.backend=S3");
+        }
+        if (s3.getPrefix() == null || s3.getPrefix().isBlank() || s3.getPrefix().startsWith("/")) {
+            // Listing and reset work on every key under the prefix: a blank one would cover the whole bucket.
+            throw new IllegalStateException("storage.s3.prefix must name a dedicated key prefix, e.g. cases/");
+        }
+        if (properties.getBlobs().isEnabled() || properties.getSegments().isEnabled()) {
+            throw new IllegalStateException(
+                "storage.blobs.enabled and storage.segments.enabled cannot be combined with storage.backend=S3");
+        }
+        this.s3Client = s3Client;
+        this.bucket = s3.getBucket();
+        this.prefix = s3.getPrefix().endsWith("/") ? s3.getPrefix() : s3.getPrefix() + "/";
+        this.partSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_PART_BYTES, s3.getPartSize().toBytes()));
+        this.downloads = Path.of(properties.getRoot()).toAbsolutePath().normalize().resolve(DOWNLOAD_DIRECTORY);
+    }
+
+    @Override
+    public String type() {
+        return "s3";
+    }
+
+    @Override
+    public void createCase(String caseId) {
+        // No directories in a bucket: a case is listed once it has an object.
+    }
+
+    @Override
+    public long write(String caseId, String name, InputStream data, ContentCheck check) throws IOException {
+        String key = key(caseId, name);
+        PartBuffer part = new PartBuffer();
+        if (!part.fill(data)) {
+            check.verify();
+            s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentLength((long) part.length)
+                .build(), part.body());
+            return part.length;
+        }
+
+        String uploadId = s3Client.createMultipartUpload(
+            CreateMultipartUploadRequest.builder().bucket(bucket).key(key).build()).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            long total = 0;
+            while (part.length > 0) {
+                int partNumber = parts.size() + 1;
+                String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .contentLength((long) part.length)
+                    .build(), part.body()).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                total += part.length;
+                part.fill(data);
+            }
+            check.verify();
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+            return total;
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(String caseId, String name, Path file, String sha256) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            write(caseId, name, input, () -> sha256);
+        }
+        Files.delete(file);
+    }
+
+    @Override
+    public Optional<Revisioned> read(String caseId, String name) throws IOException {
+        try (ResponseInputStream<GetObjectResponse> input = s3Client.getObject(
+            GetObjectRequest.builder().bucket(bucket).key(key(caseId, name)).build())) {
+            return Optional.of(new Revisioned(input.readAllBytes(), input.response().eTag()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String replace(String caseId, String name, byte[] content, String expectedRevision) throws IOException {
+        String key = key(caseId, name);
+        PutObjectRequest.Builder request = PutObjectRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .contentLength((long) content.length);
+        if (expectedRevision == null) {
+            request.ifNoneMatch("*");
+        } else {
+            request.ifMatch(expectedRevision);
+        }
+        try {
+            return s3Client.putObject(request.build(), RequestBody.fromBytes(content)).eTag();
+        } catch (S3Exception e) {
+            // 412: the object changed since it was read; 409: a concurrent conditional write to it won.
+            if (e.statusCode() == 412 || e.statusCode() == 409) {
+                throw new RevisionConflictException(key);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists(String caseId, String name) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key(caseId, name)).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String caseId, String name) {
+        // Succeeds whether or not the object exists.
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key(caseId, name)).build());
+    }
+
+    @Override
+    public InputStream open(String caseId, String name) throws IOException {
+        String key = key(caseId, name);
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        }
+    }
+
+    /**
+     * Downloads the object to {@code <storage.root>/.downloads} for the duration of {@code action}.
+     */
+    @Override
+    public <T> T withFile(String caseId, String name, FileAction<T> action) throws IOException {
+        Files.createDirectories(downloads);
+        Path file = Files.createTempFile(downloads, "object-", ".tmp");
+        try {
+            try (InputStream input = open(caseId, name)) {
+                Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return action.run(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public List<String> caseIds() {
+        List<String> caseIds = new ArrayList<>();
+        String token = null;
+        do {
+            ListObjectsV2Response page = s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .delimiter("/")
+                .continuationToken(token)
+                .build());
+            for (CommonPrefix common : page.commonPrefixes()) {
+                String casePrefix = common.prefix();
+                caseIds.add(casePrefix.substring(prefix.length(), casePrefix.length() - 1));
+            }
+            token = Boolean.TRUE.equals(page.isTruncated()) ? page.nextContinuationToken() : null;
+        } while (token != null);
+        return caseIds;
+    }
+
+    @Override
+    public void clear() {
+        while (true) {
+            // Listed from the start each time: the objects of the previous page are gone.
+            ListObjectsV2Response page = s3Client.listObjectsV2(
+                ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build());
+            if (page.contents().isEmpty()) {
+                return;
+            }
+            List<ObjectIdentifier> objects = page.contents().stream()
+                .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+                .toList();
+            s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder().objects(objects).quiet(true).build())
+                .build());
+        }
+    }
+
+    private String key(String caseId, String name) {
+        return prefix + caseId + "/" + name;
+    }
+
+    private void abort(String key, String uploadId, Exception cause) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+        } catch (RuntimeException e) {
+            // The parts are left to the bucket's lifecycle rule for incomplete multipart uploads.
+            log.warn("Unable to abort the multipart upload of {}", key, e);
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Holds one part of a body being written. It starts small and doubles up to {@code partSize} only as the body
+     * needs it, so that the many documents far below a part do not each allocate a whole one.
+     */
+    private final class PartBuffer {
+
+        private byte[] bytes = new byte[Math.min(INITIAL_BUFFER_BYTES, partSize)];
+        private int length;
+
+        /**
+         * Reads the next part, replacing the previous one.
+         *
+         * @return whether the part is full, {@code false} once the body has ended
+         */
+        boolean fill(InputStream data) throws IOException {
+            length = 0;
+            while (length < partSize) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(partSize, 2L * bytes.length));
+                }
+                int read = data.read(bytes, length, bytes.length - length);
+                if (read < 0) {
+                    return false;
+                }
+                length += read;
+            }
+            return true;
+        }
+
+        RequestBody body() {
+            return RequestBody.fromInputStream(new ByteArrayInputStream(bytes, 0, length), length);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically compacts the {@link SegmentStore}. Liveness is decided by a full scan of the case metadata: a
+ * stored content is live while a packed document still carries its digest.
+ */
+@Component
+public class SegmentCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCompactor.class);
+
+    private final SegmentStore segmentStore;
+    private final CaseStorageService storageService;
+    private final ScheduledExecutorService scheduler;
+
+    public SegmentCompactor(StorageProperties properties, SegmentStore segmentStore, CaseStorageService storageService) {
+        this.segmentStore = segmentStore;
+        this.storageService = storageService;
+        if (segmentStore.isEnabled()) {
+            long intervalMillis = Math.max(1, properties.getSegments().getCompactionInterval().toMillis());
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "segment-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::compactQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * @return the number of bytes reclaimed
+     */
+    public long compact() throws IOException {
+        return segmentStore.compact(storageService::packedDigests);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Segment compaction failed", e);
+        }
+    }
+}
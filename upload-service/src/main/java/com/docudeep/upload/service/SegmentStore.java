@@ -0,0 +1,445 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Packs document bytes into large append-only segment files, enabled with {@code storage.segments.enabled}, so
+ * that millions of documents do not mean millions of small files.
+ * <p>
+ * Segments live in {@code .segments} as {@code <id>.seg} (raw document bytes, back to back) and {@code <id>.idx}
+ * (one {@code <sha256> <offset> <length>} line per document). A content is stored once per digest. Only the
+ * highest-numbered segment is appended to; it is sealed once it reaches {@code max-segment-size}. Bytes are forced
+ * to disk before their index line, so an index line always points at durable data. view-service reads the same
+ * index files.
+ * <p>
+ * Compaction rewrites sealed segments whose unreferenced share reaches {@code compaction-threshold}. Their live
+ * documents are copied into the active segment, then the old index and segment files are deleted. Packing holds
+ * the shared side of {@link #withPackingLock}, so compaction never sees a half-recorded document.
+ */
+@Component
+public class SegmentStore {
+
+    static final String SEGMENT_DIRECTORY = ".segments";
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentStore.class);
+    private static final String DATA_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final double compactionThreshold;
+    private final ReentrantReadWriteLock packingLock = new ReentrantReadWriteLock();
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private final Counter packedBytes;
+    private final Counter reclaimedBytes;
+
+    private long activeId;
+    private FileChannel activeData;
+    private FileChannel activeIndex;
+
+    public SegmentStore(StorageProperties properties, MeterRegistry meterRegistry) throws IOException {
+        StorageProperties.Segments segments = properties.getSegments();
+        this.enabled = segments.isEnabled();
+        this.directory = Path.of(properties.getRoot()).toAbsolutePath().normalize().resolve(SEGMENT_DIRECTORY);
+        this.maxSegmentBytes = segments.getMaxSegmentSize().toBytes();
+        this.compactionThreshold = segments.getCompactionThreshold();
+        this.packedBytes = Counter.builder("docudeep.segments.packed")
+            .description("Document bytes appended to segment files")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("docudeep.segments.reclaimed")
+            .description("Unreferenced segment bytes freed by compaction")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.segments.documents", this, SegmentStore::size)
+            .description("Distinct contents stored in segment files")
+            .register(meterRegistry);
+        if (enabled) {
+            if (properties.getBlobs().isEnabled()) {
+                throw new IllegalStateException("storage.segments.enabled cannot be combined with storage.blobs.enabled");
+            }
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code action}, typically an append followed by the metadata update recording it, without a
+     * compaction in between.
+     */
+    public <T> T withPackingLock(CaseLocks.LockedAction<T> action) throws IOException {
+        packingLock.readLock().lock();
+        try {
+            return action.run();
+        } finally {
+            packingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the content of {@code file}, unless bytes with the same digest are already stored. The bytes are
+     * hashed as they are copied: if {@code file} no longer holds the content with this digest, e.g. because a new
+     * upload replaced it after its digest was read, nothing is indexed.
+     *
+     * @return where the content is stored, empty when {@code file} does not match {@code sha256}
+     */
+    public synchronized Optional<Location> append(Path file, String sha256) throws IOException {
+        Location existing = index.get(sha256);
+        if (existing != null) {
+            return Optional.of(existing);
+        }
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Optional.ofNullable(appendFrom(source, 0, source.size(), sha256, newSha256()));
+        }
+    }
+
+    /**
+     * Opens the stored bytes with this digest. The slice stays readable if a compaction deletes its segment
+     * meanwhile.
+     */
+    public Optional<Slice> open(String sha256) throws IOException {
+        Location location;
+        synchronized (this) {
+            location = index.get(sha256);
+        }
+        if (location == null) {
+            return Optional.empty();
+        }
+        try {
+            FileChannel channel = FileChannel.open(dataFile(location.segment()), StandardOpenOption.READ);
+            return Optional.of(new Slice(channel, location.offset(), location.length()));
+        } catch (NoSuchFileException e) {
+            synchronized (this) {
+                if (location.equals(index.get(sha256))) {
+                    throw e;
+                }
+            }
+            // Moved by a compaction between the lookup and the open.
+            return open(sha256);
+        }
+    }
+
+    /**
+     * Rewrites the sealed segments that hold mostly unreferenced bytes.
+     *
+     * @param liveDigests supplies the digests still referenced by a document; called with packing suspended
+     * @return the number of bytes reclaimed
+     */
+    public long compact(LiveDigests liveDigests) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        packingLock.writeLock().lock();
+        try {
+            Set<String> live = liveDigests.get();
+            synchronized (this) {
+                long reclaimed = 0;
+                for (long segment : sealedSegments()) {
+                    reclaimed += compactSegment(segment, live);
+                }
+                if (reclaimed > 0) {
+                    reclaimedBytes.increment(reclaimed);
+                    log.info("Segment compaction reclaimed {} bytes", reclaimed);
+                }
+                return reclaimed;
+            }
+        } finally {
+            packingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets every segment; used when the storage root is wiped.
+     */
+    public synchronized void clear() throws IOException {
+        closeActive();
+        index.clear();
+        segments.clear();
+        activeId = 0;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    private long compactSegment(long segment, Set<String> live) throws IOException {
+        Path data = dataFile(segment);
+        long size = Files.size(data);
+        List<Map.Entry<String, Location>> entries = new ArrayList<>();
+        long liveBytes = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue().segment() == segment) {
+                entries.add(entry);
+                if (live.contains(entry.getKey())) {
+                    liveBytes += entry.getValue().length();
+                }
+            }
+        }
+        if (size > 0 && (double) (size - liveBytes) / size < compactionThreshold) {
+            return 0;
+        }
+        try (FileChannel source = FileChannel.open(data, StandardOpenOption.READ)) {
+            for (Map.Entry<String, Location> entry : entries) {
+                index.remove(entry.getKey());
+                if (live.contains(entry.getKey())) {
+                    // Checked when first appended: copied as is.
+                    appendFrom(source, entry.getValue().offset(), entry.getValue().length(), entry.getKey(), null);
+                }
+            }
+        }
+        // The index goes first: a segment file without its index is garbage and removed at startup.
+        Files.deleteIfExists(indexFile(segment));
+        Files.deleteIfExists(data);
+        segments.remove(segment);
+        return size - liveBytes;
+    }
+
+    /**
+     * @param check digest to compute over the copied bytes and compare with {@code sha256}, {@code null} to copy
+     *              without checking
+     * @return the new location, or {@code null} when the check failed; the copied bytes are then cut off again
+     */
+    private Location appendFrom(FileChannel source, long position, long length, String sha256,
+                                MessageDigest check) throws IOException {
+        openActive(length);
+        long offset = activeData.size();
+        try {
+            if (check == null) {
+                transfer(source, position, length, sha256);
+            } else if (!copyAndHash(source, position, length, sha256, check)) {
+                activeData.truncate(offset);
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            activeData.truncate(offset);
+            throw e;
+        }
+        activeData.force(false);
+        writeFully(activeIndex, (sha256 + " " + offset + " " + length + "\n").getBytes(StandardCharsets.US_ASCII));
+        activeIndex.force(false);
+
+        Location location = new Location(activeId, offset, length);
+        index.put(sha256, location);
+        packedBytes.increment(length);
+        return location;
+    }
+
+    private void transfer(FileChannel source, long position, long length, String sha256) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long transferred = source.transferTo(position + copied, length - copied, activeData);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of " + sha256 + " after " + copied + " bytes");
+            }
+            copied += transferred;
+        }
+    }
+
+    /**
+     * Copies through a buffer rather than with {@code transferTo}, so that the bytes written are the bytes hashed.
+     *
+     * @return whether they match {@code sha256}
+     */
+    private boolean copyAndHash(FileChannel source, long position, long length, String sha256,
+                                MessageDigest check) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+        long copied = 0;
+        while (copied < length) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length - copied));
+            int read = source.read(buffer, position + copied);
+            if (read < 0) {
+                return false;
+            }
+            buffer.flip();
+            check.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                activeData.write(buffer);
+            }
+            copied += read;
+        }
+        // Longer than when it was sized: not the same content either.
+        return source.size() == position + length
+            && MessageDigest.isEqual(check.digest(), HexFormat.of().parseHex(sha256));
+    }
+
+    /**
+     * Makes sure an active segment with room for {@code length} more bytes is open, sealing the current one if
+     * needed. An empty segment takes any document, however large.
+     */
+    private void openActive(long length) throws IOException {
+        if (activeData != null && (activeData.size() == 0 || activeData.size() + length <= maxSegmentBytes)) {
+            return;
+        }
+        closeActive();
+        Files.createDirectories(directory);
+        activeId++;
+        openSegment(activeId);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        activeData = FileChannel.open(dataFile(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeIndex = FileChannel.open(indexFile(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.add(segment);
+    }
+
+    private void closeActive() throws IOException {
+        try {
+            if (activeData != null) {
+                activeData.close();
+            }
+            if (activeIndex != null) {
+                activeIndex.close();
+            }
+        } finally {
+            activeData = null;
+            activeIndex = null;
+        }
+    }
+
+    /**
+     * Rebuilds the in-memory index from the index files, then reopens the last segment for appending. A torn
+     * last line (crash while appending) is dropped, and so are segment files whose index is gone (crash during
+     * compaction).
+     */
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        TreeSet<Long> dataSegments = new TreeSet<>();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(DATA_SUFFIX)) {
+                    dataSegments.add(segmentId(name, DATA_SUFFIX));
+                } else if (name.endsWith(INDEX_SUFFIX)) {
+                    segments.add(segmentId(name, INDEX_SUFFIX));
+                }
+            }
+        }
+        for (long segment : dataSegments) {
+            if (!segments.contains(segment)) {
+                log.warn("Removing segment {} whose index is missing", segment);
+                Files.delete(dataFile(segment));
+            }
+        }
+        long indexEnd = 0;
+        long dataEnd = 0;
+        for (long segment : segments) {
+            byte[] lines = Files.readAllBytes(indexFile(segment));
+            indexEnd = 0;
+            dataEnd = 0;
+            int start = 0;
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i] != '\n') {
+                    continue;
+                }
+                String[] fields = new String(lines, start, i - start, StandardCharsets.US_ASCII).split(" ");
+                if (fields.length != 3) {
+                    break;
+                }
+                Location location = new Location(segment, Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                index.put(fields[0], location);
+                dataEnd = Math.max(dataEnd, location.offset() + location.length());
+                start = i + 1;
+                indexEnd = start;
+            }
+            activeId = segment;
+        }
+        if (activeId > 0) {
+            openSegment(activeId);
+            // Bytes past the last complete index line were never acknowledged.
+            activeIndex.truncate(indexEnd);
+            activeData.truncate(dataEnd);
+        }
+    }
+
+    private Collection<Long> sealedSegments() {
+        return new ArrayList<>(segments.headSet(activeId, false));
+    }
+
+    private Path dataFile(long segment) {
+        return directory.resolve(String.format("%08d", segment) + DATA_SUFFIX);
+    }
+
+    private Path indexFile(long segment) {
+        return directory.resolve(String.format("%08d", segment) + INDEX_SUFFIX);
+    }
+
+    private static long segmentId(String name, String suffix) {
+        return Long.parseLong(name.substring(0, name.length() - suffix.length()));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public record Location(long segment, long offset, long length) {
+    }
+
+    /**
+     * An open view of one stored document: {@code length} bytes of {@code channel} from {@code offset}.
+     */
+    public record Slice(FileChannel channel, long offset, long length) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @FunctionalInterface
+    public interface LiveDigests {
+        Set<String> get() throws IOException;
+    }
+}
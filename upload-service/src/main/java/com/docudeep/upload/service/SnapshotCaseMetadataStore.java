@@ -0,0 +1,65 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Stores each case as a complete {@code metadata.json} in its case directory, rewritten on every mutation.
+ */
+public class SnapshotCaseMetadataStore implements CaseMetadataStore {
+
+    static final String METADATA_FILE = "metadata.json";
+
+    private final CaseDirectories caseDirectories;
+    private final ObjectMapper objectMapper;
+    private final MetadataFileWriter fileWriter;
+
+    public SnapshotCaseMetadataStore(CaseDirectories caseDirectories, ObjectMapper objectMapper,
+                                     MetadataFileWriter fileWriter) {
+        this.caseDirectories = caseDirectories;
+        this.objectMapper = objectMapper;
+        this.fileWriter = fileWriter;
+    }
+
+    @Override
+    public Optional<CaseMetadata> read(String caseId) throws IOException {
+        return caseDirectories.withDirectory(caseId, caseDir -> {
+            Path file = caseDir.resolve(METADATA_FILE);
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(file.toFile(), CaseMetadata.class));
+        });
+    }
+
+    @Override
+    public void create(CaseMetadata metadata) throws IOException {
+        write(metadata);
+    }
+
+    @Override
+    public void updateDocument(CaseMetadata metadata, DocumentMetadata document) throws IOException {
+        write(metadata);
+    }
+
+    public void write(CaseMetadata metadata) throws IOException {
+        caseDirectories.withDirectory(metadata.getCaseId(), caseDir -> {
+            Files.createDirectories(caseDir);
+            fileWriter.write(caseDir.resolve(METADATA_FILE), metadata);
+            return null;
+        });
+    }
+
+    /**
+     * Forces snapshots whose fsync was deferred by the batched policy.
+     */
+    public void flush() {
+        fileWriter.flushPending();
+    }
+}
@@ -0,0 +1,152 @@
+package com.docudeep.upload.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Times every call to a {@link DocumentBackend} in {@code docudeep.storage.backend.latency}, tagged with the
+ * backend, the operation and its outcome, so that the local disk and S3 are measured the same way. Reads are timed
+ * until the content is available: {@code open} until the stream is returned, {@code withFile} until the action
+ * starts.
+ */
+public class TimedDocumentBackend implements DocumentBackend {
+
+    private final DocumentBackend delegate;
+    private final MeterRegistry meterRegistry;
+
+    public TimedDocumentBackend(DocumentBackend delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String type() {
+        return delegate.type();
+    }
+
+    @Override
+    public void createCase(String caseId) throws IOException {
+        timed("create", () -> {
+            delegate.createCase(caseId);
+            return null;
+        });
+    }
+
+    @Override
+    public long write(String caseId, String name, InputStream data, ContentCheck check) throws IOException {
+        return timed("write", () -> delegate.write(caseId, name, data, check));
+    }
+
+    @Override
+    public void put(String caseId, String name, Path file, String sha256) throws IOException {
+        timed("put", () -> {
+            delegate.put(caseId, name, file, sha256);
+            return null;
+        });
+    }
+
+    @Override
+    public void release(String sha256) throws IOException {
+        timed("release", () -> {
+            delegate.release(sha256);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Revisioned> read(String caseId, String name) throws IOException {
+        return timed("read", () -> delegate.read(caseId, name));
+    }
+
+    @Override
+    public String replace(String caseId, String name, byte[] content, String expectedRevision) throws IOException {
+        return timed("replace", () -> delegate.replace(caseId, name, content, expectedRevision));
+    }
+
+    @Override
+    public boolean exists(String caseId, String name) throws IOException {
+        return timed("exists", () -> delegate.exists(caseId, name));
+    }
+
+    @Override
+    public void delete(String caseId, String name) throws IOException {
+        timed("delete", () -> {
+            delegate.delete(caseId, name);
+            return null;
+        });
+    }
+
+    @Override
+    public InputStream open(String caseId, String name) throws IOException {
+        return timed("open", () -> delegate.open(caseId, name));
+    }
+
+    @Override
+    public <T> T withFile(String caseId, String name, FileAction<T> action) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean[] fetched = new boolean[1];
+        try {
+            return delegate.withFile(caseId, name, file -> {
+                fetched[0] = true;
+                sample.stop(timer("fetch", "success"));
+                return action.run(file);
+            });
+        } catch (IOException | RuntimeException e) {
+            if (!fetched[0]) {
+                sample.stop(timer("fetch", "error"));
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String caseId, String name) throws IOException {
+        return delegate.localPath(caseId, name);
+    }
+
+    @Override
+    public List<String> caseIds() throws IOException {
+        return timed("list", delegate::caseIds);
+    }
+
+    @Override
+    public void clear() throws IOException {
+        timed("clear", () -> {
+            delegate.clear();
+            return null;
+        });
+    }
+
+    private <T> T timed(String operation, BackendCall<T> call) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.run();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(operation, outcome));
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("docudeep.storage.backend.latency")
+            .description("Duration of document backend operations")
+            .tag("backend", delegate.type())
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface BackendCall<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.docudeep.upload.service;
+
+/**
+ * A resumable upload chunk that cannot be applied at the requested offset; {@link #getOffset()} is where the
+ * client has to resume.
+ */
+public class UploadConflictException extends RuntimeException {
+
+    private final long offset;
+
+    public UploadConflictException(long offset) {
+        super("L'envoi doit reprendre à l'octet " + offset);
+        this.offset = offset;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,97 @@
+package com.docudeep.upload.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * First stage of the upload pipeline. The leading bytes of a body are checked against the signature of its
+ * declared type before anything is written, and the copy is aborted as soon as the body exceeds the size limit.
+ */
+public final class UploadGuard {
+
+    public static final long MAX_DOCUMENT_BYTES = 10L * 1024 * 1024;
+
+    private static final Map<String, byte[]> SIGNATURES = Map.of(
+        "application/pdf", "%PDF-".getBytes(StandardCharsets.US_ASCII),
+        "image/png", new byte[] {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A},
+        "image/jpeg", new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}
+    );
+
+    private UploadGuard() {
+    }
+
+    /**
+     * Reads the signature of {@code body} and returns a stream replaying it followed by the rest of the body,
+     * failing once more than {@link #MAX_DOCUMENT_BYTES} bytes have been read. An empty body is let through; it is
+     * reported as an empty file by validation.
+     *
+     * @throws UploadRejectedException if the leading bytes do not match {@code declaredMimeType}
+     */
+    public static InputStream inspect(InputStream body, String declaredMimeType) throws IOException {
+        byte[] signature = declaredMimeType == null ? null : SIGNATURES.get(declaredMimeType);
+        if (signature == null) {
+            throw new UploadRejectedException(UploadRejectedException.Reason.UNEXPECTED_CONTENT,
+                "Format de fichier non supporté : " + declaredMimeType);
+        }
+        byte[] head = body.readNBytes(signature.length);
+        if (head.length > 0 && !Arrays.equals(head, signature)) {
+            throw new UploadRejectedException(UploadRejectedException.Reason.UNEXPECTED_CONTENT,
+                "Le contenu du fichier ne correspond pas au format déclaré (" + declaredMimeType + ")");
+        }
+        return new LimitedInputStream(new SequenceInputStream(new ByteArrayInputStream(head), body), MAX_DOCUMENT_BYTES);
+    }
+
+    public static UploadRejectedException tooLarge() {
+        return new UploadRejectedException(UploadRejectedException.Reason.TOO_LARGE,
+            "La taille maximale par document est de 10 Mo.");
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) {
+            count += bytes;
+            if (count > maxBytes) {
+                throw tooLarge();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.docudeep.upload.service;
+
+/**
+ * An upload body refused while it was being received, before it replaced anything on disk.
+ */
+public class UploadRejectedException extends RuntimeException {
+
+    private final Reason reason;
+
+    public UploadRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public enum Reason {
+        /** The body is larger than the per-document limit. */
+        TOO_LARGE,
+        /** The leading bytes do not match the signature of the declared MIME type. */
+        UNEXPECTED_CONTENT
+    }
+}
@@ -0,0 +1,114 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.DocumentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs document validation off the request thread when {@code storage.validation.async} is set.
+ * <p>
+ * A document is flagged {@link DocumentStatus#VALIDATING} before it is queued and a worker moves it to
+ * {@code VALIDATED} or {@code FAILED}. The queue is bounded: once full, new requests are refused with
+ * {@link ValidationQueueFullException} rather than piling up. Documents still queued when the service stops keep
+ * their {@code VALIDATING} status; calling {@code /complete} again schedules them anew.
+ */
+@Component
+public class ValidationQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ValidationQueue.class);
+
+    private final CaseStorageService storageService;
+    private final ThreadPoolExecutor workers;
+    private final Timer waitTime;
+    private final Counter rejected;
+
+    public ValidationQueue(StorageProperties properties, CaseStorageService storageService, MeterRegistry meterRegistry,
+                           Environment environment) {
+        StorageProperties.Validation validation = properties.getValidation();
+        this.storageService = storageService;
+        if (validation.isAsync()) {
+            int workerCount = Math.max(1, validation.getWorkers());
+            // Follows spring.threads.virtual.enabled like the request threads; the pool size still caps how many
+            // documents are validated at once.
+            ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("validation-", 1).factory()
+                : Thread.ofPlatform().name("validation-", 1).daemon(true).factory();
+            this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, validation.getQueueCapacity())), threadFactory);
+            Gauge.builder("docudeep.validation.queue.depth", workers, executor -> executor.getQueue().size())
+                .description("Documents waiting for a validation worker")
+                .register(meterRegistry);
+        } else {
+            this.workers = null;
+        }
+        this.waitTime = Timer.builder("docudeep.validation.queue.wait")
+            .description("Time a document spends queued before a worker validates it")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("docudeep.validation.rejected")
+            .description("Validation requests refused because the queue was full")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return workers != null;
+    }
+
+    /**
+     * Queues the validation of a document, flagging it {@code VALIDATING}.
+     *
+     * @throws ValidationQueueFullException when the queue has no room left; the document keeps its status
+     */
+    public void submit(String caseId, String documentId) throws IOException {
+        if (workers == null) {
+            throw new IllegalStateException("Asynchronous validation is disabled");
+        }
+        DocumentStatus previous = storageService.markValidating(caseId, documentId);
+        long queuedAt = System.nanoTime();
+        try {
+            workers.execute(() -> validate(caseId, documentId, previous, queuedAt));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            storageService.restoreStatus(caseId, documentId, previous);
+            throw new ValidationQueueFullException();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void validate(String caseId, String documentId, DocumentStatus previous, long queuedAt) {
+        waitTime.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        try {
+            storageService.validateDocument(caseId, documentId);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Validation of document {} in case {} failed", documentId, caseId, e);
+            try {
+                // Leaves the document where the client can simply ask for validation again.
+                storageService.restoreStatus(caseId, documentId, previous);
+            } catch (IOException | RuntimeException restoreFailure) {
+                log.warn("Unable to reset the status of document {} in case {}", documentId, caseId, restoreFailure);
+            }
+        }
+    }
+}
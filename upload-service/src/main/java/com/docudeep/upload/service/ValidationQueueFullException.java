@@ -0,0 +1,11 @@
+package com.docudeep.upload.service;
+
+/**
+ * Asynchronous validation was requested while every slot of the validation queue is taken.
+ */
+public class ValidationQueueFullException extends RuntimeException {
+
+    public ValidationQueueFullException() {
+        super("La file de validation est pleine, merci de réessayer dans quelques instants.");
+    }
+}
@@ -0,0 +1,221 @@
+package com.docudeep.upload.controller;
+
+import com.docudeep.common.bulkhead.BulkheadFullException;
+import com.docudeep.common.bulkhead.BulkheadInterceptor;
+import com.docudeep.common.bulkhead.ConcurrencyProperties;
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentType;
+import com.docudeep.upload.service.CaseStorageService;
+import com.docudeep.upload.service.CaseStorageServices;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays a flood of slow uploads alongside a steady trickle of {@code /complete} calls through the real
+ * {@link CaseStorageService} and {@link BulkheadInterceptor}, once on a 200-thread platform pool (Tomcat's default
+ * {@code server.tomcat.threads.max}) and once with a virtual thread per request, each with and without bulkheads.
+ * It reports how long validations wait behind the uploads. Run with {@code ./gradlew :upload-service:benchmark};
+ * {@code -Dbenchmark.uploads} and {@code -Dbenchmark.validations} change the load.
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmarkTest {
+
+    private static final int UPLOADS = Integer.getInteger("benchmark.uploads", 2000);
+    private static final int VALIDATIONS = Integer.getInteger("benchmark.validations", 200);
+    private static final int PLATFORM_THREADS = 200;
+    private static final int UPLOAD_PERMITS = 64;
+    // A slow client: 64 KiB arriving in 4 KiB packets, 15 ms apart.
+    private static final int PACKET_BYTES = 4096;
+    private static final int PACKETS = 16;
+    private static final long PACKET_INTERVAL_MILLIS = 15;
+
+    @TempDir
+    Path storageRoot;
+
+    private CaseStorageService storageService;
+    private final List<String[]> uploadTargets = new ArrayList<>();
+    private final List<String[]> validationTargets = new ArrayList<>();
+    private byte[] body;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        properties.getMetadataCache().setMaxEntries(UPLOADS + VALIDATIONS);
+        storageService = CaseStorageServices.builder(properties).build();
+        body = new byte[PACKET_BYTES * PACKETS];
+        System.arraycopy("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), 0, body, 0, 8);
+        for (int i = 0; i < UPLOADS; i++) {
+            uploadTargets.add(newDocument());
+        }
+        for (int i = 0; i < VALIDATIONS; i++) {
+            String[] target = newDocument();
+            storageService.storeDocument(target[0], target[1], new ByteArrayInputStream(body));
+            validationTargets.add(target);
+        }
+    }
+
+    @Test
+    void compareExecutionModes() throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (boolean virtual : new boolean[] {false, true}) {
+            for (boolean bulkheads : new boolean[] {false, true}) {
+                results.add(run(virtual, bulkheads));
+            }
+        }
+
+        System.out.printf("%-10s %-9s %9s %9s %14s %14s %14s %13s%n", "threads", "bulkheads", "uploads", "refused",
+            "uploads ms", "validate p50", "validate p99", "peak threads");
+        for (Result result : results) {
+            System.out.printf("%-10s %-9s %9d %9d %14d %14.1f %14.1f %13d%n", result.mode(), result.bulkheads() ? "on" : "off",
+                result.uploaded(), result.refused(), result.uploadMillis(), result.validationP50(), result.validationP99(),
+                result.peakThreads());
+        }
+    }
+
+    private Result run(boolean virtual, boolean bulkheads) throws Exception {
+        ConcurrencyProperties properties = new ConcurrencyProperties();
+        properties.getBulkheads().setEnabled(bulkheads);
+        properties.getBulkheads().getLimits().put(EndpointClass.UPLOADS, UPLOAD_PERMITS);
+        BulkheadInterceptor interceptor = new BulkheadInterceptor(properties, EndpointClass.DEFAULT_LIMITS, new SimpleMeterRegistry());
+        CaseController controller = new CaseController(null, null, null);
+        HandlerMethod upload = new HandlerMethod(controller, CaseController.class.getMethod("uploadDocument",
+            String.class, String.class, HttpServletRequest.class));
+        HandlerMethod complete = new HandlerMethod(controller, CaseController.class.getMethod("completeDocument",
+            String.class, String.class));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        AtomicInteger uploaded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        double[] validationMillis = new double[VALIDATIONS];
+        ExecutorService requests = virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> uploads = new ArrayList<>();
+            for (String[] target : uploadTargets) {
+                uploads.add(requests.submit(() -> handle(interceptor, upload, refused, () -> {
+                    storageService.storeDocument(target[0], target[1], slowClient());
+                    uploaded.incrementAndGet();
+                })));
+            }
+            List<Future<?>> validations = new ArrayList<>();
+            for (int i = 0; i < VALIDATIONS; i++) {
+                String[] target = validationTargets.get(i);
+                int index = i;
+                long arrival = System.nanoTime();
+                validations.add(requests.submit(() -> handle(interceptor, complete, refused, () -> {
+                    storageService.validateDocument(target[0], target[1]);
+                    validationMillis[index] = (System.nanoTime() - arrival) / 1e6;
+                })));
+                Thread.sleep(5);
+            }
+            for (Future<?> validation : validations) {
+                validation.get(5, TimeUnit.MINUTES);
+            }
+            for (Future<?> future : uploads) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            requests.shutdown();
+        }
+        long uploadMillis = (System.nanoTime() - start) / 1_000_000;
+        assertThat(uploaded.get() + refused.get()).isEqualTo(UPLOADS);
+
+        Arrays.sort(validationMillis);
+        return new Result(virtual ? "virtual" : "platform", bulkheads, uploaded.get(), refused.get(), uploadMillis,
+            validationMillis[VALIDATIONS / 2], validationMillis[(int) (VALIDATIONS * 0.99)], threads.getPeakThreadCount());
+    }
+
+    private Void handle(BulkheadInterceptor interceptor, HandlerMethod handler, AtomicInteger refused, Request request) throws Exception {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            interceptor.preHandle(servletRequest, response, handler);
+        } catch (BulkheadFullException e) {
+            refused.incrementAndGet();
+            return null;
+        }
+        try {
+            request.run();
+        } finally {
+            interceptor.afterCompletion(servletRequest, response, handler, null);
+        }
+        return null;
+    }
+
+    private InputStream slowClient() {
+        InputStream content = new ByteArrayInputStream(body);
+        return new InputStream() {
+            private int remainingInPacket;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remainingInPacket == 0) {
+                    if (content.available() == 0) {
+                        return -1;
+                    }
+                    try {
+                        Thread.sleep(PACKET_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted", e);
+                    }
+                    remainingInPacket = PACKET_BYTES;
+                }
+                int read = content.read(buffer, offset, Math.min(length, remainingInPacket));
+                if (read > 0) {
+                    remainingInPacket -= read;
+                }
+                return read;
+            }
+        };
+    }
+
+    private String[] newDocument() throws IOException {
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("scan.pdf", "application/pdf", body.length, DocumentType.CHARGES)));
+        return new String[] {created.getCaseId(), created.getDocuments().get(0).getId()};
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+
+    private record Result(String mode, boolean bulkheads, int uploaded, int refused, long uploadMillis,
+                          double validationP50, double validationP99, int peakThreads) {
+    }
+}
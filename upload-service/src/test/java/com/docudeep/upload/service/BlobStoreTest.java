@@ -0,0 +1,111 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlobStoreTest {
+
+    private static final byte[] PAYSLIP = "%PDF-1.7 payslip".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path storageRoot;
+
+    private StorageProperties properties;
+    private CaseStorageService storageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        properties.getBlobs().setEnabled(true);
+        storageService = CaseStorageServices.builder(properties).build();
+    }
+
+    @Test
+    void identicalUploadsShareOneBlobUntilTheLastReferenceGoes() throws Exception {
+        String firstCase = createCase();
+        Path first = upload(firstCase, PAYSLIP);
+        String secondCase = createCase();
+        Path second = upload(secondCase, PAYSLIP);
+
+        assertThat(Files.isSameFile(first, second)).isTrue();
+        assertThat(blobs()).hasSize(1);
+
+        upload(secondCase, "%PDF-1.7 tax notice".getBytes(StandardCharsets.US_ASCII));
+        assertThat(blobs()).hasSize(2);
+        assertThat(Files.readString(first, StandardCharsets.US_ASCII)).isEqualTo(new String(PAYSLIP, StandardCharsets.US_ASCII));
+
+        upload(firstCase, "%PDF-1.7 tax notice".getBytes(StandardCharsets.US_ASCII));
+        assertThat(blobs()).hasSize(1);
+    }
+
+    @Test
+    void announcingTheDigestOfAnotherCaseDocumentDoesNotCopyIt() throws Exception {
+        upload(createCase(), PAYSLIP);
+        String otherCase = createCase();
+        String documentId = storageService.findCase(otherCase).orElseThrow().getDocuments().get(0).getId();
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(PAYSLIP);
+        ExpectedDigest announced = ExpectedDigest.fromHeaders(
+            "sha-256=:" + Base64.getEncoder().encodeToString(sha256) + ":", null);
+
+        // Without the bytes themselves, whatever is sent fails the digest check.
+        InputStream forged = new ByteArrayInputStream("%PDF-1.7 forged".getBytes(StandardCharsets.US_ASCII));
+        assertThatThrownBy(() -> storageService.storeDocument(otherCase, documentId, forged, announced))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(storageService.findCase(otherCase).orElseThrow().getDocuments().get(0).getSha256()).isNull();
+        try (var files = Files.list(storageRoot.resolve(otherCase))) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith(documentId))).isEmpty();
+        }
+    }
+
+    @Test
+    void unreferencedBlobsAreCollectedOnStartup() throws Exception {
+        Path orphan = storageRoot.resolve(".blobs").resolve("ab").resolve("ab".repeat(32));
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, PAYSLIP);
+        Path referenced = upload(createCase(), PAYSLIP);
+
+        new BlobStore(properties, new SimpleMeterRegistry());
+
+        assertThat(Files.exists(orphan)).isFalse();
+        assertThat(Files.exists(referenced)).isTrue();
+        assertThat(blobs()).hasSize(1);
+    }
+
+    private String createCase() throws IOException {
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        return created.getCaseId();
+    }
+
+    private Path upload(String caseId, byte[] content) throws IOException {
+        String documentId = storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getId();
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(content));
+        return storageService.resolveDocumentPath(caseId, documentId);
+    }
+
+    private List<Path> blobs() throws IOException {
+        try (var files = Files.walk(storageRoot.resolve(".blobs"))) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+}
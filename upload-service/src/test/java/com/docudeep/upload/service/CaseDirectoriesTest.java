@@ -0,0 +1,98 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseDirectoriesTest {
+
+    private static final byte[] PAYSLIP = "%PDF-1.7 payslip".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path storageRoot;
+
+    private StorageProperties properties;
+    private CaseDirectories caseDirectories;
+    private CaseStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+    }
+
+    @Test
+    void shardedLayoutPutsNewCasesUnderTwoHashPrefixDirectories() throws Exception {
+        properties.getLayout().setSharded(true);
+        startServices();
+        String caseId = createCase();
+        Path stored = upload(caseId);
+
+        Path relative = storageRoot.relativize(stored);
+        assertThat(relative.getNameCount()).isEqualTo(4);
+        assertThat(relative.getName(0).toString()).matches("[0-9a-f]{2}");
+        assertThat(relative.getName(1).toString()).matches("[0-9a-f]{2}");
+        assertThat(relative.getName(2).toString()).isEqualTo(caseId);
+        assertThat(Files.exists(storageRoot.resolve(caseId))).isFalse();
+        assertThat(storageService.listCases()).extracting(CaseMetadata::getCaseId).containsExactly(caseId);
+    }
+
+    @Test
+    void flatCasesStayReadableUntilTheMigratorMovesThem() throws Exception {
+        startServices();
+        String caseId = createCase();
+        Path flat = upload(caseId);
+        assertThat(storageRoot.relativize(flat).getNameCount()).isEqualTo(2);
+
+        properties.getLayout().setSharded(true);
+        startServices();
+        assertThat(storageService.resolveDocumentPath(caseId, documentId(caseId))).isEqualTo(flat);
+        CaseLayoutMigrator migrator = new CaseLayoutMigrator(new StorageProperties(), caseDirectories, new SimpleMeterRegistry());
+
+        int movedWhileInUse = caseDirectories.withDirectory(caseId, caseDir -> migrator.migrate());
+        assertThat(movedWhileInUse).isZero();
+        assertThat(migrator.migrate()).isEqualTo(1);
+        assertThat(migrator.migrate()).isZero();
+
+        Path moved = storageService.resolveDocumentPath(caseId, documentId(caseId));
+        assertThat(storageRoot.relativize(moved).getNameCount()).isEqualTo(4);
+        assertThat(Files.readAllBytes(moved)).isEqualTo(PAYSLIP);
+        assertThat(Files.exists(storageRoot.resolve(caseId))).isFalse();
+        assertThat(storageService.listCases()).extracting(CaseMetadata::getCaseId).containsExactly(caseId);
+        assertThat(upload(caseId)).isEqualTo(moved);
+    }
+
+    private void startServices() throws IOException {
+        caseDirectories = new CaseDirectories(properties);
+        storageService = CaseStorageServices.builder(properties).caseDirectories(caseDirectories).build();
+    }
+
+    private String createCase() throws IOException {
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        return created.getCaseId();
+    }
+
+    private Path upload(String caseId) throws IOException {
+        String documentId = documentId(caseId);
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(PAYSLIP));
+        return storageService.resolveDocumentPath(caseId, documentId);
+    }
+
+    private String documentId(String caseId) {
+        return storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getId();
+    }
+}
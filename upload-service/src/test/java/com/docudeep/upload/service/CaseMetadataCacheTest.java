@@ -0,0 +1,110 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseMetadataCacheTest {
+
+    @TempDir
+    Path storageRoot;
+
+    private final StorageProperties properties = new StorageProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CaseMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties.setRoot(storageRoot.toString());
+        properties.getMetadataCache().setMaxEntries(2);
+        cache = new CaseMetadataCache(properties, meterRegistry);
+    }
+
+    @Test
+    void aMissIsFollowedByHitsOnCopies() {
+        assertThat(cache.get("CASE-A")).isNull();
+
+        CaseMetadata metadata = metadata("CASE-A");
+        cache.put(metadata);
+        metadata.setCreatedAt(Instant.EPOCH);
+        CaseMetadata first = cache.get("CASE-A");
+        first.setCreatedAt(Instant.EPOCH);
+
+        // Neither the instance put nor the one returned is the cached one.
+        assertThat(cache.get("CASE-A").getCreatedAt()).isNotEqualTo(Instant.EPOCH);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("docudeep.metadata.cache.requests").tag("result", "hit").functionCounter().count())
+            .isEqualTo(2.0);
+    }
+
+    @Test
+    void anInvalidatedCaseIsReadAgain() {
+        cache.put(metadata("CASE-A"));
+        cache.invalidate("CASE-A");
+
+        assertThat(cache.get("CASE-A")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void theLeastRecentlyUsedCaseIsEvicted() {
+        cache.put(metadata("CASE-A"));
+        cache.put(metadata("CASE-B"));
+        cache.get("CASE-A");
+        cache.put(metadata("CASE-C"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.get("CASE-B")).isNull();
+        assertThat(cache.get("CASE-A")).isNotNull();
+        assertThat(cache.get("CASE-C")).isNotNull();
+    }
+
+    @Test
+    void listingEveryCaseLeavesTheWorkingSetInPlace() throws IOException {
+        CaseStorageService storageService = CaseStorageServices.builder(properties).metadataCache(cache).build();
+        String first = newCase(storageService);
+        String second = newCase(storageService);
+        String third = newCase(storageService);
+        // The working set: the two cases in use.
+        cache.clear();
+        storageService.findCase(first);
+        storageService.findCase(second);
+        long misses = cache.missCount();
+        long evictions = cache.evictionCount();
+
+        assertThat(storageService.listCases()).extracting(CaseMetadata::getCaseId)
+            .containsExactlyInAnyOrder(first, second, third);
+
+        assertThat(cache.get(first)).isNotNull();
+        assertThat(cache.get(second)).isNotNull();
+        assertThat(cache.get(third)).isNull();
+        assertThat(cache.evictionCount()).isEqualTo(evictions);
+        assertThat(cache.missCount()).isEqualTo(misses + 1);
+    }
+
+    private static String newCase(CaseStorageService storageService) throws IOException {
+        return storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", 16, DocumentType.CHARGES)))
+            .getCaseId();
+    }
+
+    private static CaseMetadata metadata(String caseId) {
+        CaseMetadata metadata = new CaseMetadata();
+        metadata.setCaseId(caseId);
+        metadata.setCreatedAt(Instant.parse("2024-01-01T00:00:00Z"));
+        return metadata;
+    }
+}
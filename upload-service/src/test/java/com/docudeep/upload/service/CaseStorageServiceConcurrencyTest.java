@@ -0,0 +1,96 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseStorageServiceConcurrencyTest {
+
+    private static final int DOCUMENTS_PER_CASE = 24;
+    private static final int THREADS = 12;
+
+    @TempDir
+    Path storageRoot;
+
+    private ExecutorService executor;
+    private CaseStorageService storageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(THREADS);
+        storageService = newStorageService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @RepeatedTest(5)
+    void parallelUploadsToOneCaseDoNotLoseUpdates() throws Exception {
+        CaseMetadata created = storageService.createCase(IntStream.range(0, DOCUMENTS_PER_CASE)
+            .mapToObj(i -> new CaseStorageService.DocumentRequest("doc-" + i + ".pdf", "application/pdf", 16, DocumentType.CHARGES))
+            .toList());
+        String caseId = created.getCaseId();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> uploads = new ArrayList<>();
+        for (DocumentMetadata document : created.getDocuments()) {
+            uploads.add(executor.submit(uploadAndValidate(start, caseId, document.getId())));
+        }
+        start.countDown();
+        for (Future<Void> upload : uploads) {
+            upload.get(30, TimeUnit.SECONDS);
+        }
+
+        assertAllValidated(storageService.findCase(caseId).orElseThrow());
+        // A fresh instance has an empty cache, so this checks what actually reached metadata.json.
+        assertAllValidated(newStorageService().findCase(caseId).orElseThrow());
+    }
+
+    private Callable<Void> uploadAndValidate(CountDownLatch start, String caseId, String documentId) {
+        return () -> {
+            start.await();
+            byte[] payload = SamplePdf.of(documentId);
+            storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(payload));
+            storageService.validateDocument(caseId, documentId);
+            return null;
+        };
+    }
+
+    private void assertAllValidated(CaseMetadata metadata) {
+        assertThat(metadata.getDocuments()).hasSize(DOCUMENTS_PER_CASE);
+        assertThat(metadata.getDocuments()).allSatisfy(document -> {
+            assertThat(document.getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+            assertThat(document.getStoredSize()).isPositive();
+            assertThat(document.getStorageFilename()).startsWith(document.getId());
+        });
+    }
+
+    private CaseStorageService newStorageService() throws IOException {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        return CaseStorageServices.builder(properties).build();
+    }
+}
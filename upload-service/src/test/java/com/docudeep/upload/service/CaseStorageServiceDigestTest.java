@@ -0,0 +1,98 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaseStorageServiceDigestTest {
+
+    private static final byte[] PAYLOAD = "%PDF-1.7 payslip".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path storageRoot;
+
+    private CaseStorageService storageService;
+    private String caseId;
+    private String documentId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        storageService = CaseStorageServices.builder(properties).build();
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYLOAD.length, DocumentType.CHARGES)));
+        caseId = created.getCaseId();
+        documentId = created.getDocuments().get(0).getId();
+    }
+
+    @Test
+    void digestIsComputedDuringTheCopyAndChecked() throws Exception {
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(PAYLOAD);
+        byte[] md5 = MessageDigest.getInstance("MD5").digest(PAYLOAD);
+        ExpectedDigest expected = ExpectedDigest.fromHeaders(
+            "sha-512=:AAAA:, sha-256=:" + Base64.getEncoder().encodeToString(sha256) + ":",
+            Base64.getEncoder().encodeToString(md5));
+
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(PAYLOAD), expected);
+
+        DocumentMetadata document = storageService.findCase(caseId).orElseThrow().getDocuments().get(0);
+        assertThat(document.getSha256()).isEqualTo(HexFormat.of().formatHex(sha256));
+        assertThat(document.getStatus()).isEqualTo(DocumentStatus.UPLOADED);
+    }
+
+    @Test
+    void mismatchingBodyIsRejectedAndKeepsThePreviousUpload() throws Exception {
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(PAYLOAD));
+        Path stored = storageService.resolveDocumentPath(caseId, documentId);
+        byte[] otherDigest = MessageDigest.getInstance("SHA-256").digest("other".getBytes(StandardCharsets.US_ASCII));
+        ExpectedDigest expected = ExpectedDigest.fromHeaders("sha-256=:" + Base64.getEncoder().encodeToString(otherDigest) + ":", null);
+
+        assertThatThrownBy(() -> storageService.storeDocument(caseId, documentId,
+            new ByteArrayInputStream("%PDF-tampered".getBytes(StandardCharsets.US_ASCII)), expected))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("sha-256");
+
+        assertThat(Files.readString(stored, StandardCharsets.US_ASCII)).isEqualTo(new String(PAYLOAD, StandardCharsets.US_ASCII));
+        try (var files = Files.list(stored.getParent())) {
+            assertThat(files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void identicalReuploadDoesNotReadTheBody() throws Exception {
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(PAYLOAD));
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(PAYLOAD);
+        InputStream unreadable = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("body should not be read");
+            }
+        };
+
+        storageService.storeDocument(caseId, documentId, unreadable,
+            ExpectedDigest.fromHeaders("sha-256=:" + Base64.getEncoder().encodeToString(sha256) + ":", null));
+
+        assertThat(storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getStoredSize())
+            .isEqualTo((long) PAYLOAD.length);
+    }
+}
@@ -0,0 +1,90 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.common.validation.ValidationResultCache;
+import com.docudeep.upload.config.StorageProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+
+/**
+ * Wires a {@link CaseStorageService} for tests the way {@code UploadConfiguration} does with
+ * {@code storage.backend=LOCAL} and snapshot metadata, each collaborator built from the given {@link StorageProperties}
+ * unless the test supplies its own.
+ * <p>
+ * Public only so that the controller benchmark can use it.
+ */
+public final class CaseStorageServices {
+
+    /**
+     * The {@link CaseStorageService} constructor, for tests that build a subclass.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        CaseStorageService create(StorageProperties properties, CaseMetadataCache metadataCache, CaseLocks caseLocks,
+                                  CaseMetadataStore metadataStore, DocumentContentValidator contentValidator,
+                                  SegmentStore segmentStore, DocumentBackend backend) throws IOException;
+    }
+
+    private final StorageProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private CaseDirectories caseDirectories;
+    private CaseMetadataCache metadataCache;
+    private CaseMetadataStore metadataStore;
+    private SegmentStore segmentStore;
+    private DocumentBackend backend;
+
+    private CaseStorageServices(StorageProperties properties) {
+        this.properties = properties;
+    }
+
+    public static CaseStorageServices builder(StorageProperties properties) {
+        return new CaseStorageServices(properties);
+    }
+
+    /**
+     * Shared by the default metadata store and backend.
+     */
+    public CaseStorageServices caseDirectories(CaseDirectories caseDirectories) {
+        this.caseDirectories = caseDirectories;
+        return this;
+    }
+
+    public CaseStorageServices metadataCache(CaseMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+        return this;
+    }
+
+    public CaseStorageServices metadataStore(CaseMetadataStore metadataStore) {
+        this.metadataStore = metadataStore;
+        return this;
+    }
+
+    public CaseStorageServices segmentStore(SegmentStore segmentStore) {
+        this.segmentStore = segmentStore;
+        return this;
+    }
+
+    public CaseStorageServices backend(DocumentBackend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public CaseStorageService build() throws IOException {
+        return build(CaseStorageService::new);
+    }
+
+    public CaseStorageService build(Factory factory) throws IOException {
+        CaseDirectories directories = caseDirectories != null ? caseDirectories : new CaseDirectories(properties);
+        return factory.create(properties,
+            metadataCache != null ? metadataCache : new CaseMetadataCache(properties, new SimpleMeterRegistry()),
+            new CaseLocks(properties),
+            metadataStore != null ? metadataStore : new SnapshotCaseMetadataStore(directories, objectMapper,
+                new MetadataFileWriter(properties, objectMapper)),
+            new DocumentContentValidator(new ValidationResultCache(properties.getValidation().getCacheMaxEntries(),
+                new SimpleMeterRegistry())),
+            segmentStore != null ? segmentStore : new SegmentStore(properties, new SimpleMeterRegistry()),
+            backend != null ? backend : new LocalDocumentBackend(directories,
+                new BlobStore(properties, new SimpleMeterRegistry())));
+    }
+}
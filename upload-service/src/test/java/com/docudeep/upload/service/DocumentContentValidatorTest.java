@@ -0,0 +1,106 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.common.validation.ValidationResultCache;
+import com.docudeep.upload.config.StorageProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentContentValidatorTest {
+
+    private static final String ENCRYPTED_PDF = """
+        %PDF-1.7
+        1 0 obj << /Type /Catalog >> endobj
+        xref
+        0 2
+        0000000000 65535 f\r
+        0000000009 00000 n\r
+        trailer << /Size 2 /Root 1 0 R /Encrypt 2 0 R >>
+        startxref
+        45
+        %%EOF
+        """;
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ValidationResultCache resultCache =
+        new ValidationResultCache(new StorageProperties().getValidation().getCacheMaxEntries(), meterRegistry);
+    private final DocumentContentValidator validator = new DocumentContentValidator(resultCache);
+
+    @Test
+    void encryptedPdfIsRejectedOnceAndTheOutcomeReused() throws IOException {
+        Path first = Files.writeString(directory.resolve("first.pdf"), ENCRYPTED_PDF, StandardCharsets.ISO_8859_1);
+        Path second = Files.copy(first, directory.resolve("second.pdf"));
+
+        assertThat(validator.validate(first, "abc", "application/pdf")).isEqualTo("Le document PDF est protégé par mot de passe");
+        Files.delete(second);
+        assertThat(validator.validate(second, "abc", "application/pdf")).isEqualTo("Le document PDF est protégé par mot de passe");
+
+        assertThat(meterRegistry.get("docudeep.validation.cache.requests").tag("result", "hit").functionCounter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    void aPdfWhoseTrailerCannotBeLocatedIsParsedInFull() throws IOException {
+        Path plain = Files.write(directory.resolve("plain.pdf"), withStaleStartxref(pdf(false)));
+        Path encrypted = Files.write(directory.resolve("encrypted.pdf"), withStaleStartxref(pdf(true)));
+        Path garbage = Files.writeString(directory.resolve("garbage.pdf"), "%PDF-1.7\nnot a document\n");
+
+        assertThat(validator.validate(plain, "plain", "application/pdf")).isNull();
+        assertThat(validator.validate(encrypted, "encrypted", "application/pdf"))
+            .isEqualTo("Le document PDF est protégé par mot de passe");
+        assertThat(validator.validate(garbage, "garbage", "application/pdf")).isEqualTo("Le document PDF est illisible");
+    }
+
+    @Test
+    void imageMustMatchItsDeclaredType() throws IOException {
+        Path png = directory.resolve("scan.png");
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+
+        assertThat(validator.validate(png, "png", "image/png")).isNull();
+        assertThat(validator.validate(png, "png", "image/jpeg"))
+            .isEqualTo("Le contenu de l'image ne correspond pas au type déclaré : image/jpeg");
+    }
+
+    private static byte[] pdf(boolean encrypted) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            if (encrypted) {
+                StandardProtectionPolicy policy = new StandardProtectionPolicy("owner", "", new AccessPermission());
+                policy.setEncryptionKeyLength(128);
+                document.protect(policy);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Shifts the {@code startxref} pointer a few bytes past the table, as an editor patching the file without fixing
+     * the offset would, so that only a full parse, which searches for the table, finds the trailer.
+     */
+    private static byte[] withStaleStartxref(byte[] pdf) {
+        String text = new String(pdf, StandardCharsets.ISO_8859_1);
+        int startxref = text.lastIndexOf("startxref");
+        long offset = Long.parseLong(text.substring(startxref + "startxref".length(), text.lastIndexOf("%%EOF")).trim());
+        return (text.substring(0, startxref) + "startxref\n" + (offset + 2) + "\n%%EOF\n")
+            .getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.FsyncPolicy;
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalCaseMetadataStoreTest {
+
+    @TempDir
+    Path storageRoot;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private SnapshotCaseMetadataStore snapshots;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        snapshots = new SnapshotCaseMetadataStore(new CaseDirectories(properties), objectMapper,
+            new MetadataFileWriter(properties, objectMapper));
+    }
+
+    @Test
+    void compactionFoldsJournalIntoSnapshots() throws IOException {
+        JournalCaseMetadataStore journal = newJournal();
+        CaseMetadata metadata = newCase();
+        journal.create(metadata);
+        markDocument(journal, metadata, DocumentStatus.UPLOADED);
+        markDocument(journal, metadata, DocumentStatus.VALIDATED);
+
+        assertThat(snapshots.read(metadata.getCaseId())).isEmpty();
+        assertThat(journal.read(metadata.getCaseId()).orElseThrow().getDocuments().get(0).getStatus())
+            .isEqualTo(DocumentStatus.VALIDATED);
+
+        journal.compact();
+
+        assertThat(snapshots.read(metadata.getCaseId()).orElseThrow().getDocuments().get(0).getStatus())
+            .isEqualTo(DocumentStatus.VALIDATED);
+        assertThat(journalSegments()).isEmpty();
+    }
+
+    @Test
+    void segmentsLeftByACrashAreReplayedOnStartup() throws IOException {
+        JournalCaseMetadataStore crashed = newJournal();
+        CaseMetadata metadata = newCase();
+        crashed.create(metadata);
+        markDocument(crashed, metadata, DocumentStatus.UPLOADED);
+        // Simulate a torn write at the tail of the segment.
+        Path segment = journalSegments().get(0);
+        Files.writeString(segment, Files.readString(segment) + "{\"type\":\"DOCUMENT\",\"caseId\":");
+
+        JournalCaseMetadataStore restarted = newJournal();
+
+        assertThat(snapshots.read(metadata.getCaseId()).orElseThrow().getDocuments().get(0).getStatus())
+            .isEqualTo(DocumentStatus.UPLOADED);
+        assertThat(restarted.read(metadata.getCaseId()).orElseThrow().getDocuments()).hasSize(2);
+        assertThat(journalSegments()).isEmpty();
+    }
+
+    private JournalCaseMetadataStore newJournal() throws IOException {
+        // A long interval keeps the background compactor out of the way; tests compact explicitly.
+        return new JournalCaseMetadataStore(storageRoot, objectMapper, snapshots, FsyncPolicy.BATCHED, Duration.ofHours(1));
+    }
+
+    private void markDocument(JournalCaseMetadataStore journal, CaseMetadata metadata, DocumentStatus status) throws IOException {
+        DocumentMetadata document = metadata.getDocuments().get(0);
+        document.setStatus(status);
+        document.setStoredSize(42);
+        journal.updateDocument(metadata, document);
+    }
+
+    private CaseMetadata newCase() {
+        CaseMetadata metadata = new CaseMetadata();
+        metadata.setCaseId("CASE-JOURNAL");
+        metadata.setCreatedAt(Instant.now());
+        metadata.setDocuments(new ArrayList<>(List.of(newDocument("a"), newDocument("b"))));
+        return metadata;
+    }
+
+    private DocumentMetadata newDocument(String id) {
+        DocumentMetadata document = new DocumentMetadata();
+        document.setId(id);
+        document.setFilename(id + ".pdf");
+        document.setMimeType("application/pdf");
+        document.setDocumentType(DocumentType.CHARGES);
+        document.setStatus(DocumentStatus.PENDING);
+        return document;
+    }
+
+    private List<Path> journalSegments() throws IOException {
+        try (var files = Files.list(storageRoot.resolve(JournalCaseMetadataStore.JOURNAL_DIRECTORY))) {
+            return files.sorted().toList();
+        }
+    }
+}
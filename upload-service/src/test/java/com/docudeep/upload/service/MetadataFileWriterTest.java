@@ -0,0 +1,137 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.FsyncPolicy;
+import com.docudeep.upload.config.StorageProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetadataFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> forced = new CopyOnWriteArrayList<>();
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        target = directory.resolve("metadata.json");
+        Files.writeString(target, "{\"version\":0}");
+    }
+
+    @Test
+    void noneForcesNothing() throws IOException {
+        RecordingWriter writer = writer(FsyncPolicy.NONE);
+
+        writer.write(target, Map.of("version", 1));
+        writer.flushPending();
+
+        assertThat(Files.readString(target)).isEqualTo("{\"version\":1}");
+        assertThat(forced).isEmpty();
+    }
+
+    @Test
+    void perWriteForcesTheFileBeforeRenamingItThenTheDirectory() throws IOException {
+        RecordingWriter writer = writer(FsyncPolicy.PER_WRITE);
+
+        writer.write(target, Map.of("version", 1));
+
+        assertThat(Files.readString(target)).isEqualTo("{\"version\":1}");
+        assertThat(forced).containsExactly("temp file, target still at {\"version\":0}", "directory");
+        assertThat(leftovers()).isEmpty();
+    }
+
+    @Test
+    void batchedForcesEachFileBeforeRenamingItAndDefersTheDirectory() throws IOException {
+        RecordingWriter writer = writer(FsyncPolicy.BATCHED);
+
+        writer.write(target, Map.of("version", 1));
+        writer.write(target, Map.of("version", 2));
+
+        assertThat(Files.readString(target)).isEqualTo("{\"version\":2}");
+        assertThat(forced).containsExactly(
+            "temp file, target still at {\"version\":0}", "temp file, target still at {\"version\":1}");
+
+        writer.flushPending();
+        writer.flushPending();
+        // Two renames in the same directory, one directory fsync.
+        assertThat(forced).hasSize(3).last().isEqualTo("directory");
+    }
+
+    @Test
+    void closingFlushesDeferredDirectories() throws IOException {
+        RecordingWriter writer = writer(FsyncPolicy.BATCHED);
+        writer.write(target, Map.of("version", 1));
+
+        writer.close();
+
+        assertThat(forced).last().isEqualTo("directory");
+    }
+
+    @Test
+    void aFailedWriteLeavesThePreviousVersion() throws IOException {
+        RecordingWriter writer = writer(FsyncPolicy.PER_WRITE);
+        writer.failForce = true;
+
+        assertThatThrownBy(() -> writer.write(target, Map.of("version", 1)))
+            .isInstanceOf(IOException.class);
+
+        assertThat(Files.readString(target)).isEqualTo("{\"version\":0}");
+        assertThat(leftovers()).isEmpty();
+    }
+
+    private RecordingWriter writer(FsyncPolicy policy) {
+        StorageProperties properties = new StorageProperties();
+        properties.getMetadata().setFsync(policy);
+        // Flushed by hand in these tests.
+        properties.getMetadata().setFsyncInterval(Duration.ofHours(1));
+        return new RecordingWriter(properties);
+    }
+
+    private List<Path> leftovers() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> !file.equals(target)).toList();
+        }
+    }
+
+    private class RecordingWriter extends MetadataFileWriter {
+
+        private boolean failForce;
+
+        RecordingWriter(StorageProperties properties) {
+            super(properties, objectMapper);
+        }
+
+        @Override
+        void force(FileChannel channel, Path file) throws IOException {
+            if (failForce) {
+                throw new IOException("fsync failed");
+            }
+            assertThat(file).isNotEqualTo(target);
+            forced.add("temp file, target still at " + Files.readString(target));
+            super.force(channel, file);
+        }
+
+        @Override
+        void forceDirectory(Path forcedDirectory) {
+            assertThat(forcedDirectory).isEqualTo(directory);
+            forced.add("directory");
+            super.forceDirectory(forcedDirectory);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResumableUploadServiceTest {
+
+    private static final int LENGTH = 300_000;
+    private static final int CHUNK = 64 * 1024;
+
+    @TempDir
+    Path storageRoot;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final byte[] content = new byte[LENGTH];
+    private StorageProperties properties;
+    private CaseDirectories caseDirectories;
+    private DocumentBackend backend;
+    private CaseStorageService storageService;
+    private String caseId;
+    private String documentId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 7);
+        }
+        System.arraycopy("%PDF-".getBytes(StandardCharsets.US_ASCII), 0, content, 0, 5);
+        properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        caseDirectories = new CaseDirectories(properties);
+        backend = new LocalDocumentBackend(caseDirectories, new BlobStore(properties, new SimpleMeterRegistry()));
+        storageService = CaseStorageServices.builder(properties).caseDirectories(caseDirectories).backend(backend).build();
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("scan.pdf", "application/pdf", LENGTH, DocumentType.CHARGES)));
+        caseId = created.getCaseId();
+        documentId = created.getDocuments().get(0).getId();
+    }
+
+    @Test
+    void interruptedUploadResumesFromTheReportedOffsetAfterARestart() throws Exception {
+        ResumableUploadService uploads = newUploadService();
+        uploads.appendChunk(caseId, documentId, 0, (long) LENGTH, chunk(0, CHUNK), ExpectedDigest.NONE);
+        assertThatThrownBy(() -> uploads.appendChunk(caseId, documentId, CHUNK, null, droppedAfter(CHUNK, 1000), ExpectedDigest.NONE))
+            .isInstanceOf(IOException.class);
+
+        ResumableUploadService restarted = newUploadService();
+        ResumableUploadService.UploadStatus status = restarted.status(caseId, documentId);
+        assertThat(status.offset()).isEqualTo((long) CHUNK);
+        assertThat(status.complete()).isFalse();
+
+        long offset = status.offset();
+        while (offset < LENGTH) {
+            int size = (int) Math.min(CHUNK, LENGTH - offset);
+            status = restarted.appendChunk(caseId, documentId, offset, null, chunk((int) offset, size), ExpectedDigest.NONE);
+            offset = status.offset();
+        }
+
+        assertStored();
+    }
+
+    @Test
+    void chunksSentInParallelAreAssembled() throws Exception {
+        ResumableUploadService uploads = newUploadService();
+        uploads.appendChunk(caseId, documentId, 0, (long) LENGTH, InputStream.nullInputStream(), ExpectedDigest.NONE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int offset = LENGTH - LENGTH % CHUNK; offset >= 0; offset -= CHUNK) {
+                int start = offset;
+                int size = Math.min(CHUNK, LENGTH - start);
+                chunks.add(executor.submit(() -> uploads.appendChunk(caseId, documentId, start, null, chunk(start, size), ExpectedDigest.NONE)));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertStored();
+        assertThat(uploads.status(caseId, documentId).complete()).isTrue();
+    }
+
+    @Test
+    void rewritingBytesAlreadyHashedKeepsTheDigestTrue() throws Exception {
+        ResumableUploadService uploads = newUploadService();
+        byte[] firstAttempt = Arrays.copyOf(content, CHUNK);
+        Arrays.fill(firstAttempt, 100, CHUNK, (byte) 0);
+        uploads.appendChunk(caseId, documentId, 0, (long) LENGTH, new ByteArrayInputStream(firstAttempt),
+            ExpectedDigest.NONE);
+
+        // The client resends part of the first chunk, now with the right bytes, then carries on.
+        long offset = uploads.appendChunk(caseId, documentId, 100, null, chunk(100, CHUNK - 100), ExpectedDigest.NONE)
+            .offset();
+        while (offset < LENGTH) {
+            int size = (int) Math.min(CHUNK, LENGTH - offset);
+            offset = uploads.appendChunk(caseId, documentId, offset, null, chunk((int) offset, size), ExpectedDigest.NONE)
+                .offset();
+        }
+
+        assertStored();
+    }
+
+    @Test
+    void chunkWithoutAnUploadInProgressMustStartAtZero() {
+        ResumableUploadService uploads = newUploadService();
+
+        assertThatThrownBy(() -> uploads.appendChunk(caseId, documentId, CHUNK, null, chunk(CHUNK, CHUNK), ExpectedDigest.NONE))
+            .isInstanceOf(UploadConflictException.class);
+    }
+
+    private void assertStored() throws Exception {
+        DocumentMetadata document = storageService.findCase(caseId).orElseThrow().getDocuments().get(0);
+        assertThat(document.getStatus()).isEqualTo(DocumentStatus.UPLOADED);
+        assertThat(document.getStoredSize()).isEqualTo((long) LENGTH);
+        assertThat(document.getSha256()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+        assertThat(Arrays.equals(Files.readAllBytes(storageService.resolveDocumentPath(caseId, documentId)), content)).isTrue();
+        try (var files = Files.list(storageRoot.resolve(caseId))) {
+            assertThat(files.filter(file -> file.getFileName().toString().contains(".upload")).count()).isEqualTo(0L);
+        }
+    }
+
+    private ResumableUploadService newUploadService() {
+        return new ResumableUploadService(properties, caseDirectories, storageService, new CaseLocks(properties),
+            new MetadataFileWriter(properties, objectMapper), objectMapper, backend);
+    }
+
+    private InputStream chunk(int offset, int size) {
+        return new ByteArrayInputStream(content, offset, size);
+    }
+
+    private InputStream droppedAfter(int offset, int size) {
+        InputStream delivered = chunk(offset, size);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int value = delivered.read();
+                if (value == -1) {
+                    throw new IOException("connection reset");
+                }
+                return value;
+            }
+        };
+    }
+}
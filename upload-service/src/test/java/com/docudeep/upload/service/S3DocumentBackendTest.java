@@ -0,0 +1,388 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageBackend;
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3DocumentBackendTest {
+
+    private static final byte[] PAYSLIP = SamplePdf.of("payslip");
+
+    @TempDir
+    Path storageRoot;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final InMemoryS3 s3 = new InMemoryS3();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StorageProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        properties.setBackend(StorageBackend.S3);
+        properties.getS3().setBucket("docudeep");
+        properties.getS3().setPrefix("upload");
+        properties.getS3().setPartSize(DataSize.ofMegabytes(5));
+    }
+
+    @Test
+    void casesLiveInTheBucketAndAreReadableFromAnotherNode() throws Exception {
+        CaseStorageService node = startNode();
+        CaseMetadata created = node.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        String caseId = created.getCaseId();
+        String documentId = created.getDocuments().get(0).getId();
+
+        node.storeDocument(caseId, documentId, new ByteArrayInputStream(PAYSLIP));
+        assertThat(node.validateDocument(caseId, documentId).getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+
+        assertThat(s3.objects.keySet()).containsExactly(
+            "upload/" + caseId + "/" + documentId + "_payslip.pdf", "upload/" + caseId + "/metadata.json");
+        assertThat(s3.objects.get("upload/" + caseId + "/" + documentId + "_payslip.pdf")).isEqualTo(PAYSLIP);
+        assertThat(Files.exists(storageRoot.resolve(caseId))).isFalse();
+
+        CaseStorageService otherNode = startNode();
+        assertThat(otherNode.listCases()).extracting(CaseMetadata::getCaseId).containsExactly(caseId);
+        assertThat(otherNode.getDocument(caseId, documentId).getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+        assertThat(meterRegistry.get("docudeep.storage.backend.latency").tag("backend", "s3").tag("operation", "write")
+            .tag("outcome", "success").timer().count()).isEqualTo(1L);
+        assertThat(meterRegistry.get("docudeep.storage.backend.latency").tag("backend", "s3").tag("operation", "replace")
+            .tag("outcome", "success").timer().count()).isEqualTo(3L);
+
+        // A known digest is not uploaded again.
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(PAYSLIP);
+        otherNode.storeDocument(caseId, documentId, InputStream.nullInputStream(), new ExpectedDigest(sha256, null));
+        assertThat(otherNode.getDocument(caseId, documentId).getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+    }
+
+    @Test
+    void largeBodiesAreStreamedInPartsAndARejectedBodyLeavesThePreviousOneInPlace() throws Exception {
+        CaseStorageService node = startNode();
+        byte[] scan = new byte[6 * 1024 * 1024];
+        System.arraycopy(PAYSLIP, 0, scan, 0, PAYSLIP.length);
+        CaseMetadata created = node.createCase(List.of(
+            new CaseStorageService.DocumentRequest("scan.pdf", "application/pdf", scan.length, DocumentType.CHARGES)));
+        String caseId = created.getCaseId();
+        String documentId = created.getDocuments().get(0).getId();
+        String key = "upload/" + caseId + "/" + documentId + "_scan.pdf";
+
+        node.storeDocument(caseId, documentId, new ByteArrayInputStream(scan));
+        assertThat(s3.completedParts).isEqualTo(2);
+        assertThat(s3.objects.get(key)).isEqualTo(scan);
+        assertThat(node.getDocument(caseId, documentId).getStoredSize()).isEqualTo(scan.length);
+
+        byte[] rescan = scan.clone();
+        rescan[rescan.length - 1] = 1;
+        byte[] announced = MessageDigest.getInstance("SHA-256").digest(PAYSLIP);
+        assertThatThrownBy(() -> node.storeDocument(caseId, documentId, new ByteArrayInputStream(rescan),
+            new ExpectedDigest(announced, null)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(s3.pendingUploads).isEmpty();
+        assertThat(s3.objects.get(key)).isEqualTo(scan);
+
+        s3.objects.put("exports/2024.csv", PAYSLIP);
+        node.reset();
+        assertThat(s3.objects.keySet()).containsExactly("exports/2024.csv");
+        assertThat(node.listCases()).isEmpty();
+    }
+
+    @Test
+    void aResumableUploadCanMoveFromNodeToNode() throws Exception {
+        byte[] scan = new byte[200_000];
+        System.arraycopy(PAYSLIP, 0, scan, 0, PAYSLIP.length);
+        CaseStorageService node = startNode();
+        CaseStorageService otherNode = startNode();
+        CaseMetadata created = node.createCase(List.of(
+            new CaseStorageService.DocumentRequest("scan.pdf", "application/pdf", scan.length, DocumentType.CHARGES)));
+        String caseId = created.getCaseId();
+        String documentId = created.getDocuments().get(0).getId();
+
+        resumableUploads(node).appendChunk(caseId, documentId, 0, (long) scan.length,
+            new ByteArrayInputStream(scan, 0, 120_000), ExpectedDigest.NONE);
+        ResumableUploadService otherUploads = resumableUploads(otherNode);
+        assertThat(otherUploads.status(caseId, documentId).offset()).isEqualTo(120_000);
+        ResumableUploadService.UploadStatus status = otherUploads.appendChunk(caseId, documentId, 120_000, null,
+            new ByteArrayInputStream(scan, 120_000, scan.length - 120_000), ExpectedDigest.NONE);
+
+        assertThat(status.complete()).isTrue();
+        assertThat(s3.objects.keySet()).containsExactly(
+            "upload/" + caseId + "/" + documentId + "_scan.pdf", "upload/" + caseId + "/metadata.json");
+        assertThat(s3.objects.get("upload/" + caseId + "/" + documentId + "_scan.pdf")).isEqualTo(scan);
+        assertThat(node.getDocument(caseId, documentId).getSha256())
+            .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(scan)));
+        assertThat(Files.exists(storageRoot.resolve(caseId))).isFalse();
+    }
+
+    @Test
+    void concurrentUpdatesFromTwoNodesAreBothKept() throws Exception {
+        CaseStorageService node = startNode();
+        CaseStorageService otherNode = startNode();
+        CaseMetadata created = node.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES),
+            new CaseStorageService.DocumentRequest("notice.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        String caseId = created.getCaseId();
+        String payslipId = created.getDocuments().get(0).getId();
+        String noticeId = created.getDocuments().get(1).getId();
+        assertThat(node.getDocument(caseId, payslipId).getStatus()).isEqualTo(DocumentStatus.PENDING);
+
+        // The other node records its upload between this node's read of metadata.json and its write.
+        s3.beforeNextMetadataWrite = () -> {
+            try {
+                otherNode.storeDocument(caseId, noticeId, new ByteArrayInputStream(PAYSLIP));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        node.storeDocument(caseId, payslipId, new ByteArrayInputStream(PAYSLIP));
+
+        assertThat(s3.rejectedWrites).isEqualTo(1);
+        assertThat(startNode().findCase(caseId).orElseThrow().getDocuments())
+            .extracting(document -> document.getStatus())
+            .containsExactly(DocumentStatus.UPLOADED, DocumentStatus.UPLOADED);
+        assertThat(node.getDocument(caseId, noticeId).getStatus()).isEqualTo(DocumentStatus.UPLOADED);
+    }
+
+    @Test
+    void aStaleRevisionIsRefused() throws Exception {
+        DocumentBackend backend = new S3DocumentBackend(properties, s3);
+        String first = backend.replace("CASE-1", "metadata.json", PAYSLIP, null);
+        backend.replace("CASE-1", "metadata.json", PAYSLIP, first);
+
+        assertThatThrownBy(() -> backend.replace("CASE-1", "metadata.json", PAYSLIP, first))
+            .isInstanceOf(RevisionConflictException.class);
+        assertThatThrownBy(() -> backend.replace("CASE-1", "metadata.json", PAYSLIP, null))
+            .isInstanceOf(RevisionConflictException.class);
+    }
+
+    @Test
+    void aBlankPrefixIsRejectedAtStartup() {
+        properties.getS3().setPrefix(" ");
+
+        assertThatThrownBy(() -> new S3DocumentBackend(properties, s3))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("storage.s3.prefix");
+    }
+
+    private CaseStorageService startNode() throws IOException {
+        DocumentBackend backend = new TimedDocumentBackend(new S3DocumentBackend(properties, s3), meterRegistry);
+        return CaseStorageServices.builder(properties)
+            .metadataStore(new BackendCaseMetadataStore(backend, objectMapper))
+            .backend(backend)
+            .build();
+    }
+
+    private ResumableUploadService resumableUploads(CaseStorageService node) {
+        DocumentBackend backend = new TimedDocumentBackend(new S3DocumentBackend(properties, s3), meterRegistry);
+        return new ResumableUploadService(properties, new CaseDirectories(properties), node, new CaseLocks(properties),
+            new MetadataFileWriter(properties, objectMapper), objectMapper, backend);
+    }
+
+    /**
+     * Stand-in for an S3-compatible store, keeping objects and multipart uploads in memory.
+     */
+    private static final class InMemoryS3 implements S3Client {
+
+        final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+        final Map<String, String> eTags = new ConcurrentHashMap<>();
+        final Map<String, Map<Integer, byte[]>> pendingUploads = new ConcurrentHashMap<>();
+        int completedParts;
+        int rejectedWrites;
+        Runnable beforeNextMetadataWrite;
+
+        @Override
+        public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+            byte[] content = read(body);
+            if (request.key().endsWith("/metadata.json") && beforeNextMetadataWrite != null) {
+                Runnable interleaved = beforeNextMetadataWrite;
+                beforeNextMetadataWrite = null;
+                interleaved.run();
+            }
+            synchronized (this) {
+                String current = eTags.get(request.key());
+                boolean stale = request.ifMatch() != null && !request.ifMatch().equals(current);
+                boolean exists = "*".equals(request.ifNoneMatch()) && current != null;
+                if (stale || exists) {
+                    rejectedWrites++;
+                    throw (S3Exception) S3Exception.builder().statusCode(412).message("PreconditionFailed").build();
+                }
+                return PutObjectResponse.builder().eTag(store(request.key(), content)).build();
+            }
+        }
+
+        @Override
+        public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+            byte[] content = content(request.key());
+            GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength((long) content.length)
+                .eTag(eTags.get(request.key()))
+                .build();
+            return new ResponseInputStream<>(response, AbortableInputStream.create(new ByteArrayInputStream(content)));
+        }
+
+        @Override
+        public HeadObjectResponse headObject(HeadObjectRequest request) {
+            return HeadObjectResponse.builder().contentLength((long) content(request.key()).length).build();
+        }
+
+        @Override
+        public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+            String uploadId = UUID.randomUUID().toString();
+            pendingUploads.put(uploadId, new TreeMap<>());
+            return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+        }
+
+        @Override
+        public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+            pendingUploads.get(request.uploadId()).put(request.partNumber(), read(body));
+            return UploadPartResponse.builder().eTag("part-" + request.partNumber()).build();
+        }
+
+        @Override
+        public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            Map<Integer, byte[]> parts = pendingUploads.remove(request.uploadId());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (CompletedPart part : request.multipartUpload().parts()) {
+                content.writeBytes(parts.get(part.partNumber()));
+            }
+            completedParts += request.multipartUpload().parts().size();
+            store(request.key(), content.toByteArray());
+            return CompleteMultipartUploadResponse.builder().build();
+        }
+
+        @Override
+        public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+            pendingUploads.remove(request.uploadId());
+            return AbortMultipartUploadResponse.builder().build();
+        }
+
+        @Override
+        public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+            List<S3Object> contents = new ArrayList<>();
+            TreeSet<String> commonPrefixes = new TreeSet<>();
+            for (String key : objects.keySet()) {
+                if (!key.startsWith(request.prefix())) {
+                    continue;
+                }
+                int separator = request.delimiter() == null ? -1 : key.indexOf(request.delimiter(), request.prefix().length());
+                if (separator >= 0) {
+                    commonPrefixes.add(key.substring(0, separator + 1));
+                } else {
+                    contents.add(S3Object.builder().key(key).build());
+                }
+            }
+            return ListObjectsV2Response.builder()
+                .contents(contents)
+                .commonPrefixes(commonPrefixes.stream().map(prefix -> CommonPrefix.builder().prefix(prefix).build()).toList())
+                .isTruncated(false)
+                .build();
+        }
+
+        @Override
+        public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+            objects.remove(request.key());
+            eTags.remove(request.key());
+            return DeleteObjectResponse.builder().build();
+        }
+
+        @Override
+        public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+            for (ObjectIdentifier object : request.delete().objects()) {
+                objects.remove(object.key());
+                eTags.remove(object.key());
+            }
+            return DeleteObjectsResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private String store(String key, byte[] content) {
+            String eTag = "\"" + UUID.randomUUID() + "\"";
+            objects.put(key, content);
+            eTags.put(key, eTag);
+            return eTag;
+        }
+
+        private byte[] content(String key) {
+            byte[] content = objects.get(key);
+            if (content == null) {
+                throw NoSuchKeyException.builder().message("No such key " + key).build();
+            }
+            return content;
+        }
+
+        private static byte[] read(RequestBody body) {
+            try (InputStream input = body.contentStreamProvider().newStream()) {
+                return input.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.docudeep.upload.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The smallest PDFs {@link DocumentContentValidator} accepts: a catalog, a cross-reference table pointing at it and a
+ * trailer. {@code label} goes into a comment, so different labels give different digests.
+ */
+final class SamplePdf {
+
+    private SamplePdf() {
+    }
+
+    static byte[] of(String label) {
+        String body = "%PDF-1.7\n% " + label + "\n";
+        int catalog = body.length();
+        body += "1 0 obj << /Type /Catalog >> endobj\n";
+        int xref = body.length();
+        body += "xref\n0 2\n0000000000 65535 f\r\n" + "%010d 00000 n\r\n".formatted(catalog)
+            + "trailer << /Size 2 /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n";
+        return body.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,130 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentStoreTest {
+
+    private static final byte[] PAYSLIP = SamplePdf.of("payslip");
+    private static final byte[] TAX_NOTICE = SamplePdf.of("tax notice");
+
+    @TempDir
+    Path storageRoot;
+
+    private StorageProperties properties;
+    private SegmentStore segmentStore;
+    private CaseStorageService storageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        properties.getSegments().setEnabled(true);
+        startServices();
+    }
+
+    @Test
+    void validatedDocumentsMoveIntoOneSegmentAndSurviveARestart() throws Exception {
+        String firstCase = createCase();
+        String secondCase = createCase();
+        DocumentMetadata first = uploadAndValidate(firstCase, PAYSLIP);
+        DocumentMetadata second = uploadAndValidate(secondCase, TAX_NOTICE);
+
+        assertThat(first.getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+        assertThat(first.isPacked()).isTrue();
+        assertThat(Files.exists(storageRoot.resolve(firstCase).resolve(first.getStorageFilename()))).isFalse();
+        assertThat(Files.exists(storageRoot.resolve(secondCase).resolve(second.getStorageFilename()))).isFalse();
+        assertThat(segmentFiles()).containsExactly("00000001.idx", "00000001.seg");
+
+        segmentStore.close();
+        SegmentStore reopened = new SegmentStore(properties, new SimpleMeterRegistry());
+        assertThat(read(reopened, first.getSha256())).isEqualTo(PAYSLIP);
+        assertThat(read(reopened, second.getSha256())).isEqualTo(TAX_NOTICE);
+    }
+
+    @Test
+    void compactionDropsContentNoDocumentUsesAnyMore() throws Exception {
+        properties.getSegments().setMaxSegmentSize(DataSize.ofBytes(PAYSLIP.length));
+        startServices();
+        String caseId = createCase();
+        String replaced = uploadAndValidate(caseId, PAYSLIP).getSha256();
+        String current = uploadAndValidate(caseId, TAX_NOTICE).getSha256();
+        // Seals the segment holding the tax notice so that it can be compacted too.
+        uploadAndValidate(createCase(), SamplePdf.of("rent receipt"));
+
+        long reclaimed = segmentStore.compact(storageService::packedDigests);
+
+        assertThat(reclaimed).isEqualTo(PAYSLIP.length);
+        assertThat(segmentStore.open(replaced)).isEmpty();
+        assertThat(read(segmentStore, current)).isEqualTo(TAX_NOTICE);
+        assertThat(storageService.validateDocument(caseId, documentId(caseId)).getStatus()).isEqualTo(DocumentStatus.VALIDATED);
+    }
+
+    @Test
+    void bytesThatNoLongerMatchTheirDigestAreNotPacked() throws Exception {
+        String caseId = createCase();
+        DocumentMetadata stored = uploadAndValidate(caseId, PAYSLIP);
+        // What validation sees when a new upload replaces the file after its digest was read.
+        Path replaced = Files.write(storageRoot.resolve("replaced.bin"), TAX_NOTICE);
+        String staleDigest = "0".repeat(64);
+
+        assertThat(segmentStore.append(replaced, staleDigest)).isEmpty();
+
+        assertThat(segmentStore.open(staleDigest)).isEmpty();
+        assertThat(Files.size(storageRoot.resolve(SegmentStore.SEGMENT_DIRECTORY).resolve("00000001.seg")))
+            .isEqualTo(PAYSLIP.length);
+        assertThat(read(segmentStore, stored.getSha256())).isEqualTo(PAYSLIP);
+    }
+
+    private void startServices() throws IOException {
+        segmentStore = new SegmentStore(properties, new SimpleMeterRegistry());
+        storageService = CaseStorageServices.builder(properties).segmentStore(segmentStore).build();
+    }
+
+    private String createCase() throws IOException {
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        return created.getCaseId();
+    }
+
+    private DocumentMetadata uploadAndValidate(String caseId, byte[] content) throws IOException {
+        String documentId = documentId(caseId);
+        storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(content));
+        return storageService.validateDocument(caseId, documentId);
+    }
+
+    private String documentId(String caseId) {
+        return storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getId();
+    }
+
+    private static byte[] read(SegmentStore store, String sha256) throws IOException {
+        try (SegmentStore.Slice slice = store.open(sha256).orElseThrow()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) slice.length());
+            slice.channel().read(buffer, slice.offset());
+            return buffer.array();
+        }
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (var files = Files.list(storageRoot.resolve(SegmentStore.SEGMENT_DIRECTORY))) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
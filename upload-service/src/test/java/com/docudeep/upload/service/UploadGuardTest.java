@@ -0,0 +1,93 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadGuardTest {
+
+    @TempDir
+    Path storageRoot;
+
+    private CaseStorageService storageService;
+    private String caseId;
+    private String documentId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        storageService = CaseStorageServices.builder(properties).build();
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("avis.png", "image/png", 1024, DocumentType.CHARGES)));
+        caseId = created.getCaseId();
+        documentId = created.getDocuments().get(0).getId();
+    }
+
+    @Test
+    void mislabelledBodyIsRejectedBeforeAnythingIsWritten() throws IOException {
+        byte[] pdf = "%PDF-1.7 not an image".getBytes(StandardCharsets.US_ASCII);
+
+        assertThatThrownBy(() -> storageService.storeDocument(caseId, documentId, new ByteArrayInputStream(pdf)))
+            .isInstanceOf(UploadRejectedException.class)
+            .hasMessageContaining("image/png");
+
+        assertThat(caseFiles()).isEmpty();
+        assertThat(storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getStatus()).isEqualTo(DocumentStatus.PENDING);
+    }
+
+    @Test
+    void oversizedBodyIsAbortedAtTheLimit() throws IOException {
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        ByteCountingStream endless = new ByteCountingStream();
+        InputStream body = new SequenceInputStream(new ByteArrayInputStream(signature), endless);
+
+        assertThatThrownBy(() -> storageService.storeDocument(caseId, documentId, body))
+            .isInstanceOf(UploadRejectedException.class);
+
+        assertThat(endless.served).isLessThanOrEqualTo(UploadGuard.MAX_DOCUMENT_BYTES + 64 * 1024);
+        assertThat(caseFiles()).isEmpty();
+    }
+
+    private List<Path> caseFiles() throws IOException {
+        try (var files = Files.list(storageRoot.resolve(caseId))) {
+            return files.filter(file -> !file.getFileName().toString().equals("metadata.json")).toList();
+        }
+    }
+
+    /**
+     * A body that never ends, recording how much of it was consumed.
+     */
+    private static final class ByteCountingStream extends InputStream {
+
+        private long served;
+
+        @Override
+        public int read() {
+            served++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            served += length;
+            return length;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.docudeep.upload.service;
+
+import com.docudeep.upload.config.StorageProperties;
+import com.docudeep.upload.model.CaseMetadata;
+import com.docudeep.upload.model.DocumentMetadata;
+import com.docudeep.upload.model.DocumentStatus;
+import com.docudeep.upload.model.DocumentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ValidationQueueTest {
+
+    private static final byte[] PAYSLIP = SamplePdf.of("payslip");
+
+    @TempDir
+    Path storageRoot;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile boolean blockWorkers;
+    private CaseStorageService storageService;
+    private ValidationQueue validationQueue;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(storageRoot.toString());
+        properties.getValidation().setAsync(true);
+        properties.getValidation().setWorkers(1);
+        properties.getValidation().setQueueCapacity(1);
+        storageService = CaseStorageServices.builder(properties).build((storage, metadataCache, caseLocks,
+                metadataStore, contentValidator, segmentStore, backend) ->
+            new CaseStorageService(storage, metadataCache, caseLocks, metadataStore, contentValidator, segmentStore,
+                backend) {
+                @Override
+                public DocumentMetadata validateDocument(String caseId, String documentId) throws IOException {
+                    if (blockWorkers) {
+                        try {
+                            release.await(30, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.validateDocument(caseId, documentId);
+                }
+            });
+        validationQueue = new ValidationQueue(properties, storageService, meterRegistry, new StandardEnvironment());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        validationQueue.close();
+    }
+
+    @Test
+    void queuedDocumentIsValidatedInTheBackground() throws Exception {
+        String caseId = uploadedCase();
+        String documentId = documentId(caseId);
+
+        validationQueue.submit(caseId, documentId);
+
+        assertThat(awaitStatus(caseId, documentId)).isEqualTo(DocumentStatus.VALIDATED);
+        assertThat(meterRegistry.get("docudeep.validation.queue.wait").timer().count()).isEqualTo(1L);
+    }
+
+    @Test
+    void fullQueueRefusesNewDocumentsAndLeavesThemUploaded() throws Exception {
+        blockWorkers = true;
+        String running = uploadedCase();
+        String queued = uploadedCase();
+        String refused = uploadedCase();
+
+        validationQueue.submit(running, documentId(running));
+        validationQueue.submit(queued, documentId(queued));
+        assertThatThrownBy(() -> validationQueue.submit(refused, documentId(refused)))
+            .isInstanceOf(ValidationQueueFullException.class);
+
+        assertThat(storageService.getDocument(refused, documentId(refused)).getStatus()).isEqualTo(DocumentStatus.UPLOADED);
+        assertThat(storageService.getDocument(queued, documentId(queued)).getStatus()).isEqualTo(DocumentStatus.VALIDATING);
+        assertThat(meterRegistry.get("docudeep.validation.queue.depth").gauge().value()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(awaitStatus(queued, documentId(queued))).isEqualTo(DocumentStatus.VALIDATED);
+    }
+
+    private DocumentStatus awaitStatus(String caseId, String documentId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        DocumentStatus status = storageService.getDocument(caseId, documentId).getStatus();
+        while (status == DocumentStatus.VALIDATING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = storageService.getDocument(caseId, documentId).getStatus();
+        }
+        return status;
+    }
+
+    private String uploadedCase() throws IOException {
+        CaseMetadata created = storageService.createCase(List.of(
+            new CaseStorageService.DocumentRequest("payslip.pdf", "application/pdf", PAYSLIP.length, DocumentType.CHARGES)));
+        String caseId = created.getCaseId();
+        storageService.storeDocument(caseId, documentId(caseId), new ByteArrayInputStream(PAYSLIP));
+        return caseId;
+    }
+
+    private String documentId(String caseId) {
+        return storageService.findCase(caseId).orElseThrow().getDocuments().get(0).getId();
+    }
+}
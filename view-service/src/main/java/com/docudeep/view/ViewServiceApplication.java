@@ -1,6 +1,5 @@
 package com.docudeep.view;
 
-import com.example.docudeep.config.StorageProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
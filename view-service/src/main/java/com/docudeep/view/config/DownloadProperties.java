@@ -0,0 +1,34 @@
+package com.docudeep.view.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "storage.download")
+public class DownloadProperties {
+
+    /**
+     * Writes full and single-range downloads with {@code FileChannel.transferTo} from the channel opened at lookup,
+     * instead of copying them through a {@code Resource} stream.
+     */
+    private boolean zeroCopy = false;
+
+    /**
+     * Largest number of cases a single {@code GET /cases/archive} request may export.
+     */
+    private int archiveMaxCases = 20;
+
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    public void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    public int getArchiveMaxCases() {
+        return archiveMaxCases;
+    }
+
+    public void setArchiveMaxCases(int archiveMaxCases) {
+        this.archiveMaxCases = archiveMaxCases;
+    }
+}
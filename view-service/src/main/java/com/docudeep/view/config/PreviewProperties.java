@@ -0,0 +1,76 @@
+package com.docudeep.view.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.preview")
+public class PreviewProperties {
+
+    /**
+     * Directory holding the rendered previews. Kept outside {@code storage.root}, which belongs to upload-service.
+     */
+    private String directory = "./storage/previews";
+
+    /**
+     * Total size of the previews kept on disk; the least recently served ones are deleted beyond it.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Longest side of a preview, in pixels.
+     */
+    private int maxDimension = 320;
+
+    /**
+     * Previews rendered at the same time. Rendering is CPU-bound, so this stays below the number of cores to keep
+     * room for the requests themselves.
+     */
+    private int renderConcurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * How long a request waits for a rendering slot before being refused with 503.
+     */
+    private Duration maxWait = Duration.ofSeconds(2);
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public void setMaxDimension(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getRenderConcurrency() {
+        return renderConcurrency;
+    }
+
+    public void setRenderConcurrency(int renderConcurrency) {
+        this.renderConcurrency = renderConcurrency;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+}
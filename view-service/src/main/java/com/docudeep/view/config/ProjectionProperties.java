@@ -0,0 +1,22 @@
+package com.docudeep.view.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.projection")
+public class ProjectionProperties {
+
+    /**
+     * Interval of the full sweep that catches changes the file watcher missed (overflow, watch limits).
+     */
+    private Duration reconcileInterval = Duration.ofSeconds(30);
+
+    public Duration getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+    public void setReconcileInterval(Duration reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+}
@@ -1,29 +1,34 @@
-package com.example.docudeep.config;
+package com.docudeep.view.config;
 
-import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
-import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.validation.annotation.Validated;
-import software.amazon.awssdk.regions.Region;
 
-import java.time.Duration;
-
-@ConfigurationProperties(prefix = "docudeep.storage")
-@Validated
-@Data
+@ConfigurationProperties(prefix = "storage")
 public class StorageProperties {
 
-    @NotBlank
-    private String bucket;
+    /**
+     * Directory written by upload-service, read here: case directories, segments and blobs.
+     */
+    private String root = "./storage/upload";
+
+    /**
+     * Backend of upload-service. Only {@code LOCAL} can be read here: with {@code S3} the documents are not under
+     * {@code root}, and the service refuses to start.
+     */
+    private String backend = "LOCAL";
+
+    public String getRoot() {
+        return root;
+    }
 
-    @NotBlank
-    private String region = Region.EU_WEST_3.id();
+    public void setRoot(String root) {
+        this.root = root;
+    }
 
-    @NotNull
-    private Duration presignTtl = Duration.ofMinutes(15);
+    public String getBackend() {
+        return backend;
+    }
 
-    public Region getRegion() {
-        return Region.of(region);
+    public void setBackend(String backend) {
+        this.backend = backend;
     }
 }
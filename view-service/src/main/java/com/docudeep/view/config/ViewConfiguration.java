@@ -1,15 +1,39 @@
 package com.docudeep.view.config;
 
+import com.docudeep.common.bulkhead.BulkheadInterceptor;
+import com.docudeep.common.bulkhead.ConcurrencyProperties;
+import com.docudeep.view.controller.EndpointClass;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
-@EnableConfigurationProperties(StorageProperties.class)
-public class ViewConfiguration {
+@EnableConfigurationProperties({StorageProperties.class, ProjectionProperties.class, DownloadProperties.class,
+    ConcurrencyProperties.class, PreviewProperties.class})
+public class ViewConfiguration implements WebMvcConfigurer {
+
+    private final BulkheadInterceptor bulkheadInterceptor;
+
+    public ViewConfiguration(StorageProperties storageProperties, ConcurrencyProperties concurrencyProperties,
+                             MeterRegistry meterRegistry) {
+        if (!"LOCAL".equalsIgnoreCase(storageProperties.getBackend())) {
+            // Serving from a bucket would need the projection, downloads, archives and previews to read it.
+            throw new IllegalStateException("view-service only reads case directories under storage.root; "
+                + "storage.backend=" + storageProperties.getBackend() + " is not supported");
+        }
+        this.bulkheadInterceptor = new BulkheadInterceptor(concurrencyProperties, EndpointClass.DEFAULT_LIMITS, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(bulkheadInterceptor);
+    }
 
     @Bean
     public CorsFilter corsFilter() {
@@ -17,6 +41,12 @@ public class ViewConfiguration {
         configuration.addAllowedOriginPattern("*");
         configuration.addAllowedHeader("*");
         configuration.addAllowedMethod("*");
+        configuration.addExposedHeader("Link");
+        configuration.addExposedHeader("X-Next-Cursor");
+        configuration.addExposedHeader("ETag");
+        configuration.addExposedHeader("Accept-Ranges");
+        configuration.addExposedHeader("Content-Range");
+        configuration.addExposedHeader("Retry-After");
         configuration.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
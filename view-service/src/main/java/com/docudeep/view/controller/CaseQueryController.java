@@ -1,24 +1,46 @@
 package com.docudeep.view.controller;
 
-import com.docudeep.view.config.StorageProperties;
+import com.docudeep.common.bulkhead.Bulkhead;
+import com.docudeep.view.config.DownloadProperties;
 import com.docudeep.view.model.CaseMetadata;
 import com.docudeep.view.model.DocumentMetadata;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.FileSystemResource;
+import com.docudeep.view.service.CaseArchiveWriter;
+import com.docudeep.view.service.CaseCatalog;
+import com.docudeep.view.service.CaseProjection;
+import com.docudeep.view.service.DocumentLocator;
+import com.docudeep.view.service.PreviewService;
+import com.docudeep.view.service.StoredContent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.FileCopyUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.file.NoSuchFileException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,41 +49,97 @@ import java.util.Optional;
 @RequestMapping
 public class CaseQueryController {
 
-    private static final TypeReference<CaseMetadata> CASE_METADATA_TYPE = new TypeReference<>() {};
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
-    private final Path root;
-    private final ObjectMapper objectMapper;
+    private final CaseProjection caseProjection;
+    private final CaseArchiveWriter archiveWriter;
+    private final PreviewService previewService;
+    private final DocumentLocator documentLocator;
+    private final int archiveMaxCases;
+    private final boolean zeroCopy;
+    private final Counter streamedBytes;
+    private final Counter transferredBytes;
 
-    public CaseQueryController(StorageProperties properties, ObjectMapper objectMapper) {
-        this.root = Path.of(properties.getRoot()).toAbsolutePath().normalize();
-        this.objectMapper = objectMapper;
+    public CaseQueryController(DownloadProperties downloadProperties, CaseProjection caseProjection,
+                               CaseArchiveWriter archiveWriter, PreviewService previewService,
+                               DocumentLocator documentLocator, MeterRegistry meterRegistry) {
+        this.caseProjection = caseProjection;
+        this.archiveWriter = archiveWriter;
+        this.previewService = previewService;
+        this.documentLocator = documentLocator;
+        this.archiveMaxCases = downloadProperties.getArchiveMaxCases();
+        this.zeroCopy = downloadProperties.isZeroCopy();
+        this.streamedBytes = downloadedBytes(meterRegistry, "stream");
+        this.transferredBytes = downloadedBytes(meterRegistry, "transfer-to");
     }
 
+    private static Counter downloadedBytes(MeterRegistry meterRegistry, String transfer) {
+        return Counter.builder("docudeep.download.bytes")
+            .description("Bytes of documents served")
+            .baseUnit("bytes")
+            .tag("transfer", transfer)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Lists cases one page at a time. The body stays a plain array; the cursor of the next page, if any, is
+     * returned in the {@code X-Next-Cursor} header and as a {@code Link: <...>; rel="next"} header.
+     */
+    @Bulkhead(EndpointClass.LISTING)
     @GetMapping(path = "/cases", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<CaseMetadata> listCases() throws IOException {
-        if (!Files.exists(root)) {
-            return List.of();
+    public ResponseEntity<List<CaseMetadata>> listCases(@RequestParam(defaultValue = "50") int limit,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(defaultValue = "createdAt,desc") String sort,
+                                                        @RequestParam(required = false) String status,
+                                                        @RequestParam(required = false) String documentType) throws IOException {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Le paramètre limit doit être compris entre 1 et " + MAX_PAGE_SIZE);
         }
-        try (var directories = Files.list(root)) {
-            return directories
-                .filter(Files::isDirectory)
-                .map(this::readCaseMetadata)
-                .flatMap(Optional::stream)
-                .toList();
+        CaseCatalog.Page page = caseProjection.page(new CaseCatalog.PageRequest(
+            limit, CaseCatalog.decodeCursor(after), isDescending(sort), status, documentType));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", page.nextCursor())
+                .toUriString();
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
         }
+        return response.body(page.cases());
     }
 
+    @Bulkhead(EndpointClass.LISTING)
     @GetMapping(path = "/cases/{caseId}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getCase(@PathVariable String caseId) throws IOException {
-        return readCaseMetadata(root.resolve(caseId)).<ResponseEntity<?>>map(ResponseEntity::ok)
+        return caseProjection.find(caseId).<ResponseEntity<?>>map(ResponseEntity::ok)
             .orElseGet(() -> ResponseEntity.status(404).body(Map.of(
                 "message", "Dossier introuvable"
             )));
     }
 
+    /**
+     * Downloads a document. Responses carry a strong {@code ETag} and {@code Last-Modified} so that repeated views
+     * are answered with 304, and honour {@code Range} (single or multiple byte ranges, guarded by {@code If-Range})
+     * so that PDF viewers fetch only the pages they display.
+     * <p>
+     * The bytes are read from the channel opened by {@link DocumentLocator}, which stays open until the request
+     * completes: a re-upload or a segment compaction meanwhile cannot change what is sent under the
+     * {@code ETag}. The body is written before the handler chain completes, so the {@code DOWNLOADS} bulkhead
+     * permit is held until the last byte is out.
+     * <p>
+     * With {@code storage.download.zero-copy} the full and single-range responses are written here with
+     * {@link StoredContent#transferTo} from that same channel; multipart/byteranges responses still go through
+     * the converter.
+     */
+    @Bulkhead(EndpointClass.DOWNLOADS)
     @GetMapping(path = "/cases/{caseId}/documents/{documentId}")
-    public ResponseEntity<Resource> download(@PathVariable String caseId, @PathVariable String documentId) throws IOException {
-        Optional<CaseMetadata> metadataOpt = readCaseMetadata(root.resolve(caseId));
+    public ResponseEntity<?> download(@PathVariable String caseId,
+                                      @PathVariable String documentId,
+                                      @RequestHeader HttpHeaders requestHeaders,
+                                      ServletWebRequest webRequest) throws IOException {
+        Optional<CaseMetadata> metadataOpt = caseProjection.find(caseId);
         if (metadataOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -73,36 +151,232 @@ public class CaseQueryController {
         if (document == null || document.getStorageFilename() == null) {
             return ResponseEntity.notFound().build();
         }
-        Path file = root.resolve(caseId).resolve(document.getStorageFilename());
-        if (!Files.exists(file)) {
+        Optional<StoredContent> located = documentLocator.locate(caseId, document);
+        if (located.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        StoredContent content = located.get();
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+            StoredContent.class.getName(), () -> closeQuietly(content), RequestAttributes.SCOPE_REQUEST);
 
-        Resource resource = new FileSystemResource(file);
+        String eTag = eTag(document, content);
+        long lastModified = content.lastModified();
+        // Sets ETag/Last-Modified on the response and answers 304 (or 412 for If-Match) when the client is current.
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return null;
+        }
+
+        Resource resource = content.asResource();
+        long length = content.length();
         String filename = document.getFilename();
         MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
         if (document.getMimeType() != null) {
             mediaType = MediaType.parseMediaType(document.getMimeType());
         }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        List<HttpRange> ranges = requestedRanges(requestHeaders, eTag, lastModified);
+        if (ranges.isEmpty()) {
+            headers.setContentType(mediaType);
+            if (zeroCopy) {
+                return transfer(webRequest.getResponse(), HttpStatus.OK, headers, content, 0, length);
+            }
+            // Spring MVC applies a Range header to any Resource body on its own; when the range is deliberately
+            // ignored (stale If-Range, malformed header) a stream body makes sure the whole file is sent.
+            Resource body = requestHeaders.getFirst(HttpHeaders.RANGE) == null
+                ? resource
+                : new InputStreamResource(content.openStream());
+            streamedBytes.increment(length);
+            return ResponseEntity.ok()
+                .headers(headers)
+                .contentLength(length)
+                .body(body);
+        }
+
+        List<ResourceRegion> regions;
+        try {
+            regions = HttpRange.toResourceRegions(ranges, resource);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
+        }
+
+        if (regions.size() == 1) {
+            headers.setContentType(mediaType);
+            if (zeroCopy) {
+                ResourceRegion region = regions.get(0);
+                long last = region.getPosition() + region.getCount() - 1;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + region.getPosition() + "-" + last + "/" + length);
+                return transfer(webRequest.getResponse(), HttpStatus.PARTIAL_CONTENT, headers, content,
+                    region.getPosition(), region.getCount());
+            }
+        }
+        // Handed over as the Resource itself: Spring MVC resolves the same ranges against it and writes them with
+        // ResourceRegionHttpMessageConverter, as 206 with Content-Range, or multipart/byteranges for several.
+        // A ResourceRegion body would find no converter through the ResponseEntity<?> return type.
+        streamedBytes.increment(regions.stream().mapToLong(ResourceRegion::getCount).sum());
+        return ResponseEntity.ok().headers(headers).body(resource);
+    }
 
+    /**
+     * Writes the response of {@link #download} directly, {@code count} bytes of {@code content} from
+     * {@code position}. Headers already set on the response ({@code ETag}, {@code Last-Modified}) are kept.
+     */
+    private ResponseEntity<?> transfer(HttpServletResponse response, HttpStatus status, HttpHeaders headers,
+                                       StoredContent content, long position, long count) throws IOException {
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setContentLengthLong(count);
+        content.transferTo(position, count, Channels.newChannel(response.getOutputStream()));
+        response.flushBuffer();
+        transferredBytes.increment(count);
+        return null;
+    }
+
+    /**
+     * JPEG thumbnail of a document (first page of a PDF, downscaled image), rendered once and then served from
+     * the preview cache. The {@code ETag} follows the document content, so a re-upload invalidates it.
+     */
+    @Bulkhead(EndpointClass.PREVIEWS)
+    @GetMapping(path = "/cases/{caseId}/documents/{documentId}/preview")
+    public ResponseEntity<?> preview(@PathVariable String caseId,
+                                     @PathVariable String documentId,
+                                     ServletWebRequest webRequest) throws IOException {
+        DocumentMetadata document = caseProjection.find(caseId)
+            .flatMap(metadata -> metadata.getDocuments().stream()
+                .filter(doc -> documentId.equals(doc.getId()))
+                .findFirst())
+            .orElse(null);
+        if (document == null || document.getStorageFilename() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String eTag;
+        try {
+            eTag = previewService.eTag(caseId, document);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        byte[] preview;
+        try {
+            preview = previewService.preview(caseId, document);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        }
         return ResponseEntity.ok()
-            .contentLength(resource.contentLength())
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .contentType(mediaType)
-            .body(resource);
+            .contentType(MediaType.IMAGE_JPEG)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .eTag(eTag)
+            .body(preview);
     }
 
-    private Optional<CaseMetadata> readCaseMetadata(Path directory) {
-        Path metadataFile = directory.resolve("metadata.json");
-        if (!Files.exists(metadataFile)) {
-            return Optional.empty();
+    /**
+     * Downloads the validated documents of a case as one ZIP archive, streamed while the files are read.
+     */
+    @Bulkhead(EndpointClass.DOWNLOADS)
+    @GetMapping(path = "/cases/{caseId}/archive")
+    public ResponseEntity<?> archive(@PathVariable String caseId, HttpServletResponse response) throws IOException {
+        return writeArchive(List.of(caseId), "dossier-" + caseId + ".zip", response);
+    }
+
+    /**
+     * Exports several cases in one archive ({@code ?caseId=...&caseId=...}), one folder per case.
+     */
+    @Bulkhead(EndpointClass.DOWNLOADS)
+    @GetMapping(path = "/cases/archive")
+    public ResponseEntity<?> archive(@RequestParam("caseId") List<String> caseIds,
+                                     HttpServletResponse response) throws IOException {
+        LinkedHashSet<String> distinct = new LinkedHashSet<>(caseIds);
+        if (distinct.isEmpty() || distinct.size() > archiveMaxCases) {
+            throw new IllegalArgumentException("Le nombre de dossiers exportés doit être compris entre 1 et " + archiveMaxCases);
         }
+        return writeArchive(List.copyOf(distinct), "dossiers.zip", response);
+    }
+
+    private ResponseEntity<?> writeArchive(List<String> caseIds, String filename, HttpServletResponse response) throws IOException {
+        List<CaseMetadata> cases = new ArrayList<>(caseIds.size());
+        for (String caseId : caseIds) {
+            Optional<CaseMetadata> metadata = caseProjection.find(caseId);
+            if (metadata.isEmpty()) {
+                return ResponseEntity.status(404).body(Map.of(
+                    "message", "Dossier introuvable : " + caseId
+                ));
+            }
+            cases.add(metadata.get());
+        }
+        // The length is not known up front, so the archive goes out chunked; once the first bytes are sent a
+        // failure can only abort the connection.
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        archiveWriter.write(cases, response.getOutputStream());
+        response.flushBuffer();
+        return null;
+    }
+
+    /**
+     * Strong validator for the stored bytes: their SHA-256, so that it survives packing, which moves the bytes
+     * into a segment without changing them. Documents stored without a digest fall back to the size and version
+     * of the stored file.
+     */
+    private static String eTag(DocumentMetadata document, StoredContent content) {
+        if (document.getSha256() != null) {
+            return "\"" + document.getSha256() + "\"";
+        }
+        return "\"" + document.getId() + "-" + Long.toHexString(content.length()) + "-" + content.version() + "\"";
+    }
+
+    private static void closeQuietly(StoredContent content) {
         try {
-            byte[] bytes = FileCopyUtils.copyToByteArray(metadataFile.toFile());
-            CaseMetadata metadata = objectMapper.readValue(bytes, CASE_METADATA_TYPE);
-            return Optional.of(metadata);
+            content.close();
         } catch (IOException e) {
-            return Optional.empty();
+            // Read-only channel: nothing was left to flush.
+        }
+    }
+
+    /**
+     * Ranges to serve, or an empty list when the whole representation must be sent: no or malformed
+     * {@code Range} header, or an {@code If-Range} validator that no longer matches.
+     */
+    private static List<HttpRange> requestedRanges(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        if (requestHeaders.getFirst(HttpHeaders.RANGE) == null) {
+            return List.of();
+        }
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag) && !matchesDate(ifRange, lastModified)) {
+            return List.of();
+        }
+        try {
+            return requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean matchesDate(String ifRange, long lastModified) {
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDescending(String sort) {
+        String[] parts = sort.split(",", -1);
+        String direction = parts.length > 1 ? parts[1].trim() : "asc";
+        if (parts.length > 2 || !parts[0].trim().equals("createdAt")
+            || !(direction.equalsIgnoreCase("asc") || direction.equalsIgnoreCase("desc"))) {
+            throw new IllegalArgumentException("Tri non supporté : " + sort);
         }
+        return direction.equalsIgnoreCase("desc");
     }
 }
@@ -0,0 +1,32 @@
+package com.docudeep.view.controller;
+
+import com.docudeep.common.bulkhead.Bulkhead;
+
+import java.util.Map;
+
+/**
+ * Groups of endpoints that share a bulkhead, so that one kind of traffic cannot take every request thread. The names
+ * go into {@link Bulkhead}, the {@code concurrency.bulkheads.limits} keys and the metric tags.
+ */
+public final class EndpointClass {
+
+    /**
+     * Document downloads, whose duration follows the client's download speed.
+     */
+    public static final String DOWNLOADS = "downloads";
+
+    /**
+     * Case listing and case details, answered from the in-memory projection.
+     */
+    public static final String LISTING = "listing";
+
+    /**
+     * Document previews, mostly served from the disk cache; rendering has its own CPU budget on top.
+     */
+    public static final String PREVIEWS = "previews";
+
+    public static final Map<String, Integer> DEFAULT_LIMITS = Map.of(DOWNLOADS, 128, LISTING, 32, PREVIEWS, 64);
+
+    private EndpointClass() {
+    }
+}
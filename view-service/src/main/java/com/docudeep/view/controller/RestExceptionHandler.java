@@ -1,5 +1,9 @@
 package com.docudeep.view.controller;
 
+import com.docudeep.common.bulkhead.BulkheadFullException;
+import com.docudeep.view.service.PreviewBusyException;
+import com.docudeep.view.service.PreviewUnavailableException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -10,6 +14,38 @@ import java.util.Map;
 @RestControllerAdvice
 public class RestExceptionHandler {
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException exception) {
+        return ResponseEntity.badRequest().body(Map.of(
+            "message", exception.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Map<String, Object>> handleBulkheadFull(BulkheadFullException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of(
+                "message", exception.getMessage()
+            ));
+    }
+
+    @ExceptionHandler(PreviewBusyException.class)
+    public ResponseEntity<Map<String, Object>> handlePreviewBusy(PreviewBusyException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of(
+                "message", exception.getMessage()
+            ));
+    }
+
+    @ExceptionHandler(PreviewUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handlePreviewUnavailable(PreviewUnavailableException exception) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of(
+            "message", exception.getMessage()
+        ));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handle(Exception exception) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
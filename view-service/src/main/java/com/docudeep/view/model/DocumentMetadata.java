@@ -13,6 +13,8 @@ public class DocumentMetadata {
     private String documentType;
     private String status;
     private long storedSize;
+    private String sha256;
+    private boolean packed;
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Instant uploadedAt;
 
@@ -72,6 +74,14 @@ public class DocumentMetadata {
         this.storedSize = storedSize;
     }
 
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
     public Instant getUploadedAt() {
         return uploadedAt;
     }
@@ -79,4 +89,12 @@ public class DocumentMetadata {
     public void setUploadedAt(Instant uploadedAt) {
         this.uploadedAt = uploadedAt;
     }
+
+    public boolean isPacked() {
+        return packed;
+    }
+
+    public void setPacked(boolean packed) {
+        this.packed = packed;
+    }
 }
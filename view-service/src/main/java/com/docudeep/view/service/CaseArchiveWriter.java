@@ -0,0 +1,157 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.model.CaseMetadata;
+import com.docudeep.view.model.DocumentMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the validated documents of one or more cases as a ZIP archive, reading each file while it is written to
+ * the response: nothing is staged on disk and at most one copy buffer is held in memory.
+ * <p>
+ * PDFs and images are already compressed, so they are STORED rather than deflated. A STORED entry must announce
+ * its CRC-32 before its data ({@link ZipOutputStream} does not write data descriptors for it), so such files are
+ * read twice: once to compute the checksum, then again, usually from the page cache, to copy them. Both reads go
+ * through the one channel opened by {@link DocumentLocator} for that entry, so a file replaced in between does not
+ * change the bytes.
+ */
+@Component
+public class CaseArchiveWriter {
+
+    private static final String VALIDATED = "VALIDATED";
+    private static final Set<String> COMPRESSED_TYPES = Set.of("application/pdf", "image/jpeg", "image/png");
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final DocumentLocator documentLocator;
+    private final Counter archivedBytes;
+
+    public CaseArchiveWriter(DocumentLocator documentLocator, MeterRegistry meterRegistry) {
+        this.documentLocator = documentLocator;
+        this.archivedBytes = Counter.builder("docudeep.download.bytes")
+            .description("Bytes of documents served")
+            .baseUnit("bytes")
+            .tag("transfer", "archive")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Writes the validated documents of {@code cases} whose file is present to {@code out} as a ZIP archive and
+     * finishes it; {@code out} is left open. With a single case the documents sit at the root of the archive,
+     * otherwise in one folder per case.
+     * <p>
+     * Each document is located just before its entry is written and closed right after, so only one is open at a
+     * time; one that can no longer be found by then is left out.
+     */
+    public void write(List<CaseMetadata> cases, OutputStream out) throws IOException {
+        boolean folders = cases.size() > 1;
+        Set<String> names = new HashSet<>();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setLevel(Deflater.BEST_SPEED);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        for (CaseMetadata metadata : cases) {
+            for (DocumentMetadata document : metadata.getDocuments()) {
+                if (!VALIDATED.equals(document.getStatus()) || document.getStorageFilename() == null) {
+                    continue;
+                }
+                Optional<StoredContent> located = documentLocator.locate(metadata.getCaseId(), document);
+                if (located.isEmpty()) {
+                    continue;
+                }
+                try (StoredContent content = located.get()) {
+                    String folder = folders ? metadata.getCaseId() + "/" : "";
+                    writeEntry(zip, uniqueName(names, folder + entryFilename(document)), document, content, buffer);
+                }
+            }
+        }
+        zip.finish();
+    }
+
+    private void writeEntry(ZipOutputStream zip, String name, DocumentMetadata document, StoredContent content,
+                            ByteBuffer buffer) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+        if (document.getUploadedAt() != null) {
+            zipEntry.setTime(document.getUploadedAt().toEpochMilli());
+        }
+        boolean compressed = document.getMimeType() != null
+            && COMPRESSED_TYPES.contains(document.getMimeType().toLowerCase(Locale.ROOT));
+        if (compressed) {
+            CRC32 crc = new CRC32();
+            read(content, buffer, crc::update);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(content.length());
+            zipEntry.setCompressedSize(content.length());
+            zipEntry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(zipEntry);
+        read(content, buffer, chunk -> {
+            zip.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            archivedBytes.increment(chunk.remaining());
+        });
+        zip.closeEntry();
+    }
+
+    /**
+     * Hands the content to {@code consumer} one buffer at a time, read from the content's channel.
+     */
+    private static void read(StoredContent content, ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+        long position = content.offset();
+        long end = content.offset() + content.length();
+        FileChannel channel = content.channel();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + content.file() + " at " + (position - content.offset())
+                    + " of " + content.length() + " bytes");
+            }
+            position += read;
+            buffer.flip();
+            consumer.accept(buffer);
+        }
+    }
+
+    private static String entryFilename(DocumentMetadata document) {
+        String filename = document.getFilename();
+        if (filename == null || filename.isBlank()) {
+            return document.getId();
+        }
+        return filename.replace('/', '_').replace('\\', '_');
+    }
+
+    /**
+     * {@code name}, or {@code name (2)}, {@code name (3)}... before the extension when it is already taken.
+     */
+    private static String uniqueName(Set<String> names, String name) {
+        int dot = name.lastIndexOf('.');
+        boolean hasExtension = dot > name.lastIndexOf('/') + 1;
+        String base = hasExtension ? name.substring(0, dot) : name;
+        String extension = hasExtension ? name.substring(dot) : "";
+        String candidate = name;
+        for (int i = 2; !names.add(candidate); i++) {
+            candidate = base + " (" + i + ")" + extension;
+        }
+        return candidate;
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+}
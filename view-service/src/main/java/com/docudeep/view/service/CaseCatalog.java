@@ -0,0 +1,198 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.model.CaseMetadata;
+import com.docudeep.view.model.DocumentMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory index of case metadata ordered by creation date, serving lookups and keyset-paginated
+ * listings without touching the disk. Kept up to date by {@link CaseProjection}.
+ * <p>
+ * Each filter a listing accepts (a status, a document type, or both on the same document) has its own ordered
+ * index of the matching cases, so a filtered page reads only the cases it returns, however selective the filter.
+ */
+public class CaseCatalog {
+
+    private static final String UNFILTERED = filterKey(null, null);
+
+    private final NavigableMap<CaseKey, CatalogEntry> byCreation = new ConcurrentSkipListMap<>();
+    private final Map<String, CatalogEntry> byId = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<CaseKey, CatalogEntry>> byFilter = new ConcurrentHashMap<>();
+
+    public Optional<CaseMetadata> find(String caseId) {
+        CatalogEntry entry = byId.get(caseId);
+        return entry == null ? Optional.empty() : Optional.of(entry.metadata());
+    }
+
+    public Page page(PageRequest request) {
+        String filter = request.filterKey();
+        NavigableMap<CaseKey, CatalogEntry> matching = filter == null ? byCreation : byFilter.get(filter);
+        if (matching == null) {
+            return new Page(List.of(), null);
+        }
+        NavigableMap<CaseKey, CatalogEntry> ordered = request.descending() ? matching.descendingMap() : matching;
+        if (request.after() != null) {
+            ordered = ordered.tailMap(request.after(), false);
+        }
+
+        List<CaseMetadata> cases = new ArrayList<>(request.limit());
+        CaseKey lastKey = null;
+        for (CatalogEntry entry : ordered.values()) {
+            if (cases.size() == request.limit()) {
+                return new Page(cases, encodeCursor(lastKey));
+            }
+            cases.add(entry.metadata());
+            lastKey = entry.key();
+        }
+        return new Page(cases, null);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    Set<String> caseIds() {
+        return Set.copyOf(byId.keySet());
+    }
+
+    FileVersion version(String caseId) {
+        CatalogEntry entry = byId.get(caseId);
+        return entry == null ? null : entry.version();
+    }
+
+    synchronized void upsert(CaseMetadata metadata, FileVersion version) {
+        CatalogEntry entry = new CatalogEntry(new CaseKey(metadata.getCreatedAt(), metadata.getCaseId()), version, metadata);
+        CatalogEntry previous = byId.put(metadata.getCaseId(), entry);
+        if (previous != null) {
+            unindex(previous);
+        }
+        byCreation.put(entry.key(), entry);
+        for (String filter : filterKeys(metadata)) {
+            byFilter.computeIfAbsent(filter, key -> new ConcurrentSkipListMap<>()).put(entry.key(), entry);
+        }
+    }
+
+    synchronized void remove(String caseId) {
+        CatalogEntry previous = byId.remove(caseId);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    private void unindex(CatalogEntry entry) {
+        byCreation.remove(entry.key());
+        for (String filter : filterKeys(entry.metadata())) {
+            NavigableMap<CaseKey, CatalogEntry> matching = byFilter.get(filter);
+            if (matching != null) {
+                matching.remove(entry.key());
+                if (matching.isEmpty()) {
+                    byFilter.remove(filter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Filters a case matches: the status and the type of each of its documents, alone and together.
+     */
+    private static Set<String> filterKeys(CaseMetadata metadata) {
+        Set<String> keys = new HashSet<>();
+        for (DocumentMetadata document : metadata.getDocuments()) {
+            keys.add(filterKey(document.getStatus(), null));
+            keys.add(filterKey(null, document.getDocumentType()));
+            keys.add(filterKey(document.getStatus(), document.getDocumentType()));
+        }
+        keys.remove(UNFILTERED);
+        return keys;
+    }
+
+    private static String filterKey(String status, String documentType) {
+        return normalize(status) + "|" + normalize(documentType);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.strip().toUpperCase(Locale.ROOT);
+    }
+
+    public static CaseKey decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+            return new CaseKey(Instant.parse(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide", e);
+        }
+    }
+
+    private static String encodeCursor(CaseKey key) {
+        String raw = key.createdAt() + "|" + key.caseId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public record CaseKey(Instant createdAt, String caseId) implements Comparable<CaseKey> {
+
+        @Override
+        public int compareTo(CaseKey other) {
+            int byDate = createdAt.compareTo(other.createdAt);
+            return byDate != 0 ? byDate : caseId.compareTo(other.caseId);
+        }
+    }
+
+    /**
+     * @param after        exclusive keyset position, {@code null} for the first page
+     * @param status       only cases with at least one document in this status
+     * @param documentType only cases with at least one document of this type
+     */
+    public record PageRequest(int limit, CaseKey after, boolean descending, String status, String documentType) {
+
+        /**
+         * Index of the cases this request selects, {@code null} when it does not filter.
+         */
+        String filterKey() {
+            String key = CaseCatalog.filterKey(status, documentType);
+            return key.equals(UNFILTERED) ? null : key;
+        }
+    }
+
+    /**
+     * @param nextCursor opaque cursor of the following page, {@code null} on the last page
+     */
+    public record Page(List<CaseMetadata> cases, String nextCursor) {
+    }
+
+    private record CatalogEntry(CaseKey key, FileVersion version, CaseMetadata metadata) {
+    }
+
+    /**
+     * Identity of one version of metadata.json. upload-service replaces the file by renaming a new one over
+     * it, so the file key (inode) changes on every write even when size and timestamp do not.
+     */
+    record FileVersion(Object fileKey, FileTime lastModified, long size) {
+
+        static FileVersion of(BasicFileAttributes attributes) {
+            return new FileVersion(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+        }
+    }
+}
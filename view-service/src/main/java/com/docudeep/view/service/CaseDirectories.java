@@ -0,0 +1,63 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.StorageProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Location of the case directories written by upload-service: {@code <root>/<caseId>} in the flat layout,
+ * {@code <root>/ab/cd/<caseId>} in the sharded one, where {@code abcd} are the first two bytes of the SHA-256 of
+ * the case id.
+ * <p>
+ * Both layouts are read, sharded first: upload-service moves flat cases to their sharded location in the
+ * background, always flat to sharded and as a single rename. A reader that misses a file can therefore
+ * {@link #resolve} again; a different answer means the case has just moved.
+ */
+@Component
+public class CaseDirectories {
+
+    static final int SHARD_LEVELS = 2;
+    private static final Pattern SHARD_NAME = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path root;
+
+    public CaseDirectories(StorageProperties properties) {
+        this.root = Path.of(properties.getRoot()).toAbsolutePath().normalize();
+    }
+
+    public Path resolve(String caseId) {
+        Path sharded = shardedPath(caseId);
+        if (Files.isDirectory(sharded)) {
+            return sharded;
+        }
+        return root.resolve(caseId);
+    }
+
+    static boolean isShardName(String name) {
+        return SHARD_NAME.matcher(name).matches();
+    }
+
+    private Path shardedPath(String caseId) {
+        String prefix = HexFormat.of().formatHex(sha256(caseId), 0, SHARD_LEVELS);
+        Path directory = root;
+        for (int level = 0; level < SHARD_LEVELS; level++) {
+            directory = directory.resolve(prefix.substring(level * 2, level * 2 + 2));
+        }
+        return directory.resolve(caseId);
+    }
+
+    private static byte[] sha256(String caseId) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(caseId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
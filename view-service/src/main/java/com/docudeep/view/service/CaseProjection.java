@@ -0,0 +1,339 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.ProjectionProperties;
+import com.docudeep.view.config.StorageProperties;
+import com.docudeep.view.model.CaseMetadata;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory projection of every case under {@code storage.root}.
+ * <p>
+ * Built by a full scan at startup, then kept fresh from {@link WatchService} events on the root, on the shard
+ * directories of the sharded layout and on each case directory (see {@link CaseDirectories}). A periodic
+ * reconciliation sweep compares file versions with the projection to recover from missed events: watcher
+ * overflow, inotify watch limits, or the root being recreated by a storage reset.
+ * <p>
+ * The {@code docudeep.projection.lag} timer records, for every applied change, the delay between the
+ * metadata.json write and the projection reflecting it.
+ */
+@Component
+public class CaseProjection {
+
+    private static final Logger log = LoggerFactory.getLogger(CaseProjection.class);
+    private static final String METADATA_FILE = "metadata.json";
+
+    private final Path root;
+    private final CaseDirectories caseDirectories;
+    private final ObjectMapper objectMapper;
+    private final CaseCatalog catalog = new CaseCatalog();
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+    private final Object sweepLock = new Object();
+    private final ScheduledExecutorService executor;
+    private final Timer lag;
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private volatile WatchKey rootKey;
+    private volatile boolean started;
+    private boolean watchLimitReported;
+
+    public CaseProjection(StorageProperties storageProperties,
+                          ProjectionProperties projectionProperties,
+                          CaseDirectories caseDirectories,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) throws IOException {
+        this.root = Path.of(storageProperties.getRoot()).toAbsolutePath().normalize();
+        this.caseDirectories = caseDirectories;
+        this.objectMapper = objectMapper;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.lag = Timer.builder("docudeep.projection.lag")
+            .description("Delay between a metadata.json write and the projection reflecting it")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("docudeep.projection.lag.last", lastLagMillis, value -> value.get() / 1000.0)
+            .description("Lag of the most recently applied change")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.projection.cases", catalog, CaseCatalog::size)
+            .description("Cases held in the view projection")
+            .register(meterRegistry);
+
+        Files.createDirectories(root);
+        reconcile();
+        started = true;
+
+        this.executor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "case-projection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::watch);
+        long intervalMillis = Math.max(1, projectionProperties.getReconcileInterval().toMillis());
+        executor.scheduleWithFixedDelay(this::reconcileQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public CaseCatalog.Page page(CaseCatalog.PageRequest request) {
+        return catalog.page(request);
+    }
+
+    /**
+     * Looks the case up in memory, falling back to disk for a case created within the watcher's lag.
+     */
+    public Optional<CaseMetadata> find(String caseId) {
+        Optional<CaseMetadata> metadata = catalog.find(caseId);
+        if (metadata.isPresent() || !isCaseDirectoryName(caseId)) {
+            return metadata;
+        }
+        refreshCase(caseId);
+        return catalog.find(caseId);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        executor.shutdownNow();
+        watchService.close();
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    reconcileQuietly();
+                } else if (directory != null) {
+                    onEvent(directory, (Path) event.context(), event.kind());
+                }
+            }
+            if (!key.reset()) {
+                Path removed = watchedDirectories.remove(key);
+                if (removed != null) {
+                    watchKeys.remove(removed, key);
+                }
+            }
+        }
+    }
+
+    private void onEvent(Path directory, Path name, WatchEvent.Kind<?> kind) {
+        String child = name.toString();
+        int level = shardLevel(directory);
+        if (level >= 0 && level < CaseDirectories.SHARD_LEVELS && CaseDirectories.isShardName(child)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                // upload-service creates ab/cd/CASE-... in one go, before this watch can see the inner levels.
+                watchShard(directory.resolve(child), level + 1);
+            }
+        } else if (level == 0 || level == CaseDirectories.SHARD_LEVELS) {
+            if (!isCaseDirectoryName(child)) {
+                return;
+            }
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                watchKeys.remove(directory.resolve(child));
+                // Deleted, or moved to the sharded layout: the case is only dropped if found nowhere.
+                refreshCase(child);
+            } else {
+                watchDirectory(directory.resolve(child));
+                // metadata.json may have been written before the watch was in place.
+                refreshCase(child);
+            }
+        } else if (METADATA_FILE.equals(child)) {
+            refreshCase(directory.getFileName().toString());
+        }
+    }
+
+    /**
+     * Depth of {@code directory} in the shard tree: 0 for the root, 1 and 2 for the shard directories, -1 for a
+     * case directory.
+     */
+    private int shardLevel(Path directory) {
+        if (directory.equals(root)) {
+            return 0;
+        }
+        Path relative = root.relativize(directory);
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (!CaseDirectories.isShardName(relative.getName(i).toString())) {
+                return -1;
+            }
+        }
+        return relative.getNameCount() <= CaseDirectories.SHARD_LEVELS ? relative.getNameCount() : -1;
+    }
+
+    /**
+     * Watches a shard directory and everything below it, and loads the cases found there.
+     */
+    private void watchShard(Path shard, int level) {
+        watchDirectory(shard);
+        try (var entries = Files.list(shard)) {
+            for (Path entry : (Iterable<Path>) entries.filter(Files::isDirectory)::iterator) {
+                String name = entry.getFileName().toString();
+                if (level < CaseDirectories.SHARD_LEVELS && CaseDirectories.isShardName(name)) {
+                    watchShard(entry, level + 1);
+                } else if (level == CaseDirectories.SHARD_LEVELS && isCaseDirectoryName(name)) {
+                    watchDirectory(entry);
+                    refreshCase(name);
+                }
+            }
+        } catch (IOException e) {
+            // Gone already, or unreadable for now: the reconciliation sweep catches up.
+            log.debug("Unable to list {}", shard, e);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Case projection reconciliation failed, will retry", e);
+        }
+    }
+
+    private void reconcile() throws IOException {
+        synchronized (sweepLock) {
+            if (!Files.isDirectory(root)) {
+                catalog.caseIds().forEach(catalog::remove);
+                return;
+            }
+            if (rootKey == null || !rootKey.isValid()) {
+                rootKey = root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(rootKey, root);
+            }
+
+            // Flat cases are listed before the shards, so that a case moved meanwhile is seen at least once.
+            Map<String, Path> present = new LinkedHashMap<>();
+            collectCases(root, 0, present);
+            for (Map.Entry<String, Path> entry : present.entrySet()) {
+                watchDirectory(entry.getValue());
+                refreshCase(entry.getKey());
+            }
+            for (String caseId : catalog.caseIds()) {
+                if (!present.containsKey(caseId)) {
+                    catalog.remove(caseId);
+                }
+            }
+        }
+    }
+
+    private void collectCases(Path directory, int level, Map<String, Path> present) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        try (var entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries.filter(Files::isDirectory)::iterator) {
+                String name = entry.getFileName().toString();
+                if (level < CaseDirectories.SHARD_LEVELS && CaseDirectories.isShardName(name)) {
+                    shards.add(entry);
+                } else if ((level == 0 || level == CaseDirectories.SHARD_LEVELS) && isCaseDirectoryName(name)) {
+                    present.putIfAbsent(name, entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (Path shard : shards) {
+            watchDirectory(shard);
+            collectCases(shard, level + 1, present);
+        }
+    }
+
+    /**
+     * Re-reads a case if its metadata.json changed. Synchronised so that a slow reader holding an older
+     * version cannot overwrite a newer one applied concurrently by another thread.
+     */
+    private synchronized void refreshCase(String caseId) {
+        Path directory = caseDirectories.resolve(caseId);
+        while (true) {
+            Path file = directory.resolve(METADATA_FILE);
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                CaseCatalog.FileVersion version = CaseCatalog.FileVersion.of(attributes);
+                if (version.equals(catalog.version(caseId))) {
+                    return;
+                }
+                CaseMetadata metadata = objectMapper.readValue(file.toFile(), CaseMetadata.class);
+                if (metadata.getCaseId() == null || metadata.getCreatedAt() == null) {
+                    return;
+                }
+                catalog.upsert(metadata, version);
+                if (started) {
+                    recordLag(Duration.ofMillis(System.currentTimeMillis() - attributes.lastModifiedTime().toMillis()));
+                }
+                return;
+            } catch (NoSuchFileException e) {
+                Path current = caseDirectories.resolve(caseId);
+                if (current.equals(directory)) {
+                    catalog.remove(caseId);
+                    return;
+                }
+                // Moved to the sharded layout between resolving and reading: read it there.
+                directory = current;
+            } catch (IOException e) {
+                // Unreadable for now; the next event or sweep will retry.
+                log.debug("Unable to read {}", file, e);
+                return;
+            }
+        }
+    }
+
+    private void recordLag(Duration observed) {
+        Duration clamped = observed.isNegative() ? Duration.ZERO : observed;
+        lag.record(clamped);
+        lastLagMillis.set(clamped.toMillis());
+    }
+
+    private void watchDirectory(Path directory) {
+        WatchKey existing = watchKeys.get(directory);
+        if (existing != null && existing.isValid()) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+            watchKeys.put(directory, key);
+        } catch (NoSuchFileException e) {
+            // Deleted in the meantime.
+        } catch (IOException e) {
+            // Typically the inotify watch limit: this case is then only refreshed by the reconciliation sweep.
+            if (!watchLimitReported) {
+                watchLimitReported = true;
+                log.warn("Unable to watch {}, falling back to periodic reconciliation for unwatched cases", directory, e);
+            }
+        }
+    }
+
+    private static boolean isCaseDirectoryName(String name) {
+        // Skips upload-service internals such as .journal and temporary files.
+        return !name.isEmpty() && !name.startsWith(".") && !name.contains("/") && !name.contains("\\");
+    }
+}
@@ -0,0 +1,105 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.model.DocumentMetadata;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the bytes of a document, in its case directory or in a segment file, and opens them.
+ * <p>
+ * upload-service deletes the case file right after packing it, possibly before the projection has seen the
+ * {@code packed} flag, so a missing case file is also looked up in the segments by digest. A segment compacted
+ * away between the lookup and the open is looked up once more.
+ */
+@Component
+public class DocumentLocator {
+
+    private final CaseDirectories caseDirectories;
+    private final SegmentIndex segmentIndex;
+
+    public DocumentLocator(CaseDirectories caseDirectories, SegmentIndex segmentIndex) {
+        this.caseDirectories = caseDirectories;
+        this.segmentIndex = segmentIndex;
+    }
+
+    /**
+     * The open content of {@code document}, or empty when its bytes are nowhere to be found. The caller closes it.
+     */
+    public Optional<StoredContent> locate(String caseId, DocumentMetadata document) throws IOException {
+        if (!document.isPacked() && document.getStorageFilename() != null) {
+            Path directory = caseDirectories.resolve(caseId);
+            Optional<StoredContent> loose = looseFile(directory.resolve(document.getStorageFilename()), document);
+            if (loose.isEmpty()) {
+                Path current = caseDirectories.resolve(caseId);
+                if (!current.equals(directory)) {
+                    // Moved to the sharded layout between resolving and reading.
+                    loose = looseFile(current.resolve(document.getStorageFilename()), document);
+                }
+            }
+            if (loose.isPresent()) {
+                return loose;
+            }
+            // Otherwise packed in the meantime, see below.
+        }
+        if (document.getSha256() == null) {
+            return Optional.empty();
+        }
+        long lastModified = document.getUploadedAt() == null ? 0 : document.getUploadedAt().toEpochMilli();
+        String version = document.getSha256().substring(0, Math.min(16, document.getSha256().length()));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Optional<SegmentIndex.Location> location = segmentIndex.find(document.getSha256());
+            if (location.isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                FileChannel channel = FileChannel.open(location.get().file(), StandardOpenOption.READ);
+                return Optional.of(new StoredContent(channel, location.get().file(), location.get().offset(),
+                    location.get().length(), version, lastModified));
+            } catch (NoSuchFileException e) {
+                // Compacted into a newer segment since the index was read.
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The upload time, when known, stands for the modification time so that packing does not change it.
+     */
+    private static Optional<StoredContent> looseFile(Path file, DocumentMetadata document) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        boolean found = false;
+        try {
+            // Read after opening, so that they describe the opened file unless it is being replaced right now; the
+            // size comes from the channel itself.
+            FileTime modified = Files.getLastModifiedTime(file);
+            long lastModified = document.getUploadedAt() == null
+                ? modified.toMillis()
+                : document.getUploadedAt().toEpochMilli();
+            StoredContent content = new StoredContent(channel, file, 0, channel.size(),
+                Long.toHexString(modified.to(TimeUnit.NANOSECONDS)), lastModified);
+            found = true;
+            return Optional.of(content);
+        } catch (NoSuchFileException e) {
+            // Packed and deleted since it was opened: the segment has the same bytes.
+            return Optional.empty();
+        } finally {
+            if (!found) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.docudeep.view.service;
+
+/**
+ * Every rendering slot stayed taken for {@code storage.preview.max-wait}.
+ */
+public class PreviewBusyException extends RuntimeException {
+
+    public PreviewBusyException() {
+        super("Le service est momentanément saturé, merci de réessayer dans quelques instants.");
+    }
+}
@@ -0,0 +1,134 @@
+package com.docudeep.view.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Directory of rendered previews bounded by total size, evicting the least recently served file first.
+ * <p>
+ * The recency order lives in memory only, so a hit costs no disk write; on startup it is rebuilt from the files'
+ * modification times, i.e. from when each preview was rendered.
+ * <p>
+ * A document that cannot be previewed is remembered too, as an empty file: a JPEG is never empty. Such a marker is
+ * counted as one disk block towards the size bound, so that markers are evicted like previews.
+ */
+class PreviewCache {
+
+    private static final String SUFFIX = ".jpg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MARKER_BYTES = 4096;
+    private static final byte[] UNAVAILABLE = new byte[0];
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    PreviewCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.forEach(files::add);
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> previews = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Left behind by a render interrupted by a shutdown.
+                Files.deleteIfExists(file);
+            } else if (name.endsWith(SUFFIX)) {
+                previews.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+            }
+        }
+        previews.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        synchronized (this) {
+            for (Map.Entry<Path, BasicFileAttributes> preview : previews) {
+                String name = preview.getKey().getFileName().toString();
+                long size = charged(preview.getValue().size());
+                sizes.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                totalBytes += size;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Content of the preview stored under {@code key}, empty when the document was found to have no preview, or
+     * {@code null} when nothing is stored.
+     */
+    byte[] get(String key) throws IOException {
+        synchronized (this) {
+            if (sizes.get(key) == null) {
+                return null;
+            }
+        }
+        try {
+            return Files.readAllBytes(file(key));
+        } catch (NoSuchFileException e) {
+            // Evicted between the lookup and the read.
+            return null;
+        }
+    }
+
+    void put(String key, byte[] content) throws IOException {
+        store(key, content);
+    }
+
+    /**
+     * Remembers that the document under {@code key} cannot be previewed.
+     */
+    void putUnavailable(String key) throws IOException {
+        store(key, UNAVAILABLE);
+    }
+
+    private void store(String key, byte[] content) throws IOException {
+        Path temp = directory.resolve(key + "." + Thread.currentThread().threadId() + TEMP_SUFFIX);
+        Files.write(temp, content);
+        Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            long size = charged(content.length);
+            Long previous = sizes.put(key, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    synchronized int size() {
+        return sizes.size();
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            Files.deleteIfExists(file(entry.getKey()));
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private static long charged(long fileSize) {
+        return fileSize == 0 ? MARKER_BYTES : fileSize;
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+}
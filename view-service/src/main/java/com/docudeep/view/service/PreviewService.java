@@ -0,0 +1,278 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.PreviewProperties;
+import com.docudeep.view.model.DocumentMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * JPEG previews of stored documents: the first page of a PDF rendered with PDFBox, or a downscaled image.
+ * <p>
+ * A preview is rendered once per document content and kept in a {@link PreviewCache}, so later requests only read
+ * a small file. Rendering is CPU-bound and bounded by {@code storage.preview.render-concurrency} permits;
+ * concurrent requests for the same preview wait for a single rendering instead of starting their own. A content
+ * found to have no preview is remembered under the same key, so an unreadable PDF is parsed only once.
+ */
+@Component
+public class PreviewService {
+
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final DocumentLocator documentLocator;
+    private final int maxDimension;
+    private final long maxWaitNanos;
+    private final PreviewCache cache;
+    private final Semaphore renderPermits;
+    private final ConcurrentMap<String, FutureTask<byte[]>> rendering = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer pdfRenders;
+    private final Timer imageRenders;
+
+    public PreviewService(DocumentLocator documentLocator, PreviewProperties properties,
+                          MeterRegistry meterRegistry) throws IOException {
+        this.documentLocator = documentLocator;
+        this.maxDimension = properties.getMaxDimension();
+        this.maxWaitNanos = properties.getMaxWait().toNanos();
+        this.cache = new PreviewCache(Path.of(properties.getDirectory()).toAbsolutePath().normalize(),
+            properties.getMaxSize().toBytes());
+        this.renderPermits = new Semaphore(Math.max(1, properties.getRenderConcurrency()));
+        this.hits = Counter.builder("docudeep.preview.cache.requests")
+            .description("Previews served from the disk cache")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("docudeep.preview.cache.requests")
+            .description("Previews that had to be rendered")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        this.pdfRenders = Timer.builder("docudeep.preview.render")
+            .description("Time spent rendering a preview")
+            .tag("type", "pdf")
+            .register(meterRegistry);
+        this.imageRenders = Timer.builder("docudeep.preview.render")
+            .description("Time spent rendering a preview")
+            .tag("type", "image")
+            .register(meterRegistry);
+        Gauge.builder("docudeep.preview.cache.size", cache, PreviewCache::totalBytes)
+            .description("Bytes of previews kept on disk")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Strong validator of the preview of {@code document}; it changes with the document's content.
+     */
+    public String eTag(String caseId, DocumentMetadata document) throws IOException {
+        return "\"preview-" + key(caseId, document) + "\"";
+    }
+
+    /**
+     * JPEG preview of {@code document}, rendered on first request.
+     *
+     * @throws PreviewUnavailableException when the document type is not supported or its content is unreadable
+     * @throws PreviewBusyException        when no rendering slot frees up in time
+     */
+    public byte[] preview(String caseId, DocumentMetadata document) throws IOException {
+        String key = key(caseId, document);
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return available(cached);
+        }
+        misses.increment();
+
+        FutureTask<byte[]> task = new FutureTask<>(() -> render(key, caseId, document));
+        FutureTask<byte[]> running = rendering.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                rendering.remove(key, task);
+            }
+            running = task;
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PreviewBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private byte[] render(String key, String caseId, DocumentMetadata document) throws IOException, InterruptedException {
+        // Another request may have finished rendering between our cache miss and registering this task.
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            return available(cached);
+        }
+        if (!renderPermits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            throw new PreviewBusyException();
+        }
+        try (StoredContent content = content(caseId, document)) {
+            String mimeType = document.getMimeType() == null ? "" : document.getMimeType().toLowerCase(Locale.ROOT);
+            BufferedImage image = switch (mimeType) {
+                case "application/pdf" -> pdfRenders.recordCallable(() -> renderFirstPage(content));
+                case "image/png", "image/jpeg" -> imageRenders.recordCallable(() -> downscale(content));
+                default -> throw new PreviewUnavailableException(null);
+            };
+            byte[] preview = encodeJpeg(image);
+            cache.put(key, preview);
+            return preview;
+        } catch (PreviewUnavailableException e) {
+            cache.putUnavailable(key);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            renderPermits.release();
+        }
+    }
+
+    /**
+     * {@code cached}, unless it is the marker of a document without preview.
+     */
+    private static byte[] available(byte[] cached) {
+        if (cached.length == 0) {
+            throw new PreviewUnavailableException(null);
+        }
+        return cached;
+    }
+
+    private BufferedImage renderFirstPage(StoredContent content) throws IOException {
+        // Scratch buffers go to a temp file so that a large PDF does not weigh on the heap while rendering.
+        try (PDDocument pdf = PDDocument.load(content.openStream(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (pdf.getNumberOfPages() == 0) {
+                throw new PreviewUnavailableException(null);
+            }
+            PDPage page = pdf.getPage(0);
+            PDRectangle box = page.getCropBox();
+            float scale = maxDimension / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(pdf).renderImage(0, Math.min(scale, 2f), ImageType.RGB);
+        } catch (IOException e) {
+            // Unreadable or password-protected file.
+            throw new PreviewUnavailableException(e);
+        }
+    }
+
+    /**
+     * Decodes only every n-th pixel of a large image (source subsampling), then scales the result to size.
+     */
+    private BufferedImage downscale(StoredContent content) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(content.openStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new PreviewUnavailableException(null);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / (maxDimension * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                double scale = Math.min(1.0, (double) maxDimension / Math.max(decoded.getWidth(), decoded.getHeight()));
+                int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+                int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+                BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = preview.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.drawImage(decoded, 0, 0, width, height, Color.WHITE, null);
+                } finally {
+                    graphics.dispose();
+                }
+                return preview;
+            } catch (IOException | IndexOutOfBoundsException e) {
+                throw new PreviewUnavailableException(e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Document id, content digest and size: a re-upload or a new {@code max-dimension} gets a new preview. Without
+     * a recorded SHA-256 the stored size and version stand in for the digest.
+     */
+    private String key(String caseId, DocumentMetadata document) throws IOException {
+        if (!SAFE_ID.matcher(document.getId()).matches()) {
+            throw new IllegalArgumentException("Identifiant de document invalide");
+        }
+        String digest = document.getSha256();
+        if (digest == null || !SAFE_ID.matcher(digest).matches()) {
+            try (StoredContent content = content(caseId, document)) {
+                digest = Long.toHexString(content.length()) + "-" + content.version();
+            }
+        }
+        return document.getId() + "-" + digest + "-" + maxDimension;
+    }
+
+    private StoredContent content(String caseId, DocumentMetadata document) throws IOException {
+        return documentLocator.locate(caseId, document)
+            .orElseThrow(() -> new NoSuchFileException(document.getStorageFilename()));
+    }
+}
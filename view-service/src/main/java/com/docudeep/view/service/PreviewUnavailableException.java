@@ -0,0 +1,11 @@
+package com.docudeep.view.service;
+
+/**
+ * The document cannot be previewed: unsupported type, or content the renderer cannot read.
+ */
+public class PreviewUnavailableException extends RuntimeException {
+
+    public PreviewUnavailableException(Throwable cause) {
+        super("Aperçu indisponible pour ce document", cause);
+    }
+}
@@ -0,0 +1,123 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.StorageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Read-only view of the segment files written by upload-service under {@code storage.root/.segments}: for each
+ * content digest, the segment and byte range holding it.
+ * <p>
+ * Index files are append-only, so a refresh only parses the lines added since the previous one. It runs on a
+ * lookup miss, or when the segment a digest pointed to has been removed by a compaction (which re-appends live
+ * documents to a newer segment first).
+ */
+@Component
+public class SegmentIndex {
+
+    private static final String SEGMENT_DIRECTORY = ".segments";
+    private static final String DATA_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    /** Bytes of each index file already parsed; guarded by {@code this}. */
+    private final Map<Long, Long> parsed = new HashMap<>();
+
+    public SegmentIndex(StorageProperties properties) {
+        this.directory = Path.of(properties.getRoot()).toAbsolutePath().normalize().resolve(SEGMENT_DIRECTORY);
+    }
+
+    public Optional<Location> find(String sha256) throws IOException {
+        Location location = locations.get(sha256);
+        if (location != null && Files.exists(location.file())) {
+            return Optional.of(location);
+        }
+        refresh();
+        return Optional.ofNullable(locations.get(sha256));
+    }
+
+    private synchronized void refresh() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            locations.clear();
+            parsed.clear();
+            return;
+        }
+        Set<Long> present = new HashSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(INDEX_SUFFIX)) {
+                    present.add(Long.parseLong(name.substring(0, name.length() - INDEX_SUFFIX.length())));
+                }
+            }
+        }
+        Set<Long> removed = new HashSet<>(parsed.keySet());
+        removed.removeAll(present);
+        if (!removed.isEmpty()) {
+            locations.values().removeIf(location -> removed.contains(location.segment()));
+            parsed.keySet().removeAll(removed);
+        }
+        for (long segment : present.stream().sorted().toList()) {
+            readNewLines(segment);
+        }
+    }
+
+    private void readNewLines(long segment) throws IOException {
+        long from = parsed.getOrDefault(segment, 0L);
+        byte[] added;
+        try (FileChannel channel = FileChannel.open(file(segment, INDEX_SUFFIX), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= from) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - from));
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+                // Keep reading until the new lines are all in.
+            }
+            added = buffer.array();
+        } catch (NoSuchFileException e) {
+            // Compacted away while listing.
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < added.length; i++) {
+            if (added[i] != '\n') {
+                continue;
+            }
+            String[] fields = new String(added, start, i - start, StandardCharsets.US_ASCII).split(" ");
+            start = i + 1;
+            if (fields.length == 3) {
+                Location location = new Location(segment, file(segment, DATA_SUFFIX),
+                    Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                // A content re-appended by compaction lives in the newer segment.
+                locations.merge(fields[0], location,
+                    (current, candidate) -> candidate.segment() >= current.segment() ? candidate : current);
+            }
+        }
+        // A line still being written is read again, whole, by the next refresh.
+        parsed.put(segment, from + start);
+    }
+
+    private Path file(long segment, String suffix) {
+        return directory.resolve(String.format("%08d", segment) + suffix);
+    }
+
+    public record Location(long segment, Path file, long offset, long length) {
+    }
+}
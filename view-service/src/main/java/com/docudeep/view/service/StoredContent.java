@@ -0,0 +1,139 @@
+package com.docudeep.view.service;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * The bytes of a document, held through a channel opened when it was located: a whole file in its case directory,
+ * or a range of a segment file.
+ * <p>
+ * Everything is read from that channel, never by reopening {@code file}, so a document replaced or a segment
+ * compacted away meanwhile is still read as it was located. The channel stays open until {@link #close()}.
+ *
+ * @param file         where the channel was opened, for diagnostics only
+ * @param version      changes whenever the bytes do (file modification time, or content digest when packed)
+ * @param lastModified epoch milliseconds
+ */
+public record StoredContent(FileChannel channel, Path file, long offset, long length, String version,
+                            long lastModified) implements Closeable {
+
+    /**
+     * A stream over the document's bytes. Several may be open at once; closing them leaves the channel open.
+     */
+    public InputStream openStream() {
+        return new RangeInputStream(channel, offset, length);
+    }
+
+    /**
+     * Writes {@code count} bytes starting {@code position} bytes into the document to {@code target} with
+     * {@link FileChannel#transferTo}, which the JDK turns into {@code sendfile} when {@code target} is a socket.
+     */
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        long start = offset + position;
+        long sent = 0;
+        while (sent < count) {
+            long transferred = channel.transferTo(start + sent, count - sent, target);
+            if (transferred <= 0) {
+                throw new EOFException("Unexpected end of " + file + " after " + sent + " of " + count + " bytes");
+            }
+            sent += transferred;
+        }
+    }
+
+    /**
+     * The content as a {@link Resource} whose positions start at the document's first byte, so that HTTP ranges
+     * can be resolved against it whatever the storage.
+     */
+    public Resource asResource() {
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "bytes " + offset + "-" + (offset + length - 1) + " of " + file;
+            }
+
+            @Override
+            public boolean exists() {
+                return true;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return openStream();
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public long lastModified() {
+                return lastModified;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Positional reads over a byte range of a channel; {@link #skip} is free, which is what range requests rely on.
+     */
+    private static final class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = (int) Math.min(len, end - position);
+            if (count <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, off, count), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
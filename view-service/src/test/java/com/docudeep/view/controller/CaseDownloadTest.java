@@ -0,0 +1,183 @@
+package com.docudeep.view.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CaseDownloadTest {
+
+    private static final Path ROOT = createRoot();
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+    private static final Instant UPLOADED_AT = Instant.parse("2024-03-01T10:15:30Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("storage.root", () -> ROOT.resolve("upload").toString());
+        registry.add("storage.preview.directory", () -> ROOT.resolve("previews").toString());
+    }
+
+    @Test
+    void theWholeDocumentComesWithItsValidators() throws Exception {
+        String sha256 = storeCase("CASE-FULL", CONTENT);
+
+        mockMvc.perform(get("/cases/CASE-FULL/documents/doc-1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + sha256 + "\""))
+            .andExpect(header().string(HttpHeaders.LAST_MODIFIED, httpDate(UPLOADED_AT)))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+            .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void aSingleRangeIsServedAsPartialContent() throws Exception {
+        storeCase("CASE-RANGE", CONTENT);
+
+        mockMvc.perform(get("/cases/CASE-RANGE/documents/doc-1").header(HttpHeaders.RANGE, "bytes=10-15"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-15/" + CONTENT.length()))
+            .andExpect(content().string("abcdef"));
+    }
+
+    @Test
+    void severalRangesAreServedAsMultipartByteranges() throws Exception {
+        storeCase("CASE-MULTI", CONTENT);
+
+        MvcResult result = mockMvc.perform(get("/cases/CASE-MULTI/documents/doc-1")
+                .header(HttpHeaders.RANGE, "bytes=0-3,30-35"))
+            .andExpect(status().isPartialContent())
+            .andReturn();
+
+        assertThat(result.getResponse().getContentType()).startsWith("multipart/byteranges");
+        String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(body)
+            .contains("Content-Range: bytes 0-3/" + CONTENT.length(), "0123")
+            .contains("Content-Range: bytes 30-35/" + CONTENT.length(), "uvwxyz");
+    }
+
+    @Test
+    void aStaleIfRangeGetsTheWholeDocument() throws Exception {
+        String sha256 = storeCase("CASE-IF-RANGE", CONTENT);
+
+        mockMvc.perform(get("/cases/CASE-IF-RANGE/documents/doc-1")
+                .header(HttpHeaders.RANGE, "bytes=10-15")
+                .header(HttpHeaders.IF_RANGE, "\"an-older-version\""))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+            .andExpect(content().string(CONTENT));
+        mockMvc.perform(get("/cases/CASE-IF-RANGE/documents/doc-1")
+                .header(HttpHeaders.RANGE, "bytes=10-15")
+                .header(HttpHeaders.IF_RANGE, "\"" + sha256 + "\""))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().string("abcdef"));
+    }
+
+    @Test
+    void aCurrentClientIsAnsweredNotModified() throws Exception {
+        String sha256 = storeCase("CASE-304", CONTENT);
+
+        mockMvc.perform(get("/cases/CASE-304/documents/doc-1").header(HttpHeaders.IF_NONE_MATCH, "\"" + sha256 + "\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get("/cases/CASE-304/documents/doc-1")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(UPLOADED_AT.plusSeconds(3600))))
+            .andExpect(status().isNotModified());
+        mockMvc.perform(get("/cases/CASE-304/documents/doc-1")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(UPLOADED_AT.minusSeconds(3600))))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void anUnsatisfiableRangeIsRefused() throws Exception {
+        storeCase("CASE-416", CONTENT);
+
+        mockMvc.perform(get("/cases/CASE-416/documents/doc-1").header(HttpHeaders.RANGE, "bytes=100-200"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + CONTENT.length()));
+    }
+
+    @Test
+    void packingKeepsTheValidators() throws Exception {
+        String sha256 = storeCase("CASE-PACKED", CONTENT);
+        MvcResult loose = mockMvc.perform(get("/cases/CASE-PACKED/documents/doc-1")).andReturn();
+
+        // What upload-service's packer does: append the bytes to a segment, then delete the case file.
+        Path segments = Files.createDirectories(ROOT.resolve("upload").resolve(".segments"));
+        Files.writeString(segments.resolve("00000001.seg"), "other bytes" + CONTENT);
+        Files.writeString(segments.resolve("00000001.idx"), sha256 + " 11 " + CONTENT.length() + "\n");
+        Files.delete(ROOT.resolve("upload").resolve("CASE-PACKED").resolve("doc-1.bin"));
+
+        mockMvc.perform(get("/cases/CASE-PACKED/documents/doc-1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, loose.getResponse().getHeader(HttpHeaders.ETAG)))
+            .andExpect(header().string(HttpHeaders.LAST_MODIFIED, loose.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+            .andExpect(content().string(CONTENT));
+        mockMvc.perform(get("/cases/CASE-PACKED/documents/doc-1").header(HttpHeaders.IF_NONE_MATCH, "\"" + sha256 + "\""))
+            .andExpect(status().isNotModified());
+    }
+
+    /**
+     * Writes a case with one document, {@code doc-1}, laid out as upload-service does, and returns its digest.
+     */
+    private static String storeCase(String caseId, String content) throws IOException {
+        Path directory = Files.createDirectories(ROOT.resolve("upload").resolve(caseId));
+        Files.writeString(directory.resolve("doc-1.bin"), content);
+        String sha256 = sha256(content);
+        Files.writeString(directory.resolve("metadata.json"), """
+            {"caseId": "%s", "createdAt": "2024-03-01T10:00:00Z", "documents": [{
+              "id": "doc-1", "filename": "releve.txt", "storageFilename": "doc-1.bin", "mimeType": "text/plain",
+              "status": "VALIDATED", "storedSize": %d, "sha256": "%s", "uploadedAt": "%s"}]}
+            """.formatted(caseId, content.length(), sha256, UPLOADED_AT));
+        return sha256;
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String httpDate(Instant instant) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLastModified(instant);
+        return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+    }
+
+    private static Path createRoot() {
+        try {
+            return Files.createTempDirectory("view-service-download");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.docudeep.view.controller;
+
+import com.docudeep.view.ViewServiceApplication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the two download paths end to end, through {@code GET /cases/{caseId}/documents/{documentId}} on a
+ * running view-service: the {@code Resource} path (an 8 KiB copy through the servlet output stream, as done by the
+ * resource converters) and {@code storage.download.zero-copy} ({@code FileChannel.transferTo} from the channel
+ * opened at lookup). Full and single-range downloads are measured; the CPU time is the whole process's, client
+ * included, which is the same for both paths.
+ * <p>
+ * Run with {@code ./gradlew :view-service:benchmark}; the file size and number of rounds can be changed with
+ * {@code -Dbenchmark.file-size-mb} and {@code -Dbenchmark.rounds}.
+ */
+@Tag("benchmark")
+class DownloadBenchmarkTest {
+
+    private static final int FILE_SIZE_MB = Integer.getInteger("benchmark.file-size-mb", 256);
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+    private static final double GIGABYTE = 1024.0 * 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private long size;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path directory = Files.createDirectories(root.resolve("upload").resolve("CASE-BENCH"));
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) (i * 31);
+        }
+        try (OutputStream output = Files.newOutputStream(directory.resolve("doc-1.bin"))) {
+            for (int i = 0; i < FILE_SIZE_MB; i++) {
+                output.write(block);
+            }
+        }
+        size = (long) FILE_SIZE_MB * block.length;
+        Files.writeString(directory.resolve("metadata.json"), """
+            {"caseId": "CASE-BENCH", "createdAt": "2024-03-01T10:00:00Z", "documents": [{
+              "id": "doc-1", "filename": "releve.pdf", "storageFilename": "doc-1.bin", "mimeType": "application/pdf",
+              "status": "VALIDATED", "storedSize": %d, "uploadedAt": "2024-03-01T10:15:30Z"}]}
+            """.formatted(size));
+    }
+
+    @Test
+    void compareResourceWithTransferTo() throws Exception {
+        Result resource;
+        Result resourceRange;
+        try (ConfigurableApplicationContext context = start(false)) {
+            URI document = documentUri(context);
+            resource = measure(document, null);
+            resourceRange = measure(document, middleHalf());
+        }
+        Result transferTo;
+        Result transferToRange;
+        try (ConfigurableApplicationContext context = start(true)) {
+            URI document = documentUri(context);
+            transferTo = measure(document, null);
+            transferToRange = measure(document, middleHalf());
+        }
+
+        System.out.printf("%-18s %10s %14s%n", "download", "MB/s", "CPU ms per GB");
+        print("resource", resource);
+        print("resource, range", resourceRange);
+        print("transferTo", transferTo);
+        print("transferTo, range", transferToRange);
+    }
+
+    private ConfigurableApplicationContext start(boolean zeroCopy) {
+        // As arguments: default properties would lose to application.properties.
+        return new SpringApplicationBuilder(ViewServiceApplication.class).run(
+            "--server.port=0",
+            "--storage.root=" + root.resolve("upload"),
+            "--storage.preview.directory=" + root.resolve("previews"),
+            "--storage.download.zero-copy=" + zeroCopy);
+    }
+
+    private static URI documentUri(ConfigurableApplicationContext context) {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        return URI.create("http://localhost:" + port + "/cases/CASE-BENCH/documents/doc-1");
+    }
+
+    private String middleHalf() {
+        return "bytes=" + size / 4 + "-" + (size / 4 + size / 2 - 1);
+    }
+
+    private Result measure(URI document, String range) throws IOException {
+        // Warm-up so that both paths run compiled code and the file sits in the page cache.
+        download(document, range);
+
+        com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long bytes = 0;
+        long cpuBefore = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            bytes += download(document, range);
+        }
+        return new Result(bytes, System.nanoTime() - start, os.getProcessCpuTime() - cpuBefore);
+    }
+
+    /**
+     * Downloads the document, or {@code range} of it, and checks that every announced byte arrived.
+     */
+    private long download(URI document, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) document.toURL().openConnection(Proxy.NO_PROXY);
+        if (range != null) {
+            connection.setRequestProperty(HttpHeaders.RANGE, range);
+        }
+        assertThat(connection.getResponseCode()).isEqualTo(range == null ? 200 : 206);
+        long expected = connection.getContentLengthLong();
+        long total = 0;
+        try (InputStream input = connection.getInputStream()) {
+            byte[] buffer = new byte[256 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        assertThat(total).isEqualTo(expected).isEqualTo(range == null ? size : size / 2);
+        return total;
+    }
+
+    private static void print(String download, Result result) {
+        System.out.printf("%-18s %10.0f %14.1f%n", download, result.megabytesPerSecond(), result.cpuMillisPerGigabyte());
+    }
+
+    private record Result(long bytes, long elapsedNanos, long cpuNanos) {
+
+        double megabytesPerSecond() {
+            return bytes / (1024.0 * 1024) / (elapsedNanos / 1e9);
+        }
+
+        double cpuMillisPerGigabyte() {
+            return cpuNanos / 1e6 / (bytes / GIGABYTE);
+        }
+    }
+}
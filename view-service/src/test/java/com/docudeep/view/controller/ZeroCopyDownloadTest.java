@@ -0,0 +1,10 @@
+package com.docudeep.view.controller;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The download tests again, with full and single-range responses written by {@code FileChannel.transferTo}.
+ */
+@TestPropertySource(properties = "storage.download.zero-copy=true")
+class ZeroCopyDownloadTest extends CaseDownloadTest {
+}
@@ -0,0 +1,151 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.StorageProperties;
+import com.docudeep.view.model.CaseMetadata;
+import com.docudeep.view.model.DocumentMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class CaseArchiveWriterTest {
+
+    private static final Instant UPLOADED_AT = Instant.parse("2024-03-01T10:15:30Z");
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CaseArchiveWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(root.toString());
+        writer = new CaseArchiveWriter(new DocumentLocator(new CaseDirectories(properties), new SegmentIndex(properties)),
+            meterRegistry);
+    }
+
+    @Test
+    void aSingleCaseIsArchivedAtTheRoot() throws IOException {
+        CaseMetadata metadata = caseOf("CASE-1",
+            document("CASE-1", "doc-1", "bulletin.pdf", "application/pdf", "VALIDATED", "payslip bytes"));
+
+        Map<String, String> archive = archive(List.of(metadata));
+
+        assertThat(archive).containsExactly(entry("bulletin.pdf", "payslip bytes"));
+        assertThat(meterRegistry.get("docudeep.download.bytes").tag("transfer", "archive").counter().count())
+            .isEqualTo("payslip bytes".length());
+    }
+
+    @Test
+    void severalCasesGetOneFolderEachWithUniqueNames() throws IOException {
+        CaseMetadata first = caseOf("CASE-1",
+            document("CASE-1", "doc-1", "bulletin.pdf", "application/pdf", "VALIDATED", "first payslip"),
+            document("CASE-1", "doc-2", "bulletin.pdf", "application/pdf", "VALIDATED", "second payslip"),
+            document("CASE-1", "doc-3", "scans/avis.png", "image/png", "VALIDATED", "tax notice"));
+        CaseMetadata second = caseOf("CASE-2",
+            document("CASE-2", "doc-1", "bulletin.pdf", "application/pdf", "VALIDATED", "other payslip"),
+            document("CASE-2", "doc-2", null, "text/plain", "VALIDATED", "unnamed"));
+
+        Map<String, String> archive = archive(List.of(first, second));
+
+        assertThat(archive).containsExactly(
+            entry("CASE-1/bulletin.pdf", "first payslip"),
+            entry("CASE-1/bulletin (2).pdf", "second payslip"),
+            entry("CASE-1/scans_avis.png", "tax notice"),
+            entry("CASE-2/bulletin.pdf", "other payslip"),
+            entry("CASE-2/doc-2", "unnamed"));
+    }
+
+    @Test
+    void onlyValidatedDocumentsWithAStoredFileAreArchived() throws IOException {
+        DocumentMetadata missing = document("CASE-1", "doc-4", "perdu.pdf", "application/pdf", "VALIDATED", "gone");
+        Files.delete(root.resolve("CASE-1").resolve(missing.getStorageFilename()));
+        DocumentMetadata notUploaded = document("CASE-1", "doc-5", "attendu.pdf", "application/pdf", "PENDING", "none");
+        notUploaded.setStorageFilename(null);
+        CaseMetadata metadata = caseOf("CASE-1",
+            document("CASE-1", "doc-1", "valide.pdf", "application/pdf", "VALIDATED", "validated"),
+            document("CASE-1", "doc-2", "refuse.pdf", "application/pdf", "FAILED", "rejected"),
+            document("CASE-1", "doc-3", "en-cours.pdf", "application/pdf", "VALIDATING", "in progress"),
+            missing, notUploaded);
+
+        assertThat(archive(List.of(metadata))).containsOnlyKeys("valide.pdf");
+    }
+
+    @Test
+    void compressedTypesAreStoredAndTheOthersDeflated() throws IOException {
+        CaseMetadata metadata = caseOf("CASE-1",
+            document("CASE-1", "doc-1", "bulletin.pdf", "APPLICATION/PDF", "VALIDATED", "payslip bytes"),
+            document("CASE-1", "doc-2", "notes.txt", "text/plain", "VALIDATED", "notes ".repeat(100)));
+
+        Map<String, ZipEntry> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(write(List.of(metadata))))) {
+            for (ZipEntry zipEntry; (zipEntry = zip.getNextEntry()) != null; ) {
+                // Reading to the end makes ZipInputStream check the CRC-32 announced in the entry header.
+                zip.readAllBytes();
+                entries.put(zipEntry.getName(), zipEntry);
+            }
+        }
+
+        assertThat(entries.get("bulletin.pdf").getMethod()).isEqualTo(ZipEntry.STORED);
+        assertThat(entries.get("bulletin.pdf").getTime()).isEqualTo(UPLOADED_AT.toEpochMilli());
+        assertThat(entries.get("notes.txt").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    /**
+     * Entry names and contents of the archive, in archive order.
+     */
+    private Map<String, String> archive(List<CaseMetadata> cases) throws IOException {
+        Map<String, String> contents = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(write(cases)))) {
+            for (ZipEntry zipEntry; (zipEntry = zip.getNextEntry()) != null; ) {
+                contents.put(zipEntry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return contents;
+    }
+
+    private byte[] write(List<CaseMetadata> cases) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(cases, out);
+        return out.toByteArray();
+    }
+
+    private static CaseMetadata caseOf(String caseId, DocumentMetadata... documents) {
+        CaseMetadata metadata = new CaseMetadata();
+        metadata.setCaseId(caseId);
+        metadata.setDocuments(List.of(documents));
+        return metadata;
+    }
+
+    private DocumentMetadata document(String caseId, String id, String filename, String mimeType, String status,
+                                      String content) throws IOException {
+        String storageFilename = id + ".bin";
+        Files.writeString(Files.createDirectories(root.resolve(caseId)).resolve(storageFilename), content);
+        DocumentMetadata document = new DocumentMetadata();
+        document.setId(id);
+        document.setFilename(filename);
+        document.setStorageFilename(storageFilename);
+        document.setMimeType(mimeType);
+        document.setStatus(status);
+        document.setUploadedAt(UPLOADED_AT);
+        return document;
+    }
+}
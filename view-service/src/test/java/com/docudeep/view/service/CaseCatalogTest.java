@@ -0,0 +1,109 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.model.CaseMetadata;
+import com.docudeep.view.model.DocumentMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaseCatalogTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final CaseCatalog catalog = new CaseCatalog();
+
+    @BeforeEach
+    void setUp() {
+        // CASE-00 is the oldest; one case in three has a validated payslip, the others a pending tax notice.
+        for (int i = 0; i < 10; i++) {
+            String status = i % 3 == 0 ? "VALIDATED" : "PENDING";
+            String type = i % 3 == 0 ? "PAYSLIP" : "TAX_NOTICE";
+            catalog.upsert(caseOf(String.format("CASE-%02d", i), START.plusSeconds(i), document(status, type)), null);
+        }
+    }
+
+    @Test
+    void cursorsWalkEveryCaseOnceInBothDirections() {
+        assertThat(walk(3, false, null, null)).containsExactly(
+            "CASE-00", "CASE-01", "CASE-02", "CASE-03", "CASE-04", "CASE-05", "CASE-06", "CASE-07", "CASE-08", "CASE-09");
+        assertThat(walk(4, true, null, null)).containsExactly(
+            "CASE-09", "CASE-08", "CASE-07", "CASE-06", "CASE-05", "CASE-04", "CASE-03", "CASE-02", "CASE-01", "CASE-00");
+    }
+
+    @Test
+    void theLastPageHasNoCursor() {
+        CaseCatalog.Page first = catalog.page(new CaseCatalog.PageRequest(5, null, false, null, null));
+        CaseCatalog.Page last = catalog.page(
+            new CaseCatalog.PageRequest(5, CaseCatalog.decodeCursor(first.nextCursor()), false, null, null));
+
+        assertThat(first.cases()).hasSize(5);
+        assertThat(first.nextCursor()).isNotNull();
+        assertThat(last.cases()).extracting(CaseMetadata::getCaseId).startsWith("CASE-05").hasSize(5);
+        assertThat(last.nextCursor()).isNull();
+        assertThat(catalog.page(new CaseCatalog.PageRequest(10, null, false, null, null)).nextCursor()).isNull();
+    }
+
+    @Test
+    void filtersSelectCasesWithAMatchingDocument() {
+        assertThat(walk(2, false, "validated", null)).containsExactly("CASE-00", "CASE-03", "CASE-06", "CASE-09");
+        assertThat(walk(2, true, null, "TAX_NOTICE")).containsExactly(
+            "CASE-08", "CASE-07", "CASE-05", "CASE-04", "CASE-02", "CASE-01");
+        assertThat(walk(2, false, "VALIDATED", "PAYSLIP")).containsExactly("CASE-00", "CASE-03", "CASE-06", "CASE-09");
+        // Status and type have to match on the same document.
+        assertThat(walk(2, false, "VALIDATED", "TAX_NOTICE")).isEmpty();
+        assertThat(walk(2, false, "FAILED", null)).isEmpty();
+        assertThat(walk(50, false, " ", "")).hasSize(10);
+    }
+
+    @Test
+    void aChangedCaseMovesBetweenFilters() {
+        catalog.upsert(caseOf("CASE-01", START.plusSeconds(1), document("VALIDATED", "TAX_NOTICE")), null);
+        catalog.remove("CASE-03");
+
+        assertThat(walk(10, false, "VALIDATED", null)).containsExactly("CASE-00", "CASE-01", "CASE-06", "CASE-09");
+        assertThat(walk(10, false, "PENDING", "TAX_NOTICE")).doesNotContain("CASE-01");
+        assertThat(walk(10, false, "VALIDATED", "TAX_NOTICE")).containsExactly("CASE-01");
+        assertThat(catalog.find("CASE-03")).isEmpty();
+    }
+
+    @Test
+    void aMalformedCursorIsRejected() {
+        assertThatThrownBy(() -> CaseCatalog.decodeCursor("not-a-cursor"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> walk(int limit, boolean descending, String status, String documentType) {
+        List<String> caseIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            CaseCatalog.Page page = catalog.page(new CaseCatalog.PageRequest(limit, CaseCatalog.decodeCursor(cursor),
+                descending, status, documentType));
+            assertThat(page.cases().size()).isLessThanOrEqualTo(limit);
+            page.cases().forEach(metadata -> caseIds.add(metadata.getCaseId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return caseIds;
+    }
+
+    private static CaseMetadata caseOf(String caseId, Instant createdAt, DocumentMetadata... documents) {
+        CaseMetadata metadata = new CaseMetadata();
+        metadata.setCaseId(caseId);
+        metadata.setCreatedAt(createdAt);
+        metadata.setDocuments(List.of(documents));
+        return metadata;
+    }
+
+    private static DocumentMetadata document(String status, String documentType) {
+        DocumentMetadata document = new DocumentMetadata();
+        document.setId(status + "-" + documentType);
+        document.setStatus(status);
+        document.setDocumentType(documentType);
+        return document;
+    }
+}
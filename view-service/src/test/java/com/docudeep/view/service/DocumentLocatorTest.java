@@ -0,0 +1,95 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.StorageProperties;
+import com.docudeep.view.model.DocumentMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentLocatorTest {
+
+    private static final String SHA256 = "a".repeat(64);
+
+    @TempDir
+    Path root;
+
+    private DocumentLocator locator;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setRoot(root.toString());
+        locator = new DocumentLocator(new CaseDirectories(properties), new SegmentIndex(properties));
+    }
+
+    @Test
+    void aReplacedFileIsReadAsItWasLocated() throws IOException {
+        Path file = Files.createDirectories(root.resolve("CASE-1")).resolve("doc.pdf");
+        Files.writeString(file, "first version");
+        DocumentMetadata document = document(false);
+
+        try (StoredContent content = locator.locate("CASE-1", document).orElseThrow()) {
+            Path replacement = file.resolveSibling("doc.pdf.tmp");
+            Files.writeString(replacement, "second, longer version");
+            Files.move(replacement, file, StandardCopyOption.ATOMIC_MOVE);
+
+            assertThat(content.length()).isEqualTo("first version".length());
+            assertThat(read(content)).isEqualTo("first version");
+            // Several streams share the channel; closing one leaves the others readable.
+            read(content);
+            assertThat(read(content)).isEqualTo("first version");
+        }
+    }
+
+    @Test
+    void aPackedDocumentStaysReadableAfterItsSegmentIsCompacted() throws IOException {
+        Path segments = Files.createDirectories(root.resolve(".segments"));
+        Files.writeString(segments.resolve("00000001.seg"), "header|packed bytes|trailer");
+        Files.writeString(segments.resolve("00000001.idx"), SHA256 + " 7 12\n");
+        DocumentMetadata document = document(true);
+
+        try (StoredContent content = locator.locate("CASE-1", document).orElseThrow()) {
+            Files.delete(segments.resolve("00000001.seg"));
+            Files.delete(segments.resolve("00000001.idx"));
+
+            assertThat(read(content)).isEqualTo("packed bytes");
+        }
+        assertThat(locator.locate("CASE-1", document)).isEmpty();
+    }
+
+    @Test
+    void aLooseFilePackedMeanwhileIsFoundInItsSegment() throws IOException {
+        Files.createDirectories(root.resolve("CASE-1"));
+        Path segments = Files.createDirectories(root.resolve(".segments"));
+        Files.writeString(segments.resolve("00000001.seg"), "packed bytes");
+        Files.writeString(segments.resolve("00000001.idx"), SHA256 + " 0 12\n");
+
+        try (StoredContent content = locator.locate("CASE-1", document(false)).orElseThrow()) {
+            assertThat(read(content)).isEqualTo("packed bytes");
+        }
+    }
+
+    private static String read(StoredContent content) throws IOException {
+        try (InputStream in = content.openStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static DocumentMetadata document(boolean packed) {
+        DocumentMetadata document = new DocumentMetadata();
+        document.setId("doc-1");
+        document.setStorageFilename("doc.pdf");
+        document.setSha256(SHA256);
+        document.setPacked(packed);
+        return document;
+    }
+}
@@ -0,0 +1,179 @@
+package com.docudeep.view.service;
+
+import com.docudeep.view.config.PreviewProperties;
+import com.docudeep.view.config.StorageProperties;
+import com.docudeep.view.model.DocumentMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PreviewServiceTest {
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PreviewProperties properties = new PreviewProperties();
+    private DocumentLocator locator;
+    private PreviewService previews;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageProperties storage = new StorageProperties();
+        storage.setRoot(root.resolve("upload").toString());
+        locator = new DocumentLocator(new CaseDirectories(storage), new SegmentIndex(storage));
+        properties.setDirectory(root.resolve("previews").toString());
+        properties.setMaxDimension(64);
+        previews = new PreviewService(locator, properties, meterRegistry);
+    }
+
+    @Test
+    void aPreviewIsRenderedOnceThenServedFromTheCache() throws IOException {
+        DocumentMetadata document = store("scan.png", "image/png", png(400, 200), "a".repeat(64));
+
+        byte[] first = previews.preview("CASE-1", document);
+        byte[] second = previews.preview("CASE-1", document);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(requests("miss")).isEqualTo(1.0);
+        assertThat(requests("hit")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("docudeep.preview.render").tag("type", "image").timer().count()).isEqualTo(1);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(first));
+        assertThat(image.getWidth()).isEqualTo(64);
+        assertThat(image.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    void renderedPreviewsOutliveTheService() throws IOException {
+        DocumentMetadata document = store("releve.pdf", "application/pdf", pdf(), "b".repeat(64));
+        byte[] rendered = previews.preview("CASE-1", document);
+
+        SimpleMeterRegistry restarted = new SimpleMeterRegistry();
+        byte[] served = new PreviewService(locator, properties, restarted).preview("CASE-1", document);
+
+        assertThat(served).isEqualTo(rendered);
+        assertThat(restarted.get("docudeep.preview.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("docudeep.preview.render").tag("type", "pdf").timer().count()).isEqualTo(1);
+        // A4 portrait: the height is the longest side.
+        assertThat(ImageIO.read(new ByteArrayInputStream(served)).getHeight()).isEqualTo(64);
+    }
+
+    @Test
+    void aNewDigestGetsANewPreview() throws IOException {
+        DocumentMetadata document = store("scan.png", "image/png", png(400, 200), "a".repeat(64));
+        String eTag = previews.eTag("CASE-1", document);
+        byte[] landscape = previews.preview("CASE-1", document);
+
+        // Re-uploaded under the same id: new bytes, new digest.
+        DocumentMetadata replaced = store("scan.png", "image/png", png(200, 400), "c".repeat(64));
+        byte[] portrait = previews.preview("CASE-1", replaced);
+
+        assertThat(previews.eTag("CASE-1", replaced)).isNotEqualTo(eTag);
+        assertThat(portrait).isNotEqualTo(landscape);
+        assertThat(ImageIO.read(new ByteArrayInputStream(portrait)).getHeight()).isEqualTo(64);
+        assertThat(requests("miss")).isEqualTo(2.0);
+        assertThat(requests("hit")).isZero();
+    }
+
+    @Test
+    void withoutADigestTheStoredFileDecides() throws IOException {
+        DocumentMetadata document = store("scan.png", "image/png", png(400, 200), null);
+        String eTag = previews.eTag("CASE-1", document);
+        previews.preview("CASE-1", document);
+        assertThat(previews.eTag("CASE-1", document)).isEqualTo(eTag);
+
+        store("scan.png", "image/png", png(200, 400), null);
+        // Same second as the first write on coarse clocks: set the time so the version surely moves.
+        Files.setLastModifiedTime(root.resolve("upload").resolve("CASE-1").resolve("doc-1.bin"),
+            FileTime.from(Instant.parse("2030-01-01T00:00:00Z")));
+        byte[] portrait = previews.preview("CASE-1", document);
+
+        assertThat(previews.eTag("CASE-1", document)).isNotEqualTo(eTag);
+        assertThat(ImageIO.read(new ByteArrayInputStream(portrait)).getHeight()).isEqualTo(64);
+        assertThat(requests("miss")).isEqualTo(2.0);
+    }
+
+    @Test
+    void unsupportedOrUnreadableDocumentsHaveNoPreview() throws IOException {
+        DocumentMetadata text = store("notes.txt", "text/plain", new byte[]{'n'}, "d".repeat(64));
+        DocumentMetadata broken = store("casse.pdf", "application/pdf",
+            "%PDF-1.7 truncated".getBytes(StandardCharsets.US_ASCII), "e".repeat(64));
+
+        assertThatThrownBy(() -> previews.preview("CASE-1", text)).isInstanceOf(PreviewUnavailableException.class);
+        assertThatThrownBy(() -> previews.preview("CASE-1", broken)).isInstanceOf(PreviewUnavailableException.class);
+        try (Stream<Path> cached = Files.list(root.resolve("previews"))) {
+            assertThat(cached).allSatisfy(file -> assertThat(Files.size(file)).isZero());
+        }
+    }
+
+    @Test
+    void anUnreadableDocumentIsParsedOnlyOnce() throws IOException {
+        DocumentMetadata broken = store("casse.pdf", "application/pdf",
+            "%PDF-1.7 truncated".getBytes(StandardCharsets.US_ASCII), "e".repeat(64));
+        assertThatThrownBy(() -> previews.preview("CASE-1", broken)).isInstanceOf(PreviewUnavailableException.class);
+        assertThatThrownBy(() -> previews.preview("CASE-1", broken)).isInstanceOf(PreviewUnavailableException.class);
+
+        SimpleMeterRegistry restarted = new SimpleMeterRegistry();
+        assertThatThrownBy(() -> new PreviewService(locator, properties, restarted).preview("CASE-1", broken))
+            .isInstanceOf(PreviewUnavailableException.class);
+
+        assertThat(meterRegistry.get("docudeep.preview.render").tag("type", "pdf").timer().count()).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(1.0);
+        assertThat(requests("hit")).isEqualTo(1.0);
+        assertThat(restarted.get("docudeep.preview.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("docudeep.preview.cache.requests").tag("result", result).counter().count();
+    }
+
+    /**
+     * Writes {@code content} as {@code doc-1} of {@code CASE-1}, replacing what was there.
+     */
+    private DocumentMetadata store(String filename, String mimeType, byte[] content, String sha256) throws IOException {
+        Path directory = Files.createDirectories(root.resolve("upload").resolve("CASE-1"));
+        Files.write(directory.resolve("doc-1.bin"), content);
+        DocumentMetadata document = new DocumentMetadata();
+        document.setId("doc-1");
+        document.setFilename(filename);
+        document.setStorageFilename("doc-1.bin");
+        document.setMimeType(mimeType);
+        document.setStatus("VALIDATED");
+        document.setSha256(sha256);
+        return document;
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] pdf() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}